@@ -36,11 +36,17 @@ public class ConnectedGlobalConfiguration extends AbstractGlobalConfiguration {
 
   private final String serverId;
   private final Path storageRoot;
+  private final boolean relevantServerIssuesOnly;
+  private final boolean storageFilesCache;
+  private final boolean warmStart;
 
   private ConnectedGlobalConfiguration(Builder builder) {
     super(builder);
     this.serverId = builder.serverId;
     this.storageRoot = builder.storageRoot != null ? builder.storageRoot : getSonarLintUserHome().resolve(DEFAULT_STORAGE_DIR);
+    this.relevantServerIssuesOnly = builder.relevantServerIssuesOnly;
+    this.storageFilesCache = builder.storageFilesCache;
+    this.warmStart = builder.warmStart;
   }
 
   public static Builder builder() {
@@ -55,9 +61,24 @@ public class ConnectedGlobalConfiguration extends AbstractGlobalConfiguration {
     return serverId;
   }
 
+  public boolean isRelevantServerIssuesOnly() {
+    return relevantServerIssuesOnly;
+  }
+
+  public boolean isStorageFilesCache() {
+    return storageFilesCache;
+  }
+
+  public boolean isWarmStart() {
+    return warmStart;
+  }
+
   public static final class Builder extends AbstractBuilder<Builder> {
     private String serverId;
     private Path storageRoot;
+    private boolean relevantServerIssuesOnly;
+    private boolean storageFilesCache;
+    private boolean warmStart;
 
     private Builder() {
     }
@@ -85,6 +106,36 @@ public class ConnectedGlobalConfiguration extends AbstractGlobalConfiguration {
       return this;
     }
 
+    /**
+     * Only store the server issues that can be matched with issues found by local analysis: issues that are not closed,
+     * of rules active in the quality profiles of the module. Disabled by default.
+     * @since 2.15
+     */
+    public Builder setRelevantServerIssuesOnly(boolean relevantServerIssuesOnly) {
+      this.relevantServerIssuesOnly = relevantServerIssuesOnly;
+      return this;
+    }
+
+    /**
+     * Keep the content of the storage files read during analysis and issue tracking in memory, and only read them again
+     * when they are modified. Disabled by default.
+     * @since 2.15
+     */
+    public Builder setStorageFilesCache(boolean storageFilesCache) {
+      this.storageFilesCache = storageFilesCache;
+      return this;
+    }
+
+    /**
+     * Save in the storage the plugins resolved when the engine starts after an update, so that the next starts
+     * don't need to open and explode the plugin jars again. Disabled by default.
+     * @since 2.15
+     */
+    public Builder setWarmStart(boolean warmStart) {
+      this.warmStart = warmStart;
+      return this;
+    }
+
     public ConnectedGlobalConfiguration build() {
       return new ConnectedGlobalConfiguration(this);
     }
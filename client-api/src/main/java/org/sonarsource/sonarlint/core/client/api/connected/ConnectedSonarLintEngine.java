@@ -81,6 +81,24 @@ public interface ConnectedSonarLintEngine {
    */
   List<ServerIssue> getServerIssues(String moduleKey, String filePath);
 
+  /**
+   * Gets locally stored server issues for several files at once.
+   * This is much faster than calling {@link #getServerIssues(String, String)} for each file.
+   * @param moduleKey to which the project is bound (must have been previously updated with {@link #updateModule(ServerConfiguration,String)})
+   * @param filePaths relative to the module to which the moduleKey refers.
+   * @return All server issues in the local storage for each given file, in the order of the given files. If a file has no issues, its list is empty.
+   * @since 2.15
+   */
+  Map<String, List<ServerIssue>> getServerIssues(String moduleKey, Collection<String> filePaths);
+
+  /**
+   * Gets all locally stored server issues of a module.
+   * @param moduleKey to which the project is bound (must have been previously updated with {@link #updateModule(ServerConfiguration,String)})
+   * @return All server issues in the local storage for each file of the module, by path relative to the module. Files without issues are not in the map.
+   * @since 2.15
+   */
+  Map<String, List<ServerIssue>> getServerIssues(String moduleKey);
+
   /**
    * Get information about current global storage state
    * @return null if storage was never updated
@@ -103,6 +121,14 @@ public interface ConnectedSonarLintEngine {
    */
   Map<String, RemoteModule> allModulesByKey();
 
+  /**
+   * Search modules having, in their key or name, words starting with each of the words of the given text.
+   * For example "sonar core" matches the module "org.sonarsource.sonarlint.core:sonarlint-core".
+   * @return matching modules sorted by key, empty if the text doesn't contain any word
+   * @since 2.15
+   */
+  List<RemoteModule> searchModules(String text);
+
   // REQUIRES SERVER TO BE REACHABLE
 
   /**
@@ -152,6 +178,20 @@ public interface ConnectedSonarLintEngine {
    */
   List<ServerIssue> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, String filePath);
 
+  /**
+   * Downloads and stores server issues for several files at once, with a few concurrent requests.
+   * This is much faster than calling {@link #downloadServerIssues(ServerConfiguration, String, String)} for each file.
+   * @param moduleKey to which the project is bound (must have been previously updated with {@link #updateModule(ServerConfiguration,String)})
+   * @param filePaths relative to the module to which the moduleKey refers.
+   * @param monitor reports the progress after the issues of each file are downloaded, and can cancel the remaining downloads.
+   * @return All server issues in the local storage for each file whose issues could be downloaded. Files whose issues failed
+   * to download are not in the map.
+   * @since 2.15
+   * @throws CanceledException if the monitor cancels the task
+   */
+  Map<String, List<ServerIssue>> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, Collection<String> filePaths,
+    @Nullable ProgressMonitor monitor);
+
   /**
    * Downloads and stores server issues for a given module.
    * @param serverConfig form which to download issues
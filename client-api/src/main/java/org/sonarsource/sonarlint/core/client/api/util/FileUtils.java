@@ -35,6 +35,7 @@ import java.util.regex.Pattern;
 public class FileUtils {
 
   private static final String PATH_SEPARATOR_PATTERN = Pattern.quote(File.separator);
+  private static final String OLD_DIR_SUFFIX = ".old";
 
   private FileUtils() {
     // utility class, forbidden constructor
@@ -148,8 +149,44 @@ public class FileUtils {
    */
   public static void replaceDir(Consumer<Path> dirContentUpdater, Path target, Path work) {
     dirContentUpdater.accept(work);
-    FileUtils.deleteRecursively(target);
+    replaceDir(work, target);
+  }
+
+  /**
+   * Replace the target directory with the source directory. The target is first renamed aside, and restored if the source
+   * can't be moved in its place, so that it is never left partially deleted.
+   *
+   * @param src directory with the new content
+   * @param target directory to replace, if it exists
+   */
+  public static void replaceDir(Path src, Path target) {
     FileUtils.mkdirs(target.getParent());
-    FileUtils.moveDir(work, target);
+    Path aside = null;
+    if (target.toFile().exists()) {
+      aside = target.resolveSibling(target.getFileName() + OLD_DIR_SUFFIX);
+      // left by a previous replacement
+      FileUtils.deleteRecursively(aside);
+      FileUtils.moveDir(target, aside);
+    }
+    try {
+      FileUtils.moveDir(src, target);
+    } catch (RuntimeException e) {
+      if (aside != null) {
+        try {
+          FileUtils.deleteRecursively(target);
+          FileUtils.moveDir(aside, target);
+        } catch (RuntimeException restoreError) {
+          e.addSuppressed(restoreError);
+        }
+      }
+      throw e;
+    }
+    if (aside != null) {
+      try {
+        FileUtils.deleteRecursively(aside);
+      } catch (RuntimeException ignore) {
+        // deleted by the next replacement
+      }
+    }
   }
 }
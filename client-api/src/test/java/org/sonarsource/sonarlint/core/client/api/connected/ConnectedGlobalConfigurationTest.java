@@ -41,6 +41,24 @@ public class ConnectedGlobalConfigurationTest {
     assertThat(config.getSonarLintUserHome()).isEqualTo(Paths.get(System.getProperty("user.home"), ".sonarlint"));
     assertThat(config.getStorageRoot()).isEqualTo(Paths.get(System.getProperty("user.home"), ".sonarlint", "storage"));
     assertThat(config.getWorkDir()).isEqualTo(Paths.get(System.getProperty("user.home"), ".sonarlint", "work"));
+    assertThat(config.isStorageFilesCache()).isFalse();
+    assertThat(config.isWarmStart()).isFalse();
+  }
+
+  @Test
+  public void enableStorageFilesCache() {
+    ConnectedGlobalConfiguration config = ConnectedGlobalConfiguration.builder()
+      .setStorageFilesCache(true)
+      .build();
+    assertThat(config.isStorageFilesCache()).isTrue();
+  }
+
+  @Test
+  public void enableWarmStart() {
+    ConnectedGlobalConfiguration config = ConnectedGlobalConfiguration.builder()
+      .setWarmStart(true)
+      .build();
+    assertThat(config.isWarmStart()).isTrue();
   }
 
   @Test
@@ -175,6 +175,33 @@ public class FileUtilsTest {
     assertThat(newFileInDir.isFile()).isTrue();
   }
 
+  @Test
+  public void replaceDir_should_create_missing_target() throws IOException {
+    File newDir = temporaryFolder.newFolder();
+    createNewFile(newDir, "new file");
+    Path target = temporaryFolder.getRoot().toPath().resolve("a").resolve("target");
+
+    FileUtils.replaceDir(newDir.toPath(), target);
+
+    assertThat(target.resolve("new file")).isRegularFile();
+    assertThat(newDir).doesNotExist();
+  }
+
+  @Test
+  public void replaceDir_should_restore_target_if_it_cant_be_replaced() throws IOException {
+    File oldDir = temporaryFolder.newFolder();
+    File oldFileInDir = createNewFile(oldDir, "dummy");
+    Path missing = temporaryFolder.getRoot().toPath().resolve("missing");
+
+    try {
+      FileUtils.replaceDir(missing, oldDir.toPath());
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(oldFileInDir).isFile();
+      assertThat(temporaryFolder.getRoot().list()).containsOnly(oldDir.getName());
+    }
+  }
+
   private File createNewFile(File basedir, String filename) {
     Path path = basedir.toPath().resolve(filename);
     try {
@@ -23,7 +23,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
@@ -65,8 +67,17 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
   private final ConnectedGlobalConfiguration globalConfig;
   private StorageContainer globalContainer;
   private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+  /**
+   * Updates download from the server without holding {@link #rwl}, so that the storage can still be read meanwhile.
+   * Only the changes of the storage are made with the write lock. This lock prevents concurrent updates.
+   */
+  private final Lock updateLock = new ReentrantLock();
   private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
   private volatile State state = State.UNKNOW;
+  /**
+   * State of the storage of the current container, which remains usable while an update is in progress.
+   */
+  private volatile State storageState = State.UNKNOW;
   private LogOutput logOutput = null;
 
   public ConnectedSonarLintEngineImpl(ConnectedGlobalConfiguration globalConfig) {
@@ -97,6 +108,17 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     }
   }
 
+  private void changeStorageState(State state) {
+    this.storageState = state;
+    changeState(state);
+  }
+
+  private void restoreStorageState() {
+    if (state != storageState) {
+      changeState(storageState);
+    }
+  }
+
   public StorageContainer getGlobalContainer() {
     if (globalContainer == null) {
       throw new IllegalStateException("SonarLint Engine for server '" + globalConfig.getServerId() + "' is stopped.");
@@ -111,17 +133,17 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     try {
       globalContainer.startComponents();
       if (globalContainer.getGlobalStorageStatus() == null) {
-        changeState(State.NEVER_UPDATED);
+        changeStorageState(State.NEVER_UPDATED);
       } else if (globalContainer.getGlobalStorageStatus().isStale()) {
-        changeState(State.NEED_UPDATE);
+        changeStorageState(State.NEED_UPDATE);
       } else {
-        changeState(State.UPDATED);
+        changeStorageState(State.UPDATED);
       }
     } catch (StorageException e) {
       LOG.debug(e.getMessage(), e);
-      changeState(State.NEED_UPDATE);
+      changeStorageState(State.NEED_UPDATE);
     } catch (RuntimeException e) {
-      changeState(State.UNKNOW);
+      changeStorageState(State.UNKNOW);
       throw SonarLintWrappedException.wrap(e);
     } finally {
       rwl.writeLock().unlock();
@@ -178,15 +200,22 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
   public UpdateResult update(ServerConfiguration serverConfig, @Nullable ProgressMonitor monitor) {
     checkNotNull(serverConfig);
     setLogging(null);
-    rwl.writeLock().lock();
-    stop(false);
-    changeState(State.UPDATING);
-    ConnectedContainer connectedContainer = new ConnectedContainer(globalConfig, serverConfig);
+    updateLock.lock();
     try {
+      changeState(State.UPDATING);
+      ConnectedContainer connectedContainer = new ConnectedContainer(globalConfig, serverConfig);
       List<SonarAnalyzer> analyzers;
       try {
         connectedContainer.startComponents();
-        analyzers = connectedContainer.update(new ProgressWrapper(monitor));
+        // analyses keep using the current storage until the new one is downloaded
+        analyzers = connectedContainer.update(new ProgressWrapper(monitor), replaceStorage -> publish(() -> {
+          stop(false);
+          try {
+            replaceStorage.run();
+          } finally {
+            start();
+          }
+        }));
       } catch (RuntimeException e) {
         throw SonarLintWrappedException.wrap(e);
       } finally {
@@ -195,11 +224,11 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
         } catch (Exception e) {
           // Ignore
         }
-        start();
+        restoreStorageState();
       }
       return new UpdateResult(getGlobalContainer().getGlobalStorageStatus(), analyzers);
     } finally {
-      rwl.writeLock().unlock();
+      updateLock.unlock();
     }
   }
 
@@ -258,16 +287,24 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     });
   }
 
+  @Override
+  public List<RemoteModule> searchModules(String text) {
+    return withReadLock(() -> {
+      checkUpdateStatus();
+      return getGlobalContainer().searchModules(text);
+    });
+  }
+
   @Override
   public Map<String, RemoteModule> downloadAllModules(ServerConfiguration serverConfig, @Nullable ProgressMonitor monitor) {
-    return withRwLock(() -> {
+    return withUpdateLock(() -> {
       checkUpdateStatus();
-      return getGlobalContainer().downloadModuleList(serverConfig, new ProgressWrapper(monitor));
+      return getGlobalContainer().downloadModuleList(serverConfig, new ProgressWrapper(monitor), this::publish);
     });
   }
 
   private void checkUpdateStatus() {
-    if (state != State.UPDATED) {
+    if (storageState != State.UPDATED) {
       throw new GlobalUpdateRequiredException("Please update server '" + globalConfig.getServerId() + "'");
     }
   }
@@ -280,19 +317,44 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     });
   }
 
+  @Override
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey, Collection<String> filePaths) {
+    return withReadLock(() -> {
+      checkUpdateStatus();
+      return getGlobalContainer().getServerIssues(moduleKey, filePaths);
+    });
+  }
+
+  @Override
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey) {
+    return withReadLock(() -> {
+      checkUpdateStatus();
+      return getGlobalContainer().getServerIssues(moduleKey);
+    });
+  }
+
   @Override
   public List<ServerIssue> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, String filePath) {
-    return withRwLock(() -> {
+    return withUpdateLock(() -> {
+      checkUpdateStatus();
+      return getGlobalContainer().downloadServerIssues(serverConfig, moduleKey, filePath, this::publish);
+    });
+  }
+
+  @Override
+  public Map<String, List<ServerIssue>> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, Collection<String> filePaths,
+    @Nullable ProgressMonitor monitor) {
+    return withUpdateLock(() -> {
       checkUpdateStatus();
-      return getGlobalContainer().downloadServerIssues(serverConfig, moduleKey, filePath);
+      return getGlobalContainer().downloadServerIssues(serverConfig, moduleKey, filePaths, new ProgressWrapper(monitor), this::publish);
     });
   }
 
   @Override
   public void downloadServerIssues(ServerConfiguration serverConfig, String moduleKey) {
-    withRwLock(() -> {
+    withUpdateLock(() -> {
       checkUpdateStatus();
-      getGlobalContainer().downloadServerIssues(serverConfig, moduleKey);
+      getGlobalContainer().downloadServerIssues(serverConfig, moduleKey, this::publish);
       return null;
     });
   }
@@ -302,13 +364,17 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     checkNotNull(serverConfig);
     checkNotNull(moduleKey);
     setLogging(null);
-    rwl.writeLock().lock();
-    checkUpdateStatus();
+    updateLock.lock();
     ConnectedContainer connectedContainer = new ConnectedContainer(globalConfig, serverConfig);
     try {
+      checkUpdateStatus();
       changeState(State.UPDATING);
       connectedContainer.startComponents();
-      connectedContainer.updateModule(moduleKey, new ProgressWrapper(monitor));
+      // analyses keep using the current storage of the module until the new one is downloaded
+      connectedContainer.updateModule(moduleKey, new ProgressWrapper(monitor), replaceStorage -> publish(() -> {
+        replaceStorage.run();
+        getGlobalContainer().invalidateModule(moduleKey);
+      }));
     } catch (RuntimeException e) {
       throw SonarLintWrappedException.wrap(e);
     } finally {
@@ -317,8 +383,8 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
       } catch (Exception e) {
         // Ignore
       }
-      changeState(getGlobalContainer().getGlobalStorageStatus() != null ? State.UPDATED : State.NEVER_UPDATED);
-      rwl.writeLock().unlock();
+      restoreStorageState();
+      updateLock.unlock();
     }
   }
 
@@ -331,6 +397,7 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
   @Override
   public void stop(boolean deleteStorage) {
     setLogging(null);
+    updateLock.lock();
     rwl.writeLock().lock();
     try {
       if (globalContainer == null) {
@@ -344,8 +411,9 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
       throw SonarLintWrappedException.wrap(e);
     } finally {
       this.globalContainer = null;
-      changeState(State.UNKNOW);
+      changeStorageState(State.UNKNOW);
       rwl.writeLock().unlock();
+      updateLock.unlock();
     }
   }
 
@@ -361,6 +429,30 @@ public final class ConnectedSonarLintEngineImpl implements ConnectedSonarLintEng
     }
   }
 
+  /**
+   * Runs a change of the storage, once readers are done with it.
+   */
+  private void publish(Runnable storageChange) {
+    rwl.writeLock().lock();
+    try {
+      storageChange.run();
+    } finally {
+      rwl.writeLock().unlock();
+    }
+  }
+
+  private <T> T withUpdateLock(Supplier<T> callable) {
+    setLogging(null);
+    updateLock.lock();
+    try {
+      return callable.get();
+    } catch (RuntimeException e) {
+      throw SonarLintWrappedException.wrap(e);
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
   private <T> T withReadLock(Supplier<T> callable) {
     setLogging(null);
     rwl.readLock().lock();
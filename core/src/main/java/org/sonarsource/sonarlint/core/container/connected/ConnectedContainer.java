@@ -20,6 +20,7 @@
 package org.sonarsource.sonarlint.core.container.connected;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -104,15 +105,29 @@ public class ConnectedContainer extends ComponentContainer {
   }
 
   public List<SonarAnalyzer> update(ProgressWrapper progress) {
-    return getComponentByType(GlobalStorageUpdateExecutor.class).update(progress);
+    return update(progress, Runnable::run);
+  }
+
+  /**
+   * @param publisher runs the action that replaces the storage by the downloaded one
+   */
+  public List<SonarAnalyzer> update(ProgressWrapper progress, Consumer<Runnable> publisher) {
+    return getComponentByType(GlobalStorageUpdateExecutor.class).update(progress, publisher);
   }
 
   public void updateModule(String moduleKey, ProgressWrapper progress) {
+    updateModule(moduleKey, progress, Runnable::run);
+  }
+
+  /**
+   * @param publisher runs the action that replaces the storage of the module by the downloaded one
+   */
+  public void updateModule(String moduleKey, ProgressWrapper progress, Consumer<Runnable> publisher) {
     GlobalStorageStatus updateStatus = getComponentByType(StorageManager.class).getGlobalStorageStatus();
     if (updateStatus == null) {
       throw new IllegalStateException("Please update server first");
     }
-    getComponentByType(ModuleStorageUpdateExecutor.class).update(moduleKey, progress);
+    getComponentByType(ModuleStorageUpdateExecutor.class).update(moduleKey, progress, publisher);
   }
 
   public StorageUpdateCheckResult checkForUpdate(ProgressWrapper progress) {
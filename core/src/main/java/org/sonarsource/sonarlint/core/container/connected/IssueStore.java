@@ -19,7 +19,14 @@
  */
 package org.sonarsource.sonarlint.core.container.connected;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import org.sonar.scanner.protocol.input.ScannerInput;
 
 public interface IssueStore {
@@ -36,6 +43,57 @@ public interface IssueStore {
    */
   void save(List<ScannerInput.ServerIssue> issues);
 
+  /**
+   * Store issues per file keys, like {@link #save(List)}, as they are consumed from the iterator.
+   * Implementations may store them without keeping all of them in memory.
+   *
+   * @param issues issues to store
+   */
+  default void save(Iterator<ScannerInput.ServerIssue> issues) {
+    List<ScannerInput.ServerIssue> list = new ArrayList<>();
+    issues.forEachRemaining(list::add);
+    save(list);
+  }
+
+  /**
+   * Replace all the stored issues by the ones consumed from the iterator. Implementations may only write the issues
+   * of the files that changed.
+   *
+   * @param issues all the issues to store
+   * @return the number of file keys whose issues were written or deleted
+   */
+  int replaceAll(Iterator<ScannerInput.ServerIssue> issues);
+
+  /**
+   * Store issues like {@link #save(Iterator)}, only making them visible to readers in the action given to the
+   * publisher, which runs it before returning. Implementations may store them on the side first, so that the
+   * publisher only has to switch to them.
+   *
+   * @param issues issues to store
+   * @param publisher runs the action making the issues visible
+   */
+  default void save(Iterator<ScannerInput.ServerIssue> issues, Consumer<Runnable> publisher) {
+    List<ScannerInput.ServerIssue> list = new ArrayList<>();
+    issues.forEachRemaining(list::add);
+    publisher.accept(() -> save(list));
+  }
+
+  /**
+   * Replace all the stored issues like {@link #replaceAll(Iterator)}, only making them visible to readers in the
+   * action given to the publisher, which runs it before returning.
+   *
+   * @param issues all the issues to store
+   * @param publisher runs the action making the issues visible
+   * @return the number of file keys whose issues were written or deleted
+   */
+  default int replaceAll(Iterator<ScannerInput.ServerIssue> issues, Consumer<Runnable> publisher) {
+    List<ScannerInput.ServerIssue> list = new ArrayList<>();
+    issues.forEachRemaining(list::add);
+    AtomicInteger changed = new AtomicInteger();
+    publisher.accept(() -> changed.set(replaceAll(list.iterator())));
+    return changed.get();
+  }
+
   /**
    * Load issues stored for specified file.
    *
@@ -44,6 +102,30 @@ public interface IssueStore {
    */
   List<ScannerInput.ServerIssue> load(String fileKey);
 
+  /**
+   * Load issues stored for several files.
+   *
+   * @param fileKeys the file keys
+   * @return issues per file key, without the files that have no issues
+   */
+  default Map<String, List<ScannerInput.ServerIssue>> load(Collection<String> fileKeys) {
+    Map<String, List<ScannerInput.ServerIssue>> issuesByFileKey = new HashMap<>();
+    for (String fileKey : fileKeys) {
+      List<ScannerInput.ServerIssue> issues = load(fileKey);
+      if (!issues.isEmpty()) {
+        issuesByFileKey.put(fileKey, issues);
+      }
+    }
+    return issuesByFileKey;
+  }
+
+  /**
+   * Load all stored issues.
+   *
+   * @return issues per file key
+   */
+  Map<String, List<ScannerInput.ServerIssue>> loadAll();
+
   /**
    * Deletes issues stored for specified file, if they exist.
    *
@@ -29,6 +29,6 @@ public class IssueStoreFactory implements Function<Path, IssueStore> {
 
   @Override
   public IssueStore apply(Path path) {
-    return new ServerIssueStore(path);
+    return new PackedServerIssueStore(path);
   }
 }
@@ -0,0 +1,1174 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+import org.sonarsource.sonarlint.core.container.connected.update.IssueUtils;
+import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.StoredServerIssue;
+
+/**
+ * Stores the server issues of a module in a single data file, instead of one file per file key.
+ * <p>
+ * The data file holds a block of length-delimited issues for each file key. An index file maps the file keys,
+ * sorted, to the offset and length of their block. Loading the issues of a file only reads the parts of the index
+ * visited by the binary search of its key, the block of the file and the strings used by its issues. No file of the
+ * store stays open, so that the directory can be deleted at any time.
+ * <p>
+ * Index files are never modified once written, so that readers don't need to lock the store: a small head file holds
+ * the number of the current index and the length of its delta. Saving the issues of a few files, or deleting them,
+ * appends the new blocks to the data file and their locations to the delta of the index, instead of writing a new
+ * index. Readers only read the delta up to the length given by the head. When the delta gets large, or when all the
+ * issues are replaced, a new index is written with the changes of the delta.
+ * <p>
+ * Writing methods taking a publisher write everything on the side, and only the action given to the publisher replaces
+ * the head, so that readers are blocked as little as possible.
+ * <p>
+ * When most of the data file is made of replaced blocks, the live blocks are copied to a new data file. Each data file
+ * has a generation number in its name, stored in the index, so that writing a new index is enough to switch to the new
+ * data file. The files replaced by a new index are kept until the next one, for the readers that just read the
+ * previous head. A reader finding them deleted reads the head again.
+ * <p>
+ * Issues are encoded by {@link ServerIssueCodec}, with the strings they share (but not their messages) stored once in a
+ * dictionary at the end of the index. The new strings of the blocks appended with a delta are stored in the delta.
+ * Readers only decode the strings of the issues they load. The dictionary only grows, until the data file is
+ * compacted: the live blocks are then encoded again with a new dictionary.
+ * <p>
+ * Issues stored with the previous layout ({@link ServerIssueStore}) are read as long as there is no index, and are
+ * migrated on the first write. An index of a previous version of this layout is ignored: the storage of the module is
+ * stale and must be updated.
+ */
+public class PackedServerIssueStore implements IssueStore {
+  static final String HEAD_FILE = "issues.head";
+  private static final String INDEX_FILE_PREFIX = "index-";
+  private static final String INDEX_FILE_SUFFIX = ".idx";
+  private static final String DELTA_FILE_SUFFIX = ".delta";
+  private static final String DATA_FILE_PREFIX = "issues-";
+  private static final String DATA_FILE_SUFFIX = ".data";
+  private static final String SPILL_FILE_PREFIX = "spill-";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long DEFAULT_SPILL_SIZE = 4L * 1024 * 1024;
+  private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+  private static final int MAGIC = 0x534c4958;
+  private static final int VERSION = 4;
+  // magic, version, data file generation, entry count, size of the keys, dictionary size, size of the live blocks
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+  private static final int GENERATION_OFFSET = 8;
+  private static final int COUNT_OFFSET = 16;
+  private static final int KEYS_SIZE_OFFSET = 20;
+  private static final int DICTIONARY_SIZE_OFFSET = 24;
+  private static final int LIVE_SIZE_OFFSET = 28;
+  // key offset, key length, data offset, data length
+  private static final int ENTRY_SIZE = 4 + 4 + 8 + 4;
+  // string offset, string length
+  private static final int DICTIONARY_ENTRY_SIZE = 4 + 4;
+  // index number, delta length
+  private static final int HEAD_SIZE = 8 + 8;
+  // don't bother compacting small data files
+  private static final long MIN_COMPACTION_SIZE = 1024L * 1024;
+  // beyond that, the delta is merged in a new index, it is read by each load
+  private static final long MAX_DELTA_SIZE = 64L * 1024;
+  // delta records: key, data offset, data length (or DELETED), length of the replaced block
+  private static final byte DELTA_ENTRY = 0;
+  // delta records: string with the next id
+  private static final byte DELTA_STRING = 1;
+  private static final int DELETED = -1;
+  private static final int MAX_READ_ATTEMPTS = 3;
+
+  private final Path base;
+  private final long spillSize;
+
+  public PackedServerIssueStore(Path base) {
+    this(base, DEFAULT_SPILL_SIZE);
+  }
+
+  PackedServerIssueStore(Path base, long spillSize) {
+    this.base = base;
+    this.spillSize = spillSize;
+  }
+
+  @Override
+  public void save(List<ServerIssue> issues) {
+    save(issues.iterator());
+  }
+
+  @Override
+  public void save(Iterator<ServerIssue> issues) {
+    save(issues, Runnable::run);
+  }
+
+  /**
+   * The blocks of the issues are appended to the data file and their locations to the delta of the current index, or
+   * to a new index if the delta gets large.
+   */
+  @Override
+  public synchronized void save(Iterator<ServerIssue> issues, Consumer<Runnable> publisher) {
+    write(issues, false, publisher);
+  }
+
+  @Override
+  public int replaceAll(Iterator<ServerIssue> issues) {
+    return replaceAll(issues, Runnable::run);
+  }
+
+  /**
+   * Only the blocks of the file keys whose issues changed are appended to the data file, and a new index is written.
+   * When most of the data file is made of replaced blocks, it is rewritten with the live blocks, like for a full update.
+   */
+  @Override
+  public synchronized int replaceAll(Iterator<ServerIssue> issues, Consumer<Runnable> publisher) {
+    return write(issues, true, publisher);
+  }
+
+  /**
+   * Issues are grouped per file key in memory until their size reaches the spill size. Beyond that, groups are written
+   * sorted by file key to temporary files, which are then merged into the data file. The memory used depends on the
+   * number of file keys, for the index, but not on the number of issues.
+   *
+   * @return the number of file keys whose issues changed
+   */
+  private int write(Iterator<ServerIssue> issues, boolean replaceAll, Consumer<Runnable> publisher) {
+    List<Path> spills = new ArrayList<>();
+    try {
+      Head head = openForWrite();
+      if (!replaceAll && head != null) {
+        try (Snapshot snapshot = new Snapshot(head, false)) {
+          if (!snapshot.stale) {
+            return appendDelta(snapshot, issues, spills, publisher);
+          }
+        }
+      }
+      Index index = readIndex(head);
+      BlockWriter writer = writeBlocks(index.generation, issues, index.dictionary::idOf, index.entries::get, index.dictionary::get, spills);
+      index.entries.putAll(writer.locations);
+      int changed = writer.locations.size();
+      if (replaceAll) {
+        int before = index.entries.size();
+        index.entries.keySet().retainAll(writer.written);
+        changed += before - index.entries.size();
+      }
+      if (changed > 0) {
+        publishIndex(index, publisher);
+      }
+      return changed;
+    } catch (IOException e) {
+      throw new StorageException("failed to save issues in " + base, e);
+    } finally {
+      for (Path spill : spills) {
+        deleteQuietly(spill);
+      }
+    }
+  }
+
+  private int appendDelta(Snapshot snapshot, Iterator<ServerIssue> issues, List<Path> spills, Consumer<Runnable> publisher) throws IOException {
+    DeltaDictionary dictionary = new DeltaDictionary(snapshot);
+    BlockWriter writer = writeBlocks(snapshot.generation, issues, dictionary::idOf, snapshot::find, dictionary, spills);
+    if (writer.locations.isEmpty()) {
+      return 0;
+    }
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(records);
+    for (String string : dictionary.added()) {
+      out.writeByte(DELTA_STRING);
+      writeString(out, string);
+    }
+    long liveChange = 0;
+    for (Map.Entry<String, Location> entry : writer.locations.entrySet()) {
+      int replacedLength = writer.replacedLengths.get(entry.getKey());
+      writeEntry(out, entry.getKey(), entry.getValue(), replacedLength);
+      liveChange += entry.getValue().length - replacedLength;
+    }
+    publishDelta(snapshot, records.toByteArray(), liveChange, publisher);
+    return writer.locations.size();
+  }
+
+  private BlockWriter writeBlocks(long generation, Iterator<ServerIssue> issues, ToIntFunction<String> ids, LocationFinder current,
+    IntFunction<String> strings, List<Path> spills) throws IOException {
+    SortedMap<String, ByteArrayOutputStream> pending = new TreeMap<>();
+    long pendingSize = 0;
+    while (issues.hasNext()) {
+      ServerIssue issue = issues.next();
+      StoredServerIssue encoded = ServerIssueCodec.encode(issue, ids);
+      ProtobufUtil.writeMessage(pending.computeIfAbsent(IssueUtils.createFileKey(issue), key -> new ByteArrayOutputStream()), encoded);
+      pendingSize += encoded.getSerializedSize();
+      if (pendingSize >= spillSize) {
+        spills.add(spill(pending, spills.size()));
+        pending.clear();
+        pendingSize = 0;
+      }
+    }
+
+    try (FileChannel channel = FileChannel.open(dataPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE)) {
+      BlockWriter writer = new BlockWriter(channel, current, strings);
+      if (spills.isEmpty()) {
+        for (Map.Entry<String, ByteArrayOutputStream> entry : pending.entrySet()) {
+          writer.write(entry.getKey(), entry.getValue());
+        }
+      } else {
+        if (!pending.isEmpty()) {
+          spills.add(spill(pending, spills.size()));
+          pending.clear();
+        }
+        merge(spills, writer);
+      }
+      writer.flush();
+      return writer;
+    }
+  }
+
+  /**
+   * Write the blocks of each file key, sorted by file key, preceded by the number of file keys.
+   */
+  private Path spill(SortedMap<String, ByteArrayOutputStream> blocks, int number) throws IOException {
+    Path spillPath = base.resolve(SPILL_FILE_PREFIX + number + TEMP_SUFFIX);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillPath)))) {
+      out.writeInt(blocks.size());
+      for (Map.Entry<String, ByteArrayOutputStream> entry : blocks.entrySet()) {
+        byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeInt(entry.getValue().size());
+        entry.getValue().writeTo(out);
+      }
+    }
+    return spillPath;
+  }
+
+  /**
+   * Merge the sorted spill files, so that the blocks of a file key found in several spills end up contiguous,
+   * in the order they were spilled.
+   */
+  private static void merge(List<Path> spills, BlockWriter writer) throws IOException {
+    List<SpillReader> readers = new ArrayList<>();
+    PriorityQueue<SpillReader> queue = new PriorityQueue<>(Comparator.comparing((SpillReader reader) -> reader.key).thenComparingInt(reader -> reader.number));
+    try {
+      for (Path spill : spills) {
+        SpillReader reader = new SpillReader(spill, readers.size());
+        readers.add(reader);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      while (!queue.isEmpty()) {
+        String key = queue.peek().key;
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+          SpillReader reader = queue.poll();
+          reader.copyBlock(block, buffer);
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+        writer.write(key, block);
+      }
+    } finally {
+      for (SpillReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // ignore, it's a temporary file
+    }
+  }
+
+  @Override
+  public synchronized void delete(String fileKey) {
+    try {
+      Head head = openForWrite();
+      if (head == null) {
+        return;
+      }
+      try (Snapshot snapshot = new Snapshot(head, false)) {
+        Location location = snapshot.find(fileKey);
+        if (location != null) {
+          ByteArrayOutputStream records = new ByteArrayOutputStream();
+          writeEntry(new DataOutputStream(records), fileKey, new Location(0, DELETED), location.length);
+          publishDelta(snapshot, records.toByteArray(), -location.length, Runnable::run);
+        }
+      }
+    } catch (IOException e) {
+      throw new StorageException("failed to delete issues for fileKey = " + fileKey, e);
+    }
+  }
+
+  @Override
+  public List<ServerIssue> load(String fileKey) {
+    Path headPath = base.resolve(HEAD_FILE);
+    if (!Files.exists(headPath)) {
+      return new ServerIssueStore(base).load(fileKey);
+    }
+    try {
+      return read(headPath, false, snapshot -> {
+        Location location = snapshot.find(fileKey);
+        return location != null ? snapshot.readBlock(location, new StoredDictionary(snapshot)) : Collections.<ServerIssue>emptyList();
+      });
+    } catch (IOException e) {
+      throw new StorageException("failed to load issues for fileKey = " + fileKey, e);
+    }
+  }
+
+  /**
+   * The index is searched and the data file opened once for all the file keys.
+   */
+  @Override
+  public Map<String, List<ServerIssue>> load(Collection<String> fileKeys) {
+    Path headPath = base.resolve(HEAD_FILE);
+    if (!Files.exists(headPath)) {
+      return new ServerIssueStore(base).load(fileKeys);
+    }
+    try {
+      return read(headPath, false, snapshot -> {
+        Map<String, List<ServerIssue>> issuesByFileKey = new HashMap<>();
+        StoredDictionary dictionary = new StoredDictionary(snapshot);
+        for (String fileKey : fileKeys) {
+          Location location = snapshot.find(fileKey);
+          if (location != null) {
+            issuesByFileKey.put(fileKey, snapshot.readBlock(location, dictionary));
+          }
+        }
+        return issuesByFileKey;
+      });
+    } catch (IOException e) {
+      throw new StorageException("failed to load issues in " + base, e);
+    }
+  }
+
+  @Override
+  public Map<String, List<ServerIssue>> loadAll() {
+    Path headPath = base.resolve(HEAD_FILE);
+    if (!Files.exists(headPath)) {
+      return new ServerIssueStore(base).loadAll();
+    }
+    try {
+      return read(headPath, true, snapshot -> {
+        Map<String, List<ServerIssue>> issuesByFileKey = new HashMap<>();
+        StoredDictionary dictionary = new StoredDictionary(snapshot);
+        for (Map.Entry<String, Location> entry : snapshot.entries().entrySet()) {
+          issuesByFileKey.put(entry.getKey(), snapshot.readBlock(entry.getValue(), dictionary));
+        }
+        return issuesByFileKey;
+      });
+    } catch (IOException e) {
+      throw new StorageException("failed to load issues in " + base, e);
+    }
+  }
+
+  /**
+   * @param whole whether most of the index is read, it is then read at once
+   */
+  private <T> T read(Path headPath, boolean whole, SnapshotReader<T> reader) throws IOException {
+    Head head = readHead(headPath);
+    for (int attempt = 1;; attempt++) {
+      try (Snapshot snapshot = new Snapshot(head, whole)) {
+        return reader.read(snapshot);
+      } catch (NoSuchFileException e) {
+        // replaced by a new index and deleted meanwhile
+        Head current = readHead(headPath);
+        if (attempt == MAX_READ_ATTEMPTS || current.equals(head)) {
+          throw e;
+        }
+        head = current;
+      }
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(length);
+    while (block.hasRemaining()) {
+      if (channel.read(block, offset + block.position()) < 0) {
+        throw new IOException("truncated file");
+      }
+    }
+    block.flip();
+    return block;
+  }
+
+  private static List<ServerIssue> decode(ByteBuffer block, IntFunction<String> dictionary) throws IOException {
+    try (InputStream input = ServerIssueCodec.unpack(block)) {
+      return ProtobufUtil.readMessages(input, StoredServerIssue.parser()).stream()
+        .map(stored -> ServerIssueCodec.decode(stored, dictionary))
+        .collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      // failed to read a string of the dictionary
+      throw e.getCause();
+    }
+  }
+
+  private Path indexPath(long number) {
+    return base.resolve(INDEX_FILE_PREFIX + number + INDEX_FILE_SUFFIX);
+  }
+
+  private Path deltaPath(long number) {
+    return base.resolve(INDEX_FILE_PREFIX + number + DELTA_FILE_SUFFIX);
+  }
+
+  private Path dataPath(long generation) {
+    return base.resolve(DATA_FILE_PREFIX + generation + DATA_FILE_SUFFIX);
+  }
+
+  private static Head readHead(Path headPath) throws IOException {
+    ByteBuffer head = ByteBuffer.wrap(Files.readAllBytes(headPath));
+    if (head.limit() == 8) {
+      // written by a previous version, its index is ignored anyway
+      return new Head(head.getLong(), 0);
+    }
+    if (head.limit() != HEAD_SIZE) {
+      throw new IOException("invalid head file");
+    }
+    return new Head(head.getLong(), head.getLong());
+  }
+
+  /**
+   * Replace the head, making the changes written for it visible to readers.
+   */
+  private void commit(Head head) {
+    Path headPath = base.resolve(HEAD_FILE);
+    Path tempPath = base.resolve(HEAD_FILE + TEMP_SUFFIX);
+    try {
+      Files.write(tempPath, ByteBuffer.allocate(HEAD_SIZE).putLong(head.number).putLong(head.deltaLength).array());
+      try {
+        Files.move(tempPath, headPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempPath, headPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new StorageException("failed to save issues in " + base, e);
+    }
+  }
+
+  /**
+   * @return false if the index was written by a previous version
+   */
+  private static boolean checkHeader(ByteBuffer header) throws IOException {
+    if (header.limit() < GENERATION_OFFSET + 8 || header.getInt(0) != MAGIC) {
+      throw new IOException("invalid index file");
+    }
+    int version = header.getInt(4);
+    if (version > VERSION || (version == VERSION && header.limit() < HEADER_SIZE)) {
+      throw new IOException("invalid index file");
+    }
+    return version == VERSION;
+  }
+
+  /**
+   * @return the current head, after migrating issues stored with the previous layout if there is no index yet,
+   * or null if the store is empty
+   */
+  @CheckForNull
+  private Head openForWrite() throws IOException {
+    Files.createDirectories(base);
+    Path headPath = base.resolve(HEAD_FILE);
+    if (!Files.exists(headPath)) {
+      return migrateLegacyIssues();
+    }
+    return readHead(headPath);
+  }
+
+  /**
+   * Read the whole index with the changes of its delta.
+   */
+  private Index readIndex(@Nullable Head head) throws IOException {
+    if (head == null) {
+      return new Index(0, 1, 1);
+    }
+    try (Snapshot snapshot = new Snapshot(head, true)) {
+      if (snapshot.stale) {
+        // start over with a new data file, the previous one can't be read anyway
+        return new Index(head.number, snapshot.generation + 1, snapshot.generation + 1);
+      }
+      Index index = new Index(head.number, snapshot.generation, snapshot.generation);
+      index.entries.putAll(snapshot.entries());
+      int size = snapshot.dictionarySize + snapshot.deltaStrings.size();
+      for (int id = 0; id < size; id++) {
+        index.dictionary.add(snapshot.string(id));
+      }
+      return index;
+    }
+  }
+
+  @CheckForNull
+  private Head migrateLegacyIssues() throws IOException {
+    List<Path> legacyFiles;
+    try (Stream<Path> stream = Files.walk(base)) {
+      legacyFiles = stream
+        .filter(Files::isRegularFile)
+        .filter(path -> !path.getParent().equals(base))
+        .collect(Collectors.toList());
+    }
+    if (legacyFiles.isEmpty()) {
+      return null;
+    }
+    Index index = new Index(0, 1, 1);
+    // each file holds the issues of a single file key
+    try (FileChannel channel = FileChannel.open(dataPath(index.generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      BlockWriter writer = new BlockWriter(channel, index.entries::get, index.dictionary::get);
+      for (Path file : legacyFiles) {
+        List<ServerIssue> issues;
+        try (InputStream input = Files.newInputStream(file)) {
+          issues = ProtobufUtil.readMessages(input, ServerIssue.parser());
+        }
+        if (!issues.isEmpty()) {
+          writer.write(IssueUtils.createFileKey(issues.get(0)), encode(issues, index.dictionary));
+        }
+      }
+      writer.flush();
+      index.entries.putAll(writer.locations);
+    }
+    // the index must be written before deleting the old files, in case we are interrupted
+    Head head = new Head(writeIndexFile(index), 0);
+    commit(head);
+    for (Path file : legacyFiles) {
+      Files.deleteIfExists(file);
+    }
+    return head;
+  }
+
+  private static boolean shouldCompact(long dataSize, long liveSize) {
+    return dataSize >= MIN_COMPACTION_SIZE && liveSize * 2 <= dataSize;
+  }
+
+  /**
+   * Copy the live blocks to a new data file if most of the current one is made of replaced blocks. They are encoded
+   * again, so that the strings of the replaced blocks are removed from the dictionary.
+   */
+  private Index compactIfNeeded(Index index) throws IOException {
+    Path dataPath = dataPath(index.generation);
+    long size = Files.exists(dataPath) ? Files.size(dataPath) : 0;
+    if (!shouldCompact(size, index.liveSize())) {
+      return index;
+    }
+    Index compacted = new Index(index.number, index.baseGeneration, index.generation + 1);
+    try (FileChannel source = FileChannel.open(dataPath, StandardOpenOption.READ);
+      FileChannel target = FileChannel.open(dataPath(compacted.generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      BlockWriter writer = new BlockWriter(target, compacted.entries::get, compacted.dictionary::get);
+      for (Map.Entry<String, Location> entry : index.entries.entrySet()) {
+        Location location = entry.getValue();
+        List<ServerIssue> issues = decode(read(source, location.offset, location.length), index.dictionary::get);
+        writer.write(entry.getKey(), encode(issues, compacted.dictionary));
+      }
+      writer.flush();
+      compacted.entries.putAll(writer.locations);
+    }
+    return compacted;
+  }
+
+  private static ByteArrayOutputStream encode(List<ServerIssue> issues, ServerIssueCodec.Dictionary dictionary) {
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    for (ServerIssue issue : issues) {
+      ProtobufUtil.writeMessage(block, ServerIssueCodec.encode(issue, dictionary::idOf));
+    }
+    return block;
+  }
+
+  /**
+   * Write a new index, compacting the data file if needed, and publish it.
+   */
+  private void publishIndex(Index index, Consumer<Runnable> publisher) throws IOException {
+    Index written = compactIfNeeded(index);
+    long number = writeIndexFile(written);
+    publisher.accept(() -> commit(new Head(number, 0)));
+    deleteUnusedFiles(number, written.generation, index.baseGeneration);
+  }
+
+  /**
+   * Append the records to the delta of the index, or write a new index with them if the delta gets large or the data
+   * file needs to be compacted, and publish them.
+   */
+  private void publishDelta(Snapshot snapshot, byte[] records, long liveChange, Consumer<Runnable> publisher) throws IOException {
+    Head head = snapshot.head;
+    try (FileChannel channel = FileChannel.open(deltaPath(head.number), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // drop what was appended by a write that was not published
+      channel.truncate(head.deltaLength);
+      ByteBuffer buffer = ByteBuffer.wrap(records);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, head.deltaLength + buffer.position());
+      }
+    }
+    Head next = new Head(head.number, head.deltaLength + records.length);
+    long dataSize = Files.size(dataPath(snapshot.generation));
+    if (next.deltaLength > MAX_DELTA_SIZE || shouldCompact(dataSize, snapshot.liveSize + liveChange)) {
+      publishIndex(readIndex(next), publisher);
+    } else {
+      publisher.accept(() -> commit(next));
+    }
+  }
+
+  private static void writeEntry(DataOutputStream out, String key, Location location, int replacedLength) throws IOException {
+    out.writeByte(DELTA_ENTRY);
+    writeString(out, key);
+    out.writeLong(location.offset);
+    out.writeInt(location.length);
+    out.writeInt(replacedLength);
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Write the index to a new file, that is not used until the head is replaced.
+   *
+   * @return the number of the new file
+   */
+  private long writeIndexFile(Index index) throws IOException {
+    List<byte[]> keys = toBytes(index.entries.keySet());
+    int keysSize = keys.stream().mapToInt(key -> key.length).sum();
+    List<byte[]> strings = toBytes(index.dictionary.strings());
+    int stringsSize = strings.stream().mapToInt(string -> string.length).sum();
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keys.size() * ENTRY_SIZE + keysSize + strings.size() * DICTIONARY_ENTRY_SIZE + stringsSize);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(index.generation).putInt(keys.size()).putInt(keysSize).putInt(strings.size()).putLong(index.liveSize());
+    int keyOffset = 0;
+    int i = 0;
+    for (Location location : index.entries.values()) {
+      int keyLength = keys.get(i++).length;
+      buffer.putInt(keyOffset).putInt(keyLength).putLong(location.offset).putInt(location.length);
+      keyOffset += keyLength;
+    }
+    for (byte[] key : keys) {
+      buffer.put(key);
+    }
+    int stringOffset = 0;
+    for (byte[] string : strings) {
+      buffer.putInt(stringOffset).putInt(string.length);
+      stringOffset += string.length;
+    }
+    for (byte[] string : strings) {
+      buffer.put(string);
+    }
+
+    long number = index.number + 1;
+    Files.write(indexPath(number), buffer.array());
+    return number;
+  }
+
+  private static List<byte[]> toBytes(Collection<String> strings) {
+    return strings.stream().map(string -> string.getBytes(StandardCharsets.UTF_8)).collect(Collectors.toList());
+  }
+
+  /**
+   * Delete the files used neither by the new index nor by the one it replaces, which might still be read.
+   * Files that can't be deleted are deleted with the next index.
+   */
+  private void deleteUnusedFiles(long number, long generation, long replacedGeneration) {
+    Set<Path> used = new HashSet<>(Arrays.asList(indexPath(number), indexPath(number - 1), deltaPath(number - 1), dataPath(generation),
+      dataPath(replacedGeneration)));
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(base, "{" + INDEX_FILE_PREFIX + "," + DATA_FILE_PREFIX + "}*")) {
+      for (Path path : stream) {
+        if (!used.contains(path)) {
+          deleteQuietly(path);
+        }
+      }
+    } catch (IOException e) {
+      // ignore, deleted with the next index
+    }
+  }
+
+  private static class Head {
+    private final long number;
+    // length of the delta of the index that is visible to readers
+    private final long deltaLength;
+
+    Head(long number, long deltaLength) {
+      this.number = number;
+      this.deltaLength = deltaLength;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Head)) {
+        return false;
+      }
+      Head other = (Head) obj;
+      return number == other.number && deltaLength == other.deltaLength;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(number) * 31 + Long.hashCode(deltaLength);
+    }
+  }
+
+  @FunctionalInterface
+  private interface SnapshotReader<T> {
+    T read(Snapshot snapshot) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface LocationFinder {
+    @CheckForNull
+    Location find(String key) throws IOException;
+  }
+
+  /**
+   * The index and data files of a head, with the changes of its delta, open for reading.
+   */
+  private final class Snapshot implements Closeable {
+    private final Head head;
+    private final IndexFile index;
+    private boolean stale;
+    private long generation;
+    private int count;
+    private long keysStart;
+    private int dictionarySize;
+    private long dictionaryStart;
+    private long stringsStart;
+    private long liveSize;
+    // null for the file keys deleted by the delta
+    private final Map<String, Location> deltaEntries = new LinkedHashMap<>();
+    private final List<String> deltaStrings = new ArrayList<>();
+    @CheckForNull
+    private FileChannel data;
+
+    Snapshot(Head head, boolean whole) throws IOException {
+      this.head = head;
+      this.index = new IndexFile(indexPath(head.number), whole);
+      try {
+        ByteBuffer header = index.read(0, (int) Math.min(HEADER_SIZE, index.size));
+        stale = !checkHeader(header);
+        generation = header.getLong(GENERATION_OFFSET);
+        if (stale) {
+          return;
+        }
+        count = header.getInt(COUNT_OFFSET);
+        keysStart = HEADER_SIZE + (long) count * ENTRY_SIZE;
+        dictionarySize = header.getInt(DICTIONARY_SIZE_OFFSET);
+        dictionaryStart = keysStart + header.getInt(KEYS_SIZE_OFFSET);
+        stringsStart = dictionaryStart + (long) dictionarySize * DICTIONARY_ENTRY_SIZE;
+        liveSize = header.getLong(LIVE_SIZE_OFFSET);
+        if (head.deltaLength > 0) {
+          readDelta();
+        }
+        data = FileChannel.open(dataPath(generation), StandardOpenOption.READ);
+      } catch (IOException | RuntimeException e) {
+        close();
+        throw e;
+      }
+    }
+
+    private void readDelta() throws IOException {
+      if (head.deltaLength > Integer.MAX_VALUE) {
+        throw new IOException("invalid delta file");
+      }
+      ByteBuffer delta;
+      try (FileChannel channel = FileChannel.open(deltaPath(head.number), StandardOpenOption.READ)) {
+        delta = PackedServerIssueStore.read(channel, 0, (int) head.deltaLength);
+      }
+      try {
+        while (delta.hasRemaining()) {
+          byte type = delta.get();
+          if (type == DELTA_STRING) {
+            deltaStrings.add(readString(delta));
+          } else if (type == DELTA_ENTRY) {
+            String key = readString(delta);
+            long offset = delta.getLong();
+            int length = delta.getInt();
+            int replacedLength = delta.getInt();
+            deltaEntries.put(key, length != DELETED ? new Location(offset, length) : null);
+            liveSize += Math.max(length, 0) - replacedLength;
+          } else {
+            throw new IOException("invalid delta file");
+          }
+        }
+      } catch (BufferUnderflowException e) {
+        throw new IOException("invalid delta file", e);
+      }
+    }
+
+    /**
+     * Binary search of the key in the sorted entries of the index, if it's not in the delta.
+     */
+    @CheckForNull
+    Location find(String fileKey) throws IOException {
+      if (deltaEntries.containsKey(fileKey)) {
+        return deltaEntries.get(fileKey);
+      }
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        ByteBuffer entry = index.read(HEADER_SIZE + (long) middle * ENTRY_SIZE, ENTRY_SIZE);
+        int comparison = index.string(keysStart + entry.getInt(0), entry.getInt(4)).compareTo(fileKey);
+        if (comparison < 0) {
+          low = middle + 1;
+        } else if (comparison > 0) {
+          high = middle - 1;
+        } else {
+          return new Location(entry.getLong(8), entry.getInt(16));
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return all the entries, sorted by file key
+     */
+    SortedMap<String, Location> entries() throws IOException {
+      SortedMap<String, Location> entries = new TreeMap<>();
+      for (int position = 0; position < count; position++) {
+        ByteBuffer entry = index.read(HEADER_SIZE + (long) position * ENTRY_SIZE, ENTRY_SIZE);
+        entries.put(index.string(keysStart + entry.getInt(0), entry.getInt(4)), new Location(entry.getLong(8), entry.getInt(16)));
+      }
+      for (Map.Entry<String, Location> entry : deltaEntries.entrySet()) {
+        if (entry.getValue() != null) {
+          entries.put(entry.getKey(), entry.getValue());
+        } else {
+          entries.remove(entry.getKey());
+        }
+      }
+      return entries;
+    }
+
+    String string(int id) throws IOException {
+      if (id >= dictionarySize && id - dictionarySize < deltaStrings.size()) {
+        return deltaStrings.get(id - dictionarySize);
+      }
+      if (id < 0 || id >= dictionarySize) {
+        throw new IllegalStateException("invalid string id in stored issues: " + id);
+      }
+      ByteBuffer entry = index.read(dictionaryStart + (long) id * DICTIONARY_ENTRY_SIZE, DICTIONARY_ENTRY_SIZE);
+      return index.string(stringsStart + entry.getInt(0), entry.getInt(4));
+    }
+
+    /**
+     * A block is small, reading it is cheaper than mapping the data file.
+     */
+    List<ServerIssue> readBlock(Location location, IntFunction<String> dictionary) throws IOException {
+      return decode(read(data, location.offset, location.length), dictionary);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        index.close();
+      } finally {
+        if (data != null) {
+          data.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads parts of an index file, either with positional reads, or from its whole content when most of it is needed.
+   */
+  private static class IndexFile implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+    @CheckForNull
+    private final ByteBuffer content;
+
+    IndexFile(Path path, boolean whole) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException("invalid index file");
+        }
+        content = whole ? PackedServerIssueStore.read(channel, 0, (int) size) : null;
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    ByteBuffer read(long position, int length) throws IOException {
+      if (position < 0 || length < 0 || position + length > size) {
+        throw new IOException("invalid index file");
+      }
+      if (content == null) {
+        return PackedServerIssueStore.read(channel, position, length);
+      }
+      ByteBuffer slice = content.duplicate();
+      slice.limit((int) position + length);
+      slice.position((int) position);
+      return slice.slice();
+    }
+
+    String string(long position, int length) throws IOException {
+      ByteBuffer bytes = read(position, length);
+      return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * The whole index, read to write a new one.
+   */
+  private static class Index {
+    // number of the index file it was read from, 0 if none
+    private final long number;
+    // generation of the data file of the index it was read from, used by readers until the new index is published
+    private final long baseGeneration;
+    private final long generation;
+    // sorted like the entries of the index file
+    private final TreeMap<String, Location> entries = new TreeMap<>();
+    private final ServerIssueCodec.Dictionary dictionary = new ServerIssueCodec.Dictionary();
+
+    Index(long number, long baseGeneration, long generation) {
+      this.number = number;
+      this.baseGeneration = baseGeneration;
+      this.generation = generation;
+    }
+
+    long liveSize() {
+      return entries.values().stream().mapToLong(location -> location.length).sum();
+    }
+  }
+
+  /**
+   * Dictionary of a snapshot. Strings are read when first used, and then shared by the issues using them.
+   */
+  private static class StoredDictionary implements IntFunction<String> {
+    private final Snapshot snapshot;
+    private final Map<Integer, String> decoded = new HashMap<>();
+
+    StoredDictionary(Snapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public String apply(int id) {
+      return decoded.computeIfAbsent(id, this::read);
+    }
+
+    private String read(int id) {
+      try {
+        return snapshot.string(id);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Dictionary of the blocks appended with a delta. Strings are looked up in the delta, but not in the index: those
+   * of the index used by the blocks are added again to the delta.
+   */
+  private static class DeltaDictionary implements IntFunction<String> {
+    private final StoredDictionary stored;
+    private final int firstId;
+    private final int firstAdded;
+    private final List<String> strings;
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    DeltaDictionary(Snapshot snapshot) {
+      this.stored = new StoredDictionary(snapshot);
+      this.firstId = snapshot.dictionarySize;
+      this.strings = new ArrayList<>(snapshot.deltaStrings);
+      this.firstAdded = strings.size();
+      for (int i = 0; i < strings.size(); i++) {
+        ids.putIfAbsent(strings.get(i), firstId + i);
+      }
+    }
+
+    int idOf(String string) {
+      return ids.computeIfAbsent(string, s -> {
+        strings.add(s);
+        return firstId + strings.size() - 1;
+      });
+    }
+
+    @Override
+    public String apply(int id) {
+      return id < firstId ? stored.apply(id) : strings.get(id - firstId);
+    }
+
+    List<String> added() {
+      return strings.subList(firstAdded, strings.size());
+    }
+  }
+
+  /**
+   * Appends blocks to the data file, unless they have the same issues as the current block of their file key.
+   */
+  private static class BlockWriter {
+    private final FileChannel channel;
+    private final LocationFinder current;
+    private final IntFunction<String> strings;
+    private final OutputStream out;
+    private final Set<String> written = new HashSet<>();
+    // locations of the appended blocks, and length of the blocks they replace
+    private final Map<String, Location> locations = new LinkedHashMap<>();
+    private final Map<String, Integer> replacedLengths = new HashMap<>();
+    private long offset;
+
+    BlockWriter(FileChannel channel, LocationFinder current, IntFunction<String> strings) throws IOException {
+      this.channel = channel;
+      this.current = current;
+      this.strings = strings;
+      this.offset = channel.size();
+      channel.position(offset);
+      this.out = new BufferedOutputStream(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * @param issues length-delimited encoded issues
+     */
+    void write(String key, ByteArrayOutputStream issues) throws IOException {
+      written.add(key);
+      byte[] block = ServerIssueCodec.pack(issues.toByteArray());
+      Location location = current.find(key);
+      if (location != null && hasSameIssues(location, block)) {
+        return;
+      }
+      out.write(block);
+      locations.put(key, new Location(offset, block.length));
+      replacedLengths.put(key, location != null ? location.length : 0);
+      offset += block.length;
+    }
+
+    /**
+     * The same issues are encoded differently when their strings have other ids, they are then decoded to be compared.
+     */
+    private boolean hasSameIssues(Location location, byte[] block) throws IOException {
+      // the block was written before the appended ones, so it can't be in the buffer of the output stream
+      ByteBuffer stored = read(channel, location.offset, location.length);
+      ByteBuffer appended = ByteBuffer.wrap(block);
+      return stored.equals(appended) || decode(stored, strings).equals(decode(appended, strings));
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+  }
+
+  private static class SpillReader implements Closeable {
+    private final DataInputStream input;
+    private final int number;
+    private int remaining;
+    private String key;
+    private int blockLength;
+
+    SpillReader(Path path, int number) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), COPY_BUFFER_SIZE));
+      this.number = number;
+      this.remaining = input.readInt();
+    }
+
+    /**
+     * Move to the next block, after the current one has been copied.
+     */
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      byte[] keyBytes = new byte[input.readInt()];
+      input.readFully(keyBytes);
+      key = new String(keyBytes, StandardCharsets.UTF_8);
+      blockLength = input.readInt();
+      return true;
+    }
+
+    void copyBlock(OutputStream out, byte[] buffer) throws IOException {
+      int left = blockLength;
+      while (left > 0) {
+        int read = input.read(buffer, 0, Math.min(buffer.length, left));
+        if (read < 0) {
+          throw new IOException("truncated spill file");
+        }
+        out.write(buffer, 0, read);
+        left -= read;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static class Location {
+    private final long offset;
+    private final int length;
+
+    Location(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
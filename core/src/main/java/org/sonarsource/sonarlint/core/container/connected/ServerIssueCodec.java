@@ -0,0 +1,257 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+import org.sonar.scanner.protocol.Constants.Severity;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.StoredServerIssue;
+import org.sonarsource.sonarlint.core.util.ByteBufferInputStream;
+
+/**
+ * Encoding of the server issues in the blocks of {@link PackedServerIssueStore}.
+ * <p>
+ * The strings repeated among the issues of a module (rule, path, assignee, ...) are replaced by their id in a
+ * dictionary. Messages are not: they are mostly unique, the dictionary would grow with the number of issues. Each block starts with a flag byte, telling whether it is deflated: large blocks are deflated when it makes
+ * them smaller.
+ */
+final class ServerIssueCodec {
+  private static final byte PLAIN = 0;
+  private static final byte DEFLATED = 1;
+  // deflating smaller blocks hardly saves anything
+  private static final int MIN_DEFLATED_SIZE = 256;
+
+  private ServerIssueCodec() {
+    // only statics
+  }
+
+  static StoredServerIssue encode(ServerIssue issue, ToIntFunction<String> ids) {
+    StoredServerIssue.Builder builder = StoredServerIssue.newBuilder();
+    int fields = 0;
+    if (issue.hasKey()) {
+      fields |= bit(ServerIssue.KEY_FIELD_NUMBER);
+      builder.setKey(issue.getKey());
+    }
+    if (issue.hasModuleKey()) {
+      fields |= bit(ServerIssue.MODULE_KEY_FIELD_NUMBER);
+      builder.setModuleKey(ids.applyAsInt(issue.getModuleKey()));
+    }
+    if (issue.hasPath()) {
+      fields |= bit(ServerIssue.PATH_FIELD_NUMBER);
+      builder.setPath(ids.applyAsInt(issue.getPath()));
+    }
+    if (issue.hasRuleRepository()) {
+      fields |= bit(ServerIssue.RULE_REPOSITORY_FIELD_NUMBER);
+      builder.setRuleRepository(ids.applyAsInt(issue.getRuleRepository()));
+    }
+    if (issue.hasRuleKey()) {
+      fields |= bit(ServerIssue.RULE_KEY_FIELD_NUMBER);
+      builder.setRuleKey(ids.applyAsInt(issue.getRuleKey()));
+    }
+    if (issue.hasLine()) {
+      fields |= bit(ServerIssue.LINE_FIELD_NUMBER);
+      builder.setLine(issue.getLine());
+    }
+    if (issue.hasMsg()) {
+      fields |= bit(ServerIssue.MSG_FIELD_NUMBER);
+      builder.setMsg(issue.getMsg());
+    }
+    if (issue.hasSeverity()) {
+      fields |= bit(ServerIssue.SEVERITY_FIELD_NUMBER);
+      builder.setSeverity(issue.getSeverity().getNumber());
+    }
+    if (issue.hasManualSeverity()) {
+      fields |= bit(ServerIssue.MANUAL_SEVERITY_FIELD_NUMBER);
+      builder.setManualSeverity(issue.getManualSeverity());
+    }
+    if (issue.hasResolution()) {
+      fields |= bit(ServerIssue.RESOLUTION_FIELD_NUMBER);
+      builder.setResolution(ids.applyAsInt(issue.getResolution()));
+    }
+    if (issue.hasStatus()) {
+      fields |= bit(ServerIssue.STATUS_FIELD_NUMBER);
+      builder.setStatus(ids.applyAsInt(issue.getStatus()));
+    }
+    if (issue.hasChecksum()) {
+      fields |= bit(ServerIssue.CHECKSUM_FIELD_NUMBER);
+      builder.setChecksum(issue.getChecksum());
+    }
+    if (issue.hasAssigneeLogin()) {
+      fields |= bit(ServerIssue.ASSIGNEE_LOGIN_FIELD_NUMBER);
+      builder.setAssigneeLogin(ids.applyAsInt(issue.getAssigneeLogin()));
+    }
+    if (issue.hasCreationDate()) {
+      fields |= bit(ServerIssue.CREATION_DATE_FIELD_NUMBER);
+      builder.setCreationDate(issue.getCreationDate());
+    }
+    if (issue.hasType()) {
+      fields |= bit(ServerIssue.TYPE_FIELD_NUMBER);
+      builder.setType(ids.applyAsInt(issue.getType()));
+    }
+    return builder.setFields(fields).build();
+  }
+
+  static ServerIssue decode(StoredServerIssue stored, IntFunction<String> strings) {
+    ServerIssue.Builder builder = ServerIssue.newBuilder();
+    int fields = stored.getFields();
+    if (isSet(fields, ServerIssue.KEY_FIELD_NUMBER)) {
+      builder.setKey(stored.getKey());
+    }
+    if (isSet(fields, ServerIssue.MODULE_KEY_FIELD_NUMBER)) {
+      builder.setModuleKey(strings.apply(stored.getModuleKey()));
+    }
+    if (isSet(fields, ServerIssue.PATH_FIELD_NUMBER)) {
+      builder.setPath(strings.apply(stored.getPath()));
+    }
+    if (isSet(fields, ServerIssue.RULE_REPOSITORY_FIELD_NUMBER)) {
+      builder.setRuleRepository(strings.apply(stored.getRuleRepository()));
+    }
+    if (isSet(fields, ServerIssue.RULE_KEY_FIELD_NUMBER)) {
+      builder.setRuleKey(strings.apply(stored.getRuleKey()));
+    }
+    if (isSet(fields, ServerIssue.LINE_FIELD_NUMBER)) {
+      builder.setLine(stored.getLine());
+    }
+    if (isSet(fields, ServerIssue.MSG_FIELD_NUMBER)) {
+      builder.setMsg(stored.getMsg());
+    }
+    if (isSet(fields, ServerIssue.SEVERITY_FIELD_NUMBER)) {
+      builder.setSeverity(Severity.valueOf(stored.getSeverity()));
+    }
+    if (isSet(fields, ServerIssue.MANUAL_SEVERITY_FIELD_NUMBER)) {
+      builder.setManualSeverity(stored.getManualSeverity());
+    }
+    if (isSet(fields, ServerIssue.RESOLUTION_FIELD_NUMBER)) {
+      builder.setResolution(strings.apply(stored.getResolution()));
+    }
+    if (isSet(fields, ServerIssue.STATUS_FIELD_NUMBER)) {
+      builder.setStatus(strings.apply(stored.getStatus()));
+    }
+    if (isSet(fields, ServerIssue.CHECKSUM_FIELD_NUMBER)) {
+      builder.setChecksum(stored.getChecksum());
+    }
+    if (isSet(fields, ServerIssue.ASSIGNEE_LOGIN_FIELD_NUMBER)) {
+      builder.setAssigneeLogin(strings.apply(stored.getAssigneeLogin()));
+    }
+    if (isSet(fields, ServerIssue.CREATION_DATE_FIELD_NUMBER)) {
+      builder.setCreationDate(stored.getCreationDate());
+    }
+    if (isSet(fields, ServerIssue.TYPE_FIELD_NUMBER)) {
+      builder.setType(strings.apply(stored.getType()));
+    }
+    return builder.build();
+  }
+
+  private static int bit(int fieldNumber) {
+    return 1 << fieldNumber;
+  }
+
+  private static boolean isSet(int fields, int fieldNumber) {
+    return (fields & bit(fieldNumber)) != 0;
+  }
+
+  /**
+   * @param issues length-delimited encoded issues
+   */
+  static byte[] pack(byte[] issues) {
+    if (issues.length >= MIN_DEFLATED_SIZE) {
+      Deflater deflater = new Deflater();
+      try {
+        deflater.setInput(issues);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(issues.length / 2);
+        out.write(DEFLATED);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished() && out.size() <= issues.length) {
+          int length = deflater.deflate(buffer);
+          out.write(buffer, 0, length);
+        }
+        if (deflater.finished() && out.size() <= issues.length) {
+          return out.toByteArray();
+        }
+      } finally {
+        deflater.end();
+      }
+    }
+    byte[] block = new byte[issues.length + 1];
+    block[0] = PLAIN;
+    System.arraycopy(issues, 0, block, 1, issues.length);
+    return block;
+  }
+
+  /**
+   * @return the length-delimited encoded issues of the block
+   */
+  static InputStream unpack(ByteBuffer block) throws IOException {
+    byte flag = block.get();
+    InputStream input = new ByteBufferInputStream(block);
+    if (flag == DEFLATED) {
+      return new InflaterInputStream(input);
+    } else if (flag != PLAIN) {
+      throw new IOException("invalid block");
+    }
+    return input;
+  }
+
+  /**
+   * Strings of the stored issues, with an id for each one, in the order they were added.
+   */
+  static class Dictionary {
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    int idOf(String string) {
+      Integer id = ids.get(string);
+      if (id == null) {
+        id = strings.size();
+        strings.add(string);
+        ids.put(string, id);
+      }
+      return id;
+    }
+
+    /**
+     * Add a stored string with the next id, even if it was already added with another id.
+     */
+    void add(String string) {
+      ids.putIfAbsent(string, strings.size());
+      strings.add(string);
+    }
+
+    String get(int id) {
+      return strings.get(id);
+    }
+
+    List<String> strings() {
+      return strings;
+    }
+  }
+}
@@ -20,26 +20,35 @@
 package org.sonarsource.sonarlint.core.container.connected;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.HashingPathMapper;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.ObjectStore;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Reader;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Writer;
 import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
 import org.sonarsource.sonarlint.core.container.connected.objectstore.SimpleObjectStore;
 import org.sonarsource.sonarlint.core.container.connected.update.IssueUtils;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
 
 public class ServerIssueStore implements IssueStore {
+  private final Path base;
   private final ObjectStore<String, List<ServerIssue>> store;
 
   public ServerIssueStore(Path base) {
+    this.base = base;
     HashingPathMapper pathGenerator = new HashingPathMapper(base, 2);
 
     Reader<List<ServerIssue>> reader = input -> ProtobufUtil.readMessages(input, ServerIssue.parser());
@@ -63,6 +72,15 @@ public class ServerIssueStore implements IssueStore {
     }
   }
 
+  @Override
+  public synchronized int replaceAll(Iterator<ServerIssue> issues) {
+    List<ServerIssue> list = new ArrayList<>();
+    issues.forEachRemaining(list::add);
+    FileUtils.deleteRecursively(base);
+    save(list);
+    return (int) list.stream().map(IssueUtils::createFileKey).distinct().count();
+  }
+
   @Override
   public synchronized void delete(String fileKey) {
     try {
@@ -72,6 +90,31 @@ public class ServerIssueStore implements IssueStore {
     }
   }
 
+  /**
+   * Each file holds the issues of a single file key.
+   */
+  @Override
+  public synchronized Map<String, List<ServerIssue>> loadAll() {
+    if (!Files.isDirectory(base)) {
+      return Collections.emptyMap();
+    }
+    Map<String, List<ServerIssue>> issuesByFileKey = new HashMap<>();
+    try (Stream<Path> files = Files.walk(base)) {
+      for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        List<ServerIssue> issues;
+        try (InputStream input = Files.newInputStream(file)) {
+          issues = ProtobufUtil.readMessages(input, ServerIssue.parser());
+        }
+        if (!issues.isEmpty()) {
+          issuesByFileKey.put(IssueUtils.createFileKey(issues.get(0)), issues);
+        }
+      }
+    } catch (IOException e) {
+      throw new StorageException("failed to load issues in " + base, e);
+    }
+    return issuesByFileKey;
+  }
+
   @Override
   public synchronized List<ServerIssue> load(String fileKey) {
     try {
@@ -19,9 +19,22 @@
  */
 package org.sonarsource.sonarlint.core.container.connected.update;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.sonar.scanner.protocol.input.ScannerInput;
 
 public interface IssueDownloader extends Function<String, List<ScannerInput.ServerIssue>> {
+
+  /**
+   * Pass the issues of the component to the handler, which must consume them before returning.
+   * Implementations may parse the issues while they are downloaded, without keeping all of them in memory.
+   *
+   * @param key project key, module key, or file key.
+   * @param handler consumer of the issues
+   */
+  default void download(String key, Consumer<Iterator<ScannerInput.ServerIssue>> handler) {
+    handler.accept(apply(key).iterator());
+  }
 }
@@ -21,8 +21,11 @@ package org.sonarsource.sonarlint.core.container.connected.update;
 
 import com.google.protobuf.Parser;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
@@ -48,15 +51,26 @@ public class IssueDownloaderImpl implements IssueDownloader {
    */
   @Override
   public List<ScannerInput.ServerIssue> apply(String key) {
+    List<ScannerInput.ServerIssue> issues = new ArrayList<>();
+    download(key, iterator -> iterator.forEachRemaining(issues::add));
+    return issues;
+  }
+
+  /**
+   * Issues are parsed from the response stream while the handler consumes them.
+   */
+  @Override
+  public void download(String key, Consumer<Iterator<ScannerInput.ServerIssue>> handler) {
     try (WsResponse response = wsClient.rawGet(getIssuesUrl(key))) {
       if (response.code() == 403 || response.code() == 404) {
-        return Collections.emptyList();
+        handler.accept(Collections.emptyIterator());
+        return;
       } else if (response.code() != 200) {
         throw SonarLintWsClient.handleError(response);
       }
       InputStream input = response.contentStream();
       Parser<ScannerInput.ServerIssue> parser = ScannerInput.ServerIssue.parser();
-      return ProtobufUtil.readMessages(input, parser);
+      handler.accept(ProtobufUtil.streamMessages(input, parser));
     }
   }
 
@@ -25,6 +25,7 @@ import java.io.Reader;
 import java.nio.file.Path;
 import org.sonarqube.ws.WsComponents;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
+import org.sonarsource.sonarlint.core.container.storage.ModuleIndex;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.plugin.Version;
@@ -73,7 +74,7 @@ public class ModuleListDownloader {
       },
       progress);
 
-    ProtobufUtil.writeToFile(moduleListBuilder.build(), dest.resolve(StorageManager.MODULE_LIST_PB));
+    write(moduleListBuilder.build(), dest);
   }
 
   private void fetchModulesListBefore6dot3(Path dest) {
@@ -91,13 +92,18 @@ public class ModuleListDownloader {
             .setQu(module.qu)
             .build());
         }
-        ProtobufUtil.writeToFile(moduleListBuilder.build(), dest.resolve(StorageManager.MODULE_LIST_PB));
+        write(moduleListBuilder.build(), dest);
       } catch (IOException e) {
         throw new IllegalStateException("Failed to load module list", e);
       }
     }
   }
 
+  private static void write(ModuleList moduleList, Path dest) {
+    ProtobufUtil.writeToFile(moduleList, dest.resolve(StorageManager.MODULE_LIST_PB));
+    ProtobufUtil.writeToFile(ModuleIndex.build(moduleList), dest.resolve(StorageManager.MODULE_SEARCH_INDEX_PB));
+  }
+
   private static class DefaultModule {
     String k;
     String nm;
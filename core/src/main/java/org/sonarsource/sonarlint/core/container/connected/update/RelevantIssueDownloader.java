@@ -0,0 +1,87 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected.update;
+
+import com.google.common.collect.Iterators;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.container.storage.StorageManager;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ActiveRules;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration;
+
+/**
+ * Only keeps the downloaded issues that can be matched with issues found by local analysis.
+ * The issues are filtered while they are parsed, so that the others are neither kept in memory nor stored.
+ */
+public class RelevantIssueDownloader implements IssueDownloader {
+
+  private static final String STATUS_CLOSED = "CLOSED";
+  private static final String RESOLUTION_FIXED = "FIXED";
+  private static final String RESOLUTION_REMOVED = "REMOVED";
+
+  private final IssueDownloader downloader;
+  private final Set<String> activeRuleKeys;
+
+  public RelevantIssueDownloader(IssueDownloader downloader, Set<String> activeRuleKeys) {
+    this.downloader = downloader;
+    this.activeRuleKeys = activeRuleKeys;
+  }
+
+  /**
+   * Issues of the rules active in the quality profiles of the module.
+   */
+  public static RelevantIssueDownloader forModule(IssueDownloader downloader, StorageManager storageManager, ModuleConfiguration moduleConfiguration) {
+    Set<String> activeRuleKeys = new HashSet<>();
+    for (String qProfileKey : moduleConfiguration.getQprofilePerLanguageMap().values()) {
+      Path activeRulesPath = storageManager.getActiveRulesPath(qProfileKey);
+      if (Files.exists(activeRulesPath)) {
+        activeRuleKeys.addAll(ProtobufUtil.readFile(activeRulesPath, ActiveRules.parser()).getActiveRulesByKeyMap().keySet());
+      }
+    }
+    return new RelevantIssueDownloader(downloader, activeRuleKeys);
+  }
+
+  @Override
+  public List<ScannerInput.ServerIssue> apply(String key) {
+    return downloader.apply(key).stream()
+      .filter(this::isRelevant)
+      .collect(Collectors.toList());
+  }
+
+  @Override
+  public void download(String key, Consumer<Iterator<ScannerInput.ServerIssue>> handler) {
+    downloader.download(key, issues -> handler.accept(Iterators.filter(issues, this::isRelevant)));
+  }
+
+  boolean isRelevant(ScannerInput.ServerIssue issue) {
+    if (STATUS_CLOSED.equals(issue.getStatus()) || RESOLUTION_FIXED.equals(issue.getResolution()) || RESOLUTION_REMOVED.equals(issue.getResolution())) {
+      return false;
+    }
+    return activeRuleKeys.contains(issue.getRuleRepository() + ":" + issue.getRuleKey());
+  }
+}
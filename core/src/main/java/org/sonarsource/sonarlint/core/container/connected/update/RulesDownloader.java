@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import javax.annotation.CheckForNull;
@@ -35,8 +36,10 @@ import org.sonarqube.ws.Rules.SearchResponse;
 import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.container.storage.RuleDescriptionStore;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ActiveRules;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescription;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.Rules;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.Rules.Rule.Builder;
 import org.sonarsource.sonarlint.core.util.StringUtils;
@@ -54,8 +57,9 @@ public class RulesDownloader {
 
   public void fetchRulesTo(Path destDir) {
     Rules.Builder rulesBuilder = Rules.newBuilder();
+    Map<String, RuleDescription> descriptionsByKey = new LinkedHashMap<>();
     Map<String, ActiveRules.Builder> activeRulesBuildersByQProfile = new HashMap<>();
-    fetchRulesAndActiveRules(rulesBuilder, activeRulesBuildersByQProfile);
+    fetchRulesAndActiveRules(rulesBuilder, descriptionsByKey, activeRulesBuildersByQProfile);
     Path activeRulesDir = destDir.resolve(StorageManager.ACTIVE_RULES_FOLDER);
     FileUtils.mkdirs(activeRulesDir);
     for (Map.Entry<String, ActiveRules.Builder> entry : activeRulesBuildersByQProfile.entrySet()) {
@@ -63,16 +67,18 @@ public class RulesDownloader {
     }
 
     ProtobufUtil.writeToFile(rulesBuilder.build(), destDir.resolve(StorageManager.RULES_PB));
+    RuleDescriptionStore.write(destDir, descriptionsByKey);
   }
 
-  private void fetchRulesAndActiveRules(Rules.Builder rulesBuilder, Map<String, ActiveRules.Builder> activeRulesBuildersByQProfile) {
+  private void fetchRulesAndActiveRules(Rules.Builder rulesBuilder, Map<String, RuleDescription> descriptionsByKey,
+    Map<String, ActiveRules.Builder> activeRulesBuildersByQProfile) {
     int page = 1;
     int pageSize = 500;
     int loaded = 0;
 
     while (true) {
       SearchResponse response = loadFromStream(wsClient.get(getUrl(page, pageSize)));
-      readPage(rulesBuilder, activeRulesBuildersByQProfile, response);
+      readPage(rulesBuilder, descriptionsByKey, activeRulesBuildersByQProfile, response);
       loaded += response.getPs();
 
       if (response.getTotal() <= loaded) {
@@ -101,8 +107,10 @@ public class RulesDownloader {
     }
   }
 
-  private static void readPage(Rules.Builder rulesBuilder, Map<String, ActiveRules.Builder> activeRulesBuildersByQProfile, SearchResponse response) {
+  private static void readPage(Rules.Builder rulesBuilder, Map<String, RuleDescription> descriptionsByKey, Map<String, ActiveRules.Builder> activeRulesBuildersByQProfile,
+    SearchResponse response) {
     Builder ruleBuilder = Rules.Rule.newBuilder();
+    RuleDescription.Builder descriptionBuilder = RuleDescription.newBuilder();
     for (Rule r : response.getRulesList()) {
       RuleKey ruleKey = RuleKey.parse(r.getKey());
 
@@ -114,8 +122,6 @@ public class RulesDownloader {
         .setSeverity(r.getSeverity())
         .setLang(r.getLang())
         .setInternalKey(r.getInternalKey())
-        .setHtmlDesc(r.getHtmlDesc())
-        .setHtmlNote(r.getHtmlNote())
         .setIsTemplate(r.getIsTemplate())
         .setTemplateKey(r.getTemplateKey());
 
@@ -125,6 +131,10 @@ public class RulesDownloader {
       }
 
       rulesBuilder.putRulesByKey(r.getKey(), ruleBuilder.build());
+
+      // descriptions are only needed to show rule details, they are stored apart from what analysis loads
+      descriptionBuilder.clear();
+      descriptionsByKey.put(r.getKey(), descriptionBuilder.setHtmlDesc(r.getHtmlDesc()).setHtmlNote(r.getHtmlNote()).build());
     }
     ActiveRules.ActiveRule.Builder arBuilder = ActiveRules.ActiveRule.newBuilder();
     for (Map.Entry<String, ActiveList> entry : response.getActives().getActives().entrySet()) {
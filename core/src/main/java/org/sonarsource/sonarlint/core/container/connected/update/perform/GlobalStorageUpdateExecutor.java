@@ -22,6 +22,7 @@ package org.sonarsource.sonarlint.core.container.connected.update.perform;
 import java.nio.file.Path;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.sonar.api.utils.TempFolder;
 import org.sonarsource.sonarlint.core.client.api.connected.SonarAnalyzer;
@@ -70,6 +71,16 @@ public class GlobalStorageUpdateExecutor {
   }
 
   public List<SonarAnalyzer> update(ProgressWrapper progress) {
+    return update(progress, Runnable::run);
+  }
+
+  /**
+   * The new storage is downloaded on the side, the current one can still be read meanwhile.
+   *
+   * @param publisher runs the action that replaces the current storage by the new one, once it is completely downloaded,
+   * before returning
+   */
+  public List<SonarAnalyzer> update(ProgressWrapper progress, Consumer<Runnable> publisher) {
     Path temp = tempFolder.newDir().toPath();
 
     try {
@@ -107,17 +118,14 @@ public class GlobalStorageUpdateExecutor {
       ProtobufUtil.writeToFile(storageStatus, temp.resolve(StorageManager.STORAGE_STATUS_PB));
 
       Path dest = storageManager.getGlobalStorageRoot();
-      FileUtils.deleteRecursively(dest);
-      FileUtils.mkdirs(dest.getParent());
-      FileUtils.moveDir(temp, dest);
+      publisher.accept(() -> FileUtils.replaceDir(temp, dest));
       return analyzers;
-    } catch (RuntimeException e) {
+    } finally {
       try {
         FileUtils.deleteRecursively(temp);
       } catch (RuntimeException ignore) {
         // ignore because we want to throw original exception
       }
-      throw e;
     }
   }
 }
@@ -22,12 +22,15 @@ package org.sonarsource.sonarlint.core.container.connected.update.perform;
 import java.nio.file.Path;
 import java.util.Date;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.sonar.api.utils.TempFolder;
+import org.sonarsource.sonarlint.core.client.api.connected.ConnectedGlobalConfiguration;
 import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
 import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
 import org.sonarsource.sonarlint.core.container.connected.update.IssueDownloader;
 import org.sonarsource.sonarlint.core.container.connected.update.ModuleConfigurationDownloader;
+import org.sonarsource.sonarlint.core.container.connected.update.RelevantIssueDownloader;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.GlobalProperties;
@@ -44,27 +47,45 @@ public class ModuleStorageUpdateExecutor {
   private final IssueStoreFactory issueStoreFactory;
   private final TempFolder tempFolder;
   private final ModuleConfigurationDownloader moduleConfigurationDownloader;
+  private final ConnectedGlobalConfiguration globalConfig;
 
   public ModuleStorageUpdateExecutor(StorageManager storageManager, SonarLintWsClient wsClient,
-    IssueDownloader issueDownloader, IssueStoreFactory issueStoreFactory, TempFolder tempFolder, ModuleConfigurationDownloader moduleConfigurationDownloader) {
+    IssueDownloader issueDownloader, IssueStoreFactory issueStoreFactory, TempFolder tempFolder, ModuleConfigurationDownloader moduleConfigurationDownloader,
+    ConnectedGlobalConfiguration globalConfig) {
     this.storageManager = storageManager;
     this.wsClient = wsClient;
     this.issueDownloader = issueDownloader;
     this.issueStoreFactory = issueStoreFactory;
     this.tempFolder = tempFolder;
     this.moduleConfigurationDownloader = moduleConfigurationDownloader;
+    this.globalConfig = globalConfig;
   }
 
   public void update(String moduleKey, ProgressWrapper progress) {
+    update(moduleKey, progress, Runnable::run);
+  }
+
+  /**
+   * The new storage of the module is downloaded on the side, the current one can still be read meanwhile.
+   *
+   * @param publisher runs the action that replaces the current storage of the module by the new one, once it is completely downloaded,
+   * before returning
+   */
+  public void update(String moduleKey, ProgressWrapper progress, Consumer<Runnable> publisher) {
     GlobalProperties globalProps = storageManager.readGlobalPropertiesFromStorage();
-    FileUtils.replaceDir(temp -> {
-      updateModuleConfiguration(moduleKey, globalProps, temp, progress);
-      updateRemoteIssues(moduleKey, temp);
+    Path temp = tempFolder.newDir().toPath();
+    try {
+      ModuleConfiguration moduleConfiguration = updateModuleConfiguration(moduleKey, globalProps, temp, progress);
+      updateRemoteIssues(moduleKey, moduleConfiguration, temp);
       updateStatus(temp);
-    }, storageManager.getModuleStorageRoot(moduleKey), tempFolder.newDir().toPath());
+      Path dest = storageManager.getModuleStorageRoot(moduleKey);
+      publisher.accept(() -> FileUtils.replaceDir(temp, dest));
+    } finally {
+      FileUtils.deleteRecursively(temp);
+    }
   }
 
-  private void updateModuleConfiguration(String moduleKey, GlobalProperties globalProps, Path temp, ProgressWrapper progress) {
+  private ModuleConfiguration updateModuleConfiguration(String moduleKey, GlobalProperties globalProps, Path temp, ProgressWrapper progress) {
     ModuleConfiguration moduleConfiguration = moduleConfigurationDownloader.fetchModuleConfiguration(storageManager.readServerInfosFromStorage().getVersion(), moduleKey,
       globalProps, progress);
     final Set<String> qProfileKeys = storageManager.readQProfilesFromStorage().getQprofilesByKeyMap().keySet();
@@ -75,11 +96,16 @@ public class ModuleStorageUpdateExecutor {
       }
     }
     ProtobufUtil.writeToFile(moduleConfiguration, temp.resolve(StorageManager.MODULE_CONFIGURATION_PB));
+    return moduleConfiguration;
   }
 
-  private void updateRemoteIssues(String moduleKey, Path temp) {
+  private void updateRemoteIssues(String moduleKey, ModuleConfiguration moduleConfiguration, Path temp) {
     Path basedir = temp.resolve(StorageManager.SERVER_ISSUES_DIR);
-    new ServerIssueUpdater(storageManager, issueDownloader, issueStoreFactory, tempFolder).updateServerIssues(moduleKey, basedir);
+    IssueDownloader downloader = issueDownloader;
+    if (globalConfig.isRelevantServerIssuesOnly()) {
+      downloader = RelevantIssueDownloader.forModule(issueDownloader, storageManager, moduleConfiguration);
+    }
+    new ServerIssueUpdater(storageManager, downloader, issueStoreFactory, tempFolder).updateServerIssues(moduleKey, basedir);
   }
 
   private void updateStatus(Path temp) {
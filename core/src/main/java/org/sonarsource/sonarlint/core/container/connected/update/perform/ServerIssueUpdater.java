@@ -19,16 +19,20 @@
  */
 package org.sonarsource.sonarlint.core.container.connected.update.perform;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.function.Consumer;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
+import org.sonarsource.sonarlint.core.container.connected.IssueStore;
 import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
 import org.sonarsource.sonarlint.core.container.connected.update.IssueDownloader;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 
 public class ServerIssueUpdater {
+  private static final Logger LOG = Loggers.get(ServerIssueUpdater.class);
 
   private final StorageManager storageManager;
   private final IssueDownloader issueDownloader;
@@ -42,14 +46,41 @@ public class ServerIssueUpdater {
     this.tempFolder = tempFolder;
   }
 
+  /**
+   * If issues were already synchronized, only the issues of the files that changed since then are written.
+   * Otherwise the issues are written in a new directory, which then replaces the current one.
+   */
   public void update(String moduleKey) {
-    Path work = tempFolder.newDir().toPath();
+    update(moduleKey, Runnable::run);
+  }
+
+  /**
+   * Like {@link #update(String)}, but the current issues can still be read while the new ones are downloaded and
+   * written on the side. Only switching to them is done by the published action.
+   *
+   * @param publisher runs the action that makes the downloaded issues visible in the storage, before returning
+   */
+  public void update(String moduleKey, Consumer<Runnable> publisher) {
     Path target = storageManager.getServerIssuesPath(moduleKey);
-    FileUtils.replaceDir(temp -> updateServerIssues(moduleKey, temp), target, work);
+    if (Files.isDirectory(target)) {
+      IssueStore issueStore = issueStoreFactory.apply(target);
+      issueDownloader.download(moduleKey, issues -> {
+        int changed = issueStore.replaceAll(issues, publisher);
+        LOG.debug("Issues of {} files changed in module '{}'", changed, moduleKey);
+      });
+      return;
+    }
+    Path work = tempFolder.newDir().toPath();
+    try {
+      updateServerIssues(moduleKey, work);
+      publisher.accept(() -> FileUtils.replaceDir(work, target));
+    } finally {
+      FileUtils.deleteRecursively(work);
+    }
   }
 
   public void updateServerIssues(String moduleKey, Path temp) {
-    List<ScannerInput.ServerIssue> issues = issueDownloader.apply(moduleKey);
-    issueStoreFactory.apply(temp).save(issues);
+    IssueStore issueStore = issueStoreFactory.apply(temp);
+    issueDownloader.download(moduleKey, issueStore::save);
   }
 }
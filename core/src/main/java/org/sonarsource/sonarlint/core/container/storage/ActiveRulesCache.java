@@ -0,0 +1,47 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.rule.ActiveRules;
+
+/**
+ * Active rules of the last analyses, by module key (null for the default quality profiles), so that they are not rebuilt from the storage
+ * for each analysis. The container is restarted when the global storage is updated, and modules must be invalidated when their
+ * configuration changes in the storage.
+ */
+public class ActiveRulesCache {
+  private final Map<String, ActiveRules> activeRulesByModuleKey = new HashMap<>();
+
+  public synchronized ActiveRules get(@Nullable String moduleKey, Supplier<ActiveRules> loader) {
+    return activeRulesByModuleKey.computeIfAbsent(moduleKey, k -> loader.get());
+  }
+
+  public synchronized void invalidateModule(String moduleKey) {
+    activeRulesByModuleKey.remove(moduleKey);
+  }
+
+  public synchronized void invalidateAll() {
+    activeRulesByModuleKey.clear();
+  }
+}
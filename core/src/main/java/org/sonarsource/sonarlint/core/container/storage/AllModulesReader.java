@@ -19,30 +19,70 @@
  */
 package org.sonarsource.sonarlint.core.container.storage;
 
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
+import javax.annotation.CheckForNull;
+
 import org.sonarsource.sonarlint.core.client.api.connected.RemoteModule;
 import org.sonarsource.sonarlint.core.container.model.DefaultRemoteModule;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList.Module;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleSearchIndex;
 
+/**
+ * The module list and its search index are loaded once, until the module list is updated.
+ */
 public class AllModulesReader implements Supplier<Map<String, RemoteModule>> {
   private final StorageManager storageManager;
 
+  @CheckForNull
+  private Map<String, RemoteModule> modulesByKey;
+  @CheckForNull
+  private ModuleIndex moduleIndex;
+
   public AllModulesReader(StorageManager storageManager) {
     this.storageManager = storageManager;
   }
 
   @Override
-  public Map<String, RemoteModule> get() {
-    Map<String, RemoteModule> results = new HashMap<>();
-    ModuleList readModuleListFromStorage = storageManager.readModuleListFromStorage();
-    Map<String, Module> modulesByKey = readModuleListFromStorage.getModulesByKeyMap();
-    for (Map.Entry<String, Module> entry : modulesByKey.entrySet()) {
-      results.put(entry.getKey(), new DefaultRemoteModule(entry.getValue()));
+  public synchronized Map<String, RemoteModule> get() {
+    if (modulesByKey == null) {
+      Map<String, RemoteModule> results = new HashMap<>();
+      ModuleList readModuleListFromStorage = storageManager.readModuleListFromStorage();
+      Map<String, Module> modulesByKeyMap = readModuleListFromStorage.getModulesByKeyMap();
+      for (Map.Entry<String, Module> entry : modulesByKeyMap.entrySet()) {
+        results.put(entry.getKey(), new DefaultRemoteModule(entry.getValue()));
+      }
+      modulesByKey = Collections.unmodifiableMap(results);
+    }
+    return modulesByKey;
+  }
+
+  public List<RemoteModule> search(String text) {
+    return getModuleIndex().search(text);
+  }
+
+  private synchronized ModuleIndex getModuleIndex() {
+    if (moduleIndex == null) {
+      ModuleSearchIndex index;
+      if (Files.exists(storageManager.getModuleSearchIndexPath())) {
+        index = storageManager.readModuleSearchIndexFromStorage();
+      } else {
+        // storage updated before the index was introduced
+        index = ModuleIndex.build(storageManager.readModuleListFromStorage());
+      }
+      moduleIndex = new ModuleIndex(index);
     }
-    return results;
+    return moduleIndex;
+  }
+
+  public synchronized void invalidate() {
+    modulesByKey = null;
+    moduleIndex = null;
   }
 }
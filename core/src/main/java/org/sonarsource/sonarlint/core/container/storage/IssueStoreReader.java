@@ -19,12 +19,23 @@
  */
 package org.sonarsource.sonarlint.core.container.storage;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerIssue;
 import org.sonarsource.sonarlint.core.container.connected.IssueStore;
@@ -33,15 +44,100 @@ import org.sonarsource.sonarlint.core.container.model.DefaultServerIssue;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration;
 
 public class IssueStoreReader {
+  private static final Logger LOG = LoggerFactory.getLogger(IssueStoreReader.class);
+  // bound on the number of cached issues, files without issues count as one
+  static final long MAX_CACHED_ISSUES = 100_000;
+
   private final IssueStoreFactory issueStoreFactory;
   private final StorageManager storageManager;
+  private final Map<String, ModulePaths> modulePathsByKey = new ConcurrentHashMap<>();
+  private final Cache<FileIssuesKey, List<ServerIssue>> issuesByFile;
 
   public IssueStoreReader(IssueStoreFactory issueStoreFactory, StorageManager storageManager) {
+    this(issueStoreFactory, storageManager, MAX_CACHED_ISSUES);
+  }
+
+  IssueStoreReader(IssueStoreFactory issueStoreFactory, StorageManager storageManager, long maxCachedIssues) {
     this.issueStoreFactory = issueStoreFactory;
     this.storageManager = storageManager;
+    this.issuesByFile = CacheBuilder.newBuilder()
+      .maximumWeight(maxCachedIssues)
+      .weigher((FileIssuesKey key, List<ServerIssue> issues) -> Math.max(1, issues.size()))
+      .recordStats()
+      .build();
   }
 
+  /**
+   * Issues are cached once decoded, until the issues of the file are updated in the storage.
+   */
   public List<ServerIssue> getServerIssues(String moduleKey, String filePath) {
+    FileIssuesKey key = new FileIssuesKey(moduleKey, filePath);
+    List<ServerIssue> issues = issuesByFile.getIfPresent(key);
+    if (issues == null) {
+      issues = Collections.unmodifiableList(loadServerIssues(moduleKey, filePath));
+      issuesByFile.put(key, issues);
+    }
+    // callers may modify the list they get
+    return new ArrayList<>(issues);
+  }
+
+  /**
+   * Issues of several files, reading the storage once for all the files that are not in the cache.
+   *
+   * @return issues per file path, in the order of the given paths
+   */
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey, Collection<String> filePaths) {
+    Map<String, List<ServerIssue>> found = new HashMap<>();
+    Map<String, String> fileKeysByMissingPath = new LinkedHashMap<>();
+    for (String filePath : filePaths) {
+      List<ServerIssue> issues = issuesByFile.getIfPresent(new FileIssuesKey(moduleKey, filePath));
+      if (issues != null) {
+        found.put(filePath, issues);
+      } else {
+        fileKeysByMissingPath.put(filePath, getFileKey(moduleKey, filePath));
+      }
+    }
+
+    if (!fileKeysByMissingPath.isEmpty()) {
+      IssueStore issueStore = issueStoreFactory.apply(storageManager.getServerIssuesPath(moduleKey));
+      Map<String, List<ScannerInput.ServerIssue>> loaded = issueStore.load(fileKeysByMissingPath.values());
+      for (Map.Entry<String, String> entry : fileKeysByMissingPath.entrySet()) {
+        String filePath = entry.getKey();
+        List<ServerIssue> issues = Collections.unmodifiableList(loaded.getOrDefault(entry.getValue(), Collections.emptyList()).stream()
+          .map(pbIssue -> transformIssue(pbIssue, moduleKey, filePath))
+          .collect(Collectors.toList()));
+        issuesByFile.put(new FileIssuesKey(moduleKey, filePath), issues);
+        found.put(filePath, issues);
+      }
+    }
+
+    Map<String, List<ServerIssue>> issuesByPath = new LinkedHashMap<>();
+    for (String filePath : filePaths) {
+      issuesByPath.put(filePath, new ArrayList<>(found.get(filePath)));
+    }
+    return issuesByPath;
+  }
+
+  /**
+   * Issues of all the files of the module. They are not cached, since they could be many.
+   *
+   * @return issues per file path, without the files that have no issues
+   */
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey) {
+    ModulePaths modulePaths = getModulePaths(moduleKey);
+    IssueStore issueStore = issueStoreFactory.apply(storageManager.getServerIssuesPath(moduleKey));
+    Map<String, List<ServerIssue>> issuesByPath = new HashMap<>();
+    for (List<ScannerInput.ServerIssue> pbIssues : issueStore.loadAll().values()) {
+      ScannerInput.ServerIssue first = pbIssues.get(0);
+      String filePath = modulePaths.getFilePath(first.getModuleKey(), first.getPath());
+      issuesByPath.put(filePath, pbIssues.stream()
+        .map(pbIssue -> transformIssue(pbIssue, moduleKey, filePath))
+        .collect(Collectors.toList()));
+    }
+    return issuesByPath;
+  }
+
+  private List<ServerIssue> loadServerIssues(String moduleKey, String filePath) {
     String fileKey = getFileKey(moduleKey, filePath);
 
     Path serverIssuesPath = storageManager.getServerIssuesPath(moduleKey);
@@ -55,30 +151,52 @@ public class IssueStoreReader {
   }
 
   public String getFileKey(String moduleKey, String filePath) {
+    return getModulePaths(moduleKey).getFileKey(filePath);
+  }
+
+  private ModulePaths getModulePaths(String moduleKey) {
+    return modulePathsByKey.computeIfAbsent(moduleKey, this::readModulePaths);
+  }
+
+  private ModulePaths readModulePaths(String moduleKey) {
     ModuleConfiguration moduleConfig = storageManager.readModuleConfigFromStorage(moduleKey);
 
     if (moduleConfig == null) {
       // unknown module
       throw new IllegalStateException("module not in storage: " + moduleKey);
     }
+    return new ModulePaths(moduleKey, moduleConfig);
+  }
 
-    Map<String, String> modulePaths = moduleConfig.getModulePathByKeyMap();
-
-    // find longest prefix match
-    String subModuleKey = moduleKey;
-    int prefixLen = 0;
+  /**
+   * Must be called when the configuration or the issues of the module change in the storage.
+   */
+  public void invalidateModule(String moduleKey) {
+    modulePathsByKey.remove(moduleKey);
+    issuesByFile.asMap().keySet().removeIf(key -> key.moduleKey.equals(moduleKey));
+  }
 
-    for (Map.Entry<String, String> entry : modulePaths.entrySet()) {
-      String entryModuleKey = entry.getKey();
-      String entryPath = entry.getValue();
-      if (!entryPath.isEmpty() && filePath.startsWith(entryPath) && prefixLen <= entryPath.length()) {
-        subModuleKey = entryModuleKey;
-        prefixLen = entryPath.length() + 1;
-      }
+  /**
+   * Must be called when the issues of the files change in the storage.
+   */
+  public void invalidateFiles(String moduleKey, Collection<String> filePaths) {
+    for (String filePath : filePaths) {
+      issuesByFile.invalidate(new FileIssuesKey(moduleKey, filePath));
     }
+  }
+
+  public void invalidateAll() {
+    modulePathsByKey.clear();
+    issuesByFile.invalidateAll();
+  }
+
+  public CacheStats getServerIssuesCacheStats() {
+    return issuesByFile.stats();
+  }
 
-    String relativeFilePath = filePath.substring(prefixLen);
-    return subModuleKey + ":" + relativeFilePath;
+  public void stop() {
+    CacheStats stats = issuesByFile.stats();
+    LOG.debug("Server issues cache: {} hits, {} misses, {} evictions", stats.hitCount(), stats.missCount(), stats.evictionCount());
   }
 
   private static ServerIssue transformIssue(ScannerInput.ServerIssue pbIssue, String moduleKey, String filePath) {
@@ -102,4 +220,31 @@ public class IssueStoreReader {
     issue.setRuleKey(pbIssue.getRuleRepository() + ":" + pbIssue.getRuleKey());
     return issue;
   }
+
+  private static class FileIssuesKey {
+    private final String moduleKey;
+    private final String filePath;
+
+    FileIssuesKey(String moduleKey, String filePath) {
+      this.moduleKey = moduleKey;
+      this.filePath = filePath;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof FileIssuesKey)) {
+        return false;
+      }
+      FileIssuesKey other = (FileIssuesKey) obj;
+      return moduleKey.equals(other.moduleKey) && filePath.equals(other.filePath);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * moduleKey.hashCode() + filePath.hashCode();
+    }
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.sonarsource.sonarlint.core.client.api.connected.RemoteModule;
+import org.sonarsource.sonarlint.core.container.model.DefaultRemoteModule;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList.Module;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleSearchIndex;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleSearchIndex.Token;
+
+/**
+ * Finds modules having, in their key or name, words starting with each of the words searched.
+ * Only the matching modules are converted to {@link RemoteModule}.
+ */
+public class ModuleIndex {
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final List<Module> modules;
+  private final String[] tokens;
+  private final int[][] moduleIndexes;
+
+  public ModuleIndex(ModuleSearchIndex index) {
+    this.modules = index.getModuleList();
+    int size = index.getTokenCount();
+    this.tokens = new String[size];
+    this.moduleIndexes = new int[size][];
+    for (int i = 0; i < size; i++) {
+      Token token = index.getToken(i);
+      tokens[i] = token.getText();
+      moduleIndexes[i] = token.getModuleIndexList().stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  public static ModuleSearchIndex build(ModuleList moduleList) {
+    List<Module> sortedModules = new ArrayList<>(moduleList.getModulesByKeyMap().values());
+    sortedModules.sort((m1, m2) -> m1.getKey().compareTo(m2.getKey()));
+
+    Map<String, List<Integer>> modulesByToken = new HashMap<>();
+    for (int i = 0; i < sortedModules.size(); i++) {
+      Module module = sortedModules.get(i);
+      Set<String> moduleTokens = new LinkedHashSet<>(tokenize(module.getKey()));
+      moduleTokens.addAll(tokenize(module.getName()));
+      for (String token : moduleTokens) {
+        modulesByToken.computeIfAbsent(token, t -> new ArrayList<>()).add(i);
+      }
+    }
+
+    ModuleSearchIndex.Builder builder = ModuleSearchIndex.newBuilder().addAllModule(sortedModules);
+    Token.Builder tokenBuilder = Token.newBuilder();
+    String[] sortedTokens = modulesByToken.keySet().toArray(new String[modulesByToken.size()]);
+    Arrays.sort(sortedTokens);
+    for (String token : sortedTokens) {
+      tokenBuilder.clear();
+      builder.addToken(tokenBuilder
+        .setText(token)
+        .addAllModuleIndex(modulesByToken.get(token))
+        .build());
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return matching modules, sorted by key. Empty if the text doesn't contain any word.
+   */
+  public List<RemoteModule> search(String text) {
+    List<String> searched = tokenize(text);
+    if (searched.isEmpty()) {
+      return Collections.emptyList();
+    }
+    BitSet matches = null;
+    for (String prefix : searched) {
+      BitSet prefixMatches = modulesMatching(prefix);
+      if (matches == null) {
+        matches = prefixMatches;
+      } else {
+        matches.and(prefixMatches);
+      }
+    }
+    List<RemoteModule> results = new ArrayList<>(matches.cardinality());
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      results.add(new DefaultRemoteModule(modules.get(i)));
+    }
+    return results;
+  }
+
+  private BitSet modulesMatching(String prefix) {
+    BitSet matches = new BitSet(modules.size());
+    int pos = Arrays.binarySearch(tokens, prefix);
+    if (pos < 0) {
+      pos = -pos - 1;
+    }
+    while (pos < tokens.length && tokens[pos].startsWith(prefix)) {
+      for (int moduleIndex : moduleIndexes[pos]) {
+        matches.set(moduleIndex);
+      }
+      pos++;
+    }
+    return matches;
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> result = new ArrayList<>();
+    for (String token : SEPARATORS.split(text.toLowerCase(Locale.ENGLISH))) {
+      if (!token.isEmpty()) {
+        result.add(token);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration;
+
+/**
+ * Resolves the sub-module of a file from the paths of the sub-modules, using a trie of the paths so that
+ * the longest matching path is found in a single pass over the file path.
+ */
+class ModulePaths {
+  private final String moduleKey;
+  private final Map<String, String> pathByModuleKey;
+  private final Node root = new Node();
+
+  ModulePaths(String moduleKey, ModuleConfiguration moduleConfig) {
+    this.moduleKey = moduleKey;
+    this.pathByModuleKey = moduleConfig.getModulePathByKeyMap();
+    for (Map.Entry<String, String> entry : pathByModuleKey.entrySet()) {
+      String path = entry.getValue();
+      if (!path.isEmpty()) {
+        add(path, entry.getKey());
+      }
+    }
+  }
+
+  private void add(String path, String subModuleKey) {
+    Node node = root;
+    for (int i = 0; i < path.length(); i++) {
+      node = node.children.computeIfAbsent(path.charAt(i), c -> new Node());
+    }
+    // first module with a given path wins
+    if (node.moduleKey == null) {
+      node.moduleKey = subModuleKey;
+    }
+  }
+
+  String getFileKey(String filePath) {
+    String subModuleKey = moduleKey;
+    int prefixLen = 0;
+
+    Node node = root;
+    for (int i = 0; i < filePath.length(); i++) {
+      node = node.child(filePath.charAt(i));
+      if (node == null) {
+        break;
+      }
+      if (node.moduleKey != null) {
+        subModuleKey = node.moduleKey;
+        prefixLen = i + 2;
+      }
+    }
+
+    String relativeFilePath = filePath.substring(prefixLen);
+    return subModuleKey + ":" + relativeFilePath;
+  }
+
+  /**
+   * Reverse of {@link #getFileKey(String)}, from the sub-module and path of an issue.
+   */
+  String getFilePath(String subModuleKey, String relativeFilePath) {
+    String path = pathByModuleKey.get(subModuleKey);
+    if (path == null || path.isEmpty()) {
+      return relativeFilePath;
+    }
+    return path + "/" + relativeFilePath;
+  }
+
+  private static class Node {
+    private final Map<Character, Node> children = new HashMap<>(2);
+    private String moduleKey;
+
+    @CheckForNull
+    Node child(char c) {
+      return children.get(c);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+
+/**
+ * Messages read from storage files, by path. A file is read again when its last modified time, size or file key changed since
+ * it was read. Messages are immutable, so they can be shared by all readers.
+ */
+public class ProtobufFileCache {
+  private final Map<Path, Entry> entriesByPath = new ConcurrentHashMap<>();
+
+  public <T extends Message> T read(Path file, Parser<T> parser) {
+    FileVersion version = FileVersion.of(file);
+    Entry entry = entriesByPath.get(file);
+    if (entry != null && entry.version.equals(version)) {
+      T cached = entry.messageParsedBy(parser);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // if the file is modified while being read, the version is older than the content and the file is read again next time
+    T message = ProtobufUtil.readFile(file, parser);
+    entriesByPath.put(file, new Entry(version, parser, message));
+    return message;
+  }
+
+  public void clear() {
+    entriesByPath.clear();
+  }
+
+  private static class Entry {
+    private final FileVersion version;
+    private final Parser<?> parser;
+    private final Message message;
+
+    private Entry(FileVersion version, Parser<?> parser, Message message) {
+      this.version = version;
+      this.parser = parser;
+      this.message = message;
+    }
+
+    /**
+     * @return the message if it was parsed by the given parser, null otherwise
+     */
+    @CheckForNull
+    // the parser of a message type only produces messages of that type
+    @SuppressWarnings("unchecked")
+    private <T extends Message> T messageParsedBy(Parser<T> requested) {
+      return parser == requested ? (T) message : null;
+    }
+  }
+
+  private static class FileVersion {
+    private final FileTime lastModifiedTime;
+    private final long size;
+    private final Object fileKey;
+
+    private FileVersion(FileTime lastModifiedTime, long size, @Nullable Object fileKey) {
+      this.lastModifiedTime = lastModifiedTime;
+      this.size = size;
+      this.fileKey = fileKey;
+    }
+
+    private static FileVersion of(Path file) {
+      try {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileVersion(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey());
+      } catch (IOException e) {
+        throw new StorageException("Failed to read file: " + file, e);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FileVersion other = (FileVersion) o;
+      return size == other.size && lastModifiedTime.equals(other.lastModifiedTime) && Objects.equals(fileKey, other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(lastModifiedTime, size, fileKey);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescription;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescriptionIndex;
+
+/**
+ * HTML descriptions of the rules, read one at a time from a data file where they are located by an index.
+ * The index, which is small, is read on first use and kept in memory.
+ */
+public class RuleDescriptionStore {
+  private final StorageManager storageManager;
+  private Map<String, RuleDescriptionIndex.Location> locationByKey;
+
+  public RuleDescriptionStore(StorageManager storageManager) {
+    this.storageManager = storageManager;
+  }
+
+  /**
+   * Write the descriptions of the rules, by rule key, to the data file and the index, in the given directory.
+   */
+  public static void write(Path destDir, Map<String, RuleDescription> descriptionsByKey) {
+    RuleDescriptionIndex.Builder index = RuleDescriptionIndex.newBuilder();
+    RuleDescriptionIndex.Location.Builder location = RuleDescriptionIndex.Location.newBuilder();
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(destDir.resolve(StorageManager.RULE_DESCRIPTIONS_DATA)))) {
+      long offset = 0;
+      for (Map.Entry<String, RuleDescription> entry : descriptionsByKey.entrySet()) {
+        RuleDescription description = entry.getValue();
+        description.writeTo(out);
+        int length = description.getSerializedSize();
+        index.putLocationByKey(entry.getKey(), location.setOffset(offset).setLength(length).build());
+        offset += length;
+      }
+    } catch (IOException e) {
+      throw new StorageException("Failed to write rule descriptions in " + destDir, e);
+    }
+    ProtobufUtil.writeToFile(index.build(), destDir.resolve(StorageManager.RULE_DESCRIPTIONS_INDEX_PB));
+  }
+
+  /**
+   * @return null if the storage has no description for the rule
+   */
+  @CheckForNull
+  public synchronized RuleDescription get(String ruleKey) {
+    if (locationByKey == null) {
+      Path indexPath = storageManager.getRuleDescriptionsIndexPath();
+      if (!Files.exists(indexPath)) {
+        return null;
+      }
+      locationByKey = ProtobufUtil.readFile(indexPath, RuleDescriptionIndex.parser()).getLocationByKeyMap();
+    }
+    RuleDescriptionIndex.Location location = locationByKey.get(ruleKey);
+    if (location == null) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(storageManager.getRuleDescriptionsPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(location.getLength());
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, location.getOffset() + buffer.position()) < 0) {
+          throw new IOException("truncated file");
+        }
+      }
+      return RuleDescription.parseFrom(buffer.array());
+    } catch (IOException e) {
+      throw new StorageException("Failed to read description of rule " + ruleKey, e);
+    }
+  }
+}
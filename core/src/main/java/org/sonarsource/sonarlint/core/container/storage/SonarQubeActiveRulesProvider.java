@@ -43,39 +43,43 @@ public class SonarQubeActiveRulesProvider extends ProviderAdapter {
   private ActiveRules activeRules;
 
   public ActiveRules provide(Sonarlint.Rules storageRules, Sonarlint.QProfiles qProfiles, StorageManager storageManager, Rules rules,
-    ConnectedAnalysisConfiguration analysisConfiguration, Languages languages) {
+    ConnectedAnalysisConfiguration analysisConfiguration, Languages languages, ActiveRulesCache activeRulesCache) {
     if (activeRules == null) {
+      activeRules = activeRulesCache.get(analysisConfiguration.moduleKey(),
+        () -> loadActiveRules(storageRules, qProfiles, storageManager, rules, analysisConfiguration, languages));
+    }
+    return activeRules;
+  }
 
-      Map<String, String> qProfilesByLanguage = loadQualityProfilesFromStorage(qProfiles, storageManager, analysisConfiguration);
+  private static ActiveRules loadActiveRules(Sonarlint.Rules storageRules, Sonarlint.QProfiles qProfiles, StorageManager storageManager, Rules rules,
+    ConnectedAnalysisConfiguration analysisConfiguration, Languages languages) {
+    Map<String, String> qProfilesByLanguage = loadQualityProfilesFromStorage(qProfiles, storageManager, analysisConfiguration);
 
-      ActiveRulesBuilder builder = new ActiveRulesBuilder();
-      for (Map.Entry<String, String> entry : qProfilesByLanguage.entrySet()) {
-        String language = entry.getKey();
-        if (languages.get(language) == null) {
-          continue;
-        }
+    ActiveRulesBuilder builder = new ActiveRulesBuilder();
+    for (Map.Entry<String, String> entry : qProfilesByLanguage.entrySet()) {
+      String language = entry.getKey();
+      if (languages.get(language) == null) {
+        continue;
+      }
 
-        String qProfileKey = entry.getValue();
-        QProfile qProfile = qProfiles.getQprofilesByKeyOrThrow(qProfileKey);
+      String qProfileKey = entry.getValue();
+      QProfile qProfile = qProfiles.getQprofilesByKeyOrThrow(qProfileKey);
 
-        if (qProfile.getActiveRuleCount() == 0) {
-          LOG.debug("  * {}: {} (0 rules)", language, qProfileKey);
-          continue;
-        }
+      if (qProfile.getActiveRuleCount() == 0) {
+        LOG.debug("  * {}: {} (0 rules)", language, qProfileKey);
+        continue;
+      }
 
-        Sonarlint.ActiveRules activeRulesFromStorage = ProtobufUtil.readFile(storageManager.getActiveRulesPath(qProfileKey),
-          Sonarlint.ActiveRules.parser());
+      Sonarlint.ActiveRules activeRulesFromStorage = storageManager.readActiveRulesFromStorage(qProfileKey);
 
-        LOG.debug("  * {}: {} ({} rules)", language, qProfileKey, activeRulesFromStorage.getActiveRulesByKeyMap().size());
+      LOG.debug("  * {}: {} ({} rules)", language, qProfileKey, activeRulesFromStorage.getActiveRulesByKeyMap().size());
 
-        for (ActiveRule activeRule : activeRulesFromStorage.getActiveRulesByKeyMap().values()) {
-          createNewActiveRule(builder, activeRule, storageRules, language, rules);
-        }
+      for (ActiveRule activeRule : activeRulesFromStorage.getActiveRulesByKeyMap().values()) {
+        createNewActiveRule(builder, activeRule, storageRules, language, rules);
       }
-
-      activeRules = builder.build();
     }
-    return activeRules;
+
+    return builder.build();
   }
 
   private static void createNewActiveRule(ActiveRulesBuilder builder, ActiveRule activeRule, Sonarlint.Rules storageRules, String language, Rules rules) {
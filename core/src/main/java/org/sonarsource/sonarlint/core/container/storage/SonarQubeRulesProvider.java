@@ -42,8 +42,7 @@ public class SonarQubeRulesProvider extends ProviderAdapter {
         NewRule newRule = builder.add(RuleKey.of(r.getRepo(), r.getKey()))
           .setName(r.getName())
           .setInternalKey(r.getInternalKey())
-          .setSeverity(r.getSeverity())
-          .setDescription(r.getHtmlDesc());
+          .setSeverity(r.getSeverity());
 
         if (StringUtils.isNotEmpty(r.getType())) {
           newRule.setType(r.getType());
@@ -20,8 +20,13 @@
 package org.sonarsource.sonarlint.core.container.storage;
 
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -93,10 +98,12 @@ public class StorageContainer extends ComponentContainer {
       GlobalUpdateStatusReader.class,
       ModuleStorageStatusReader.class,
       StorageRuleDetailsReader.class,
+      RuleDescriptionStore.class,
       IssueStoreFactory.class,
 
       // analysis
       StorageAnalyzer.class,
+      ActiveRulesCache.class,
 
       // needed during analysis (immutable)
       UriReader.class,
@@ -107,6 +114,9 @@ public class StorageContainer extends ComponentContainer {
       new SonarQubeVersion(version),
       SonarRuntimeImpl.forSonarLint(version),
       System2.INSTANCE);
+    if (getComponentByType(ConnectedGlobalConfiguration.class).isWarmStart()) {
+      add(StoragePluginSnapshotStore.class);
+    }
   }
 
   @Override
@@ -161,36 +171,89 @@ public class StorageContainer extends ComponentContainer {
     return getComponentByType(AllModulesReader.class).get();
   }
 
+  public List<RemoteModule> searchModules(String text) {
+    return getComponentByType(AllModulesReader.class).search(text);
+  }
+
   public List<ServerIssue> getServerIssues(String moduleKey, String filePath) {
     return getComponentByType(IssueStoreReader.class).getServerIssues(moduleKey, filePath);
   }
 
-  public List<ServerIssue> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, String filePath) {
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey, Collection<String> filePaths) {
+    return getComponentByType(IssueStoreReader.class).getServerIssues(moduleKey, filePaths);
+  }
+
+  public Map<String, List<ServerIssue>> getServerIssues(String moduleKey) {
+    return getComponentByType(IssueStoreReader.class).getServerIssues(moduleKey);
+  }
+
+  public void invalidateModule(String moduleKey) {
+    getComponentByType(IssueStoreReader.class).invalidateModule(moduleKey);
+    getComponentByType(ActiveRulesCache.class).invalidateModule(moduleKey);
+  }
+
+  /**
+   * Issues are downloaded without blocking the readers of the storage.
+   *
+   * @param publisher runs the actions that write to the storage, so that they can be synchronized with the readers
+   */
+  public List<ServerIssue> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, String filePath, Consumer<Runnable> publisher) {
     IssueStoreReader issueStoreReader = getComponentByType(IssueStoreReader.class);
-    StorageManager storageManager = getComponentByType(StorageManager.class);
-    PartialUpdater updater = PartialUpdater.create(storageManager, serverConfig, issueStoreReader);
-    updater.updateFileIssues(moduleKey, filePath);
+    PartialUpdater updater = createPartialUpdater(serverConfig);
+    updater.updateFileIssues(moduleKey, filePath, save -> publisher.accept(() -> {
+      save.run();
+      issueStoreReader.invalidateFiles(moduleKey, Collections.singletonList(filePath));
+    }));
     return getServerIssues(moduleKey, filePath);
   }
 
-  public void downloadServerIssues(ServerConfiguration serverConfig, String moduleKey) {
+  public Map<String, List<ServerIssue>> downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, Collection<String> filePaths,
+    ProgressWrapper progress, Consumer<Runnable> publisher) {
     IssueStoreReader issueStoreReader = getComponentByType(IssueStoreReader.class);
-    StorageManager storageManager = getComponentByType(StorageManager.class);
-    PartialUpdater updater = PartialUpdater.create(storageManager, serverConfig, issueStoreReader);
-    TempFolder tempFolder = getComponentByType(TempFolder.class);
-    updater.updateFileIssues(moduleKey, tempFolder);
+    PartialUpdater updater = createPartialUpdater(serverConfig);
+    // invalidated along with the save, the files that failed to download are just read again
+    Set<String> updated = updater.updateFileIssues(moduleKey, filePaths, progress, save -> publisher.accept(() -> {
+      save.run();
+      issueStoreReader.invalidateFiles(moduleKey, filePaths);
+    }));
+    Map<String, List<ServerIssue>> issuesByPath = new LinkedHashMap<>();
+    for (String filePath : filePaths) {
+      if (updated.contains(filePath)) {
+        issuesByPath.put(filePath, getServerIssues(moduleKey, filePath));
+      }
+    }
+    return issuesByPath;
   }
 
-  public Map<String, RemoteModule> downloadModuleList(ServerConfiguration serverConfig, ProgressWrapper progress) {
+  public void downloadServerIssues(ServerConfiguration serverConfig, String moduleKey, Consumer<Runnable> publisher) {
     IssueStoreReader issueStoreReader = getComponentByType(IssueStoreReader.class);
-    StorageManager storageManager = getComponentByType(StorageManager.class);
-    PartialUpdater updater = PartialUpdater.create(storageManager, serverConfig, issueStoreReader);
-    updater.updateModuleList(progress);
+    PartialUpdater updater = createPartialUpdater(serverConfig);
+    TempFolder tempFolder = getComponentByType(TempFolder.class);
+    updater.updateFileIssues(moduleKey, tempFolder, write -> publisher.accept(() -> {
+      write.run();
+      issueStoreReader.invalidateModule(moduleKey);
+    }));
+  }
+
+  public Map<String, RemoteModule> downloadModuleList(ServerConfiguration serverConfig, ProgressWrapper progress, Consumer<Runnable> publisher) {
+    AllModulesReader allModulesReader = getComponentByType(AllModulesReader.class);
+    PartialUpdater updater = createPartialUpdater(serverConfig);
+    updater.updateModuleList(progress, getComponentByType(TempFolder.class), replace -> publisher.accept(() -> {
+      replace.run();
+      allModulesReader.invalidate();
+    }));
     return allModulesByKey();
   }
 
+  private PartialUpdater createPartialUpdater(ServerConfiguration serverConfig) {
+    boolean relevantIssuesOnly = getComponentByType(ConnectedGlobalConfiguration.class).isRelevantServerIssuesOnly();
+    return PartialUpdater.create(getComponentByType(StorageManager.class), serverConfig, getComponentByType(IssueStoreReader.class), relevantIssuesOnly);
+  }
+
   public void deleteStorage() {
     StorageManager storageManager = getComponentByType(StorageManager.class);
     FileUtils.deleteRecursively(storageManager.getServerStorageRoot());
+    getComponentByType(IssueStoreReader.class).invalidateAll();
+    getComponentByType(ActiveRulesCache.class).invalidateAll();
   }
 }
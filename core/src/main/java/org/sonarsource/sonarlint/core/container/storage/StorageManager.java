@@ -19,6 +19,8 @@
  */
 package org.sonarsource.sonarlint.core.container.storage;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -26,6 +28,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Date;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedGlobalConfiguration;
 import org.sonarsource.sonarlint.core.client.api.connected.GlobalStorageStatus;
 import org.sonarsource.sonarlint.core.container.model.DefaultGlobalStorageStatus;
@@ -38,25 +41,32 @@ public class StorageManager {
   /**
    * Version of the storage. This should be incremented each time an incompatible change is made to the storage.
    */
-  public static final String STORAGE_VERSION = "1";
+  public static final String STORAGE_VERSION = "2";
 
   public static final String PLUGIN_REFERENCES_PB = "plugin_references.pb";
+  public static final String PLUGIN_SNAPSHOT_PB = "plugin_snapshot.pb";
   public static final String PROPERTIES_PB = "properties.pb";
   public static final String MODULE_CONFIGURATION_PB = "configuration.pb";
   public static final String RULES_PB = "rules.pb";
+  public static final String RULE_DESCRIPTIONS_INDEX_PB = "rule_descriptions_index.pb";
+  public static final String RULE_DESCRIPTIONS_DATA = "rule_descriptions.data";
   public static final String QUALITY_PROFILES_PB = "quality_profiles.pb";
   public static final String STORAGE_STATUS_PB = "storage_status.pb";
   public static final String SERVER_INFO_PB = "server_info.pb";
   public static final String ACTIVE_RULES_FOLDER = "active_rules";
   public static final String MODULE_LIST_PB = "module_list.pb";
+  public static final String MODULE_SEARCH_INDEX_PB = "module_search_index.pb";
   public static final String SERVER_ISSUES_DIR = "server_issues";
 
   private final Path serverStorageRoot;
   private final Path globalStorageRoot;
   private final Path moduleStorageRoot;
   private final GlobalStorageStatus storageStatus;
+  @Nullable
+  private final ProtobufFileCache fileCache;
 
   public StorageManager(ConnectedGlobalConfiguration configuration) {
+    fileCache = configuration.isStorageFilesCache() ? new ProtobufFileCache() : null;
     serverStorageRoot = configuration.getStorageRoot().resolve(encodeForFs(configuration.getServerId()));
     globalStorageRoot = serverStorageRoot.resolve("global");
     moduleStorageRoot = serverStorageRoot.resolve("modules");
@@ -102,6 +112,10 @@ public class StorageManager {
     return getGlobalStorageRoot().resolve(PLUGIN_REFERENCES_PB);
   }
 
+  public Path getPluginSnapshotPath() {
+    return getGlobalStorageRoot().resolve(PLUGIN_SNAPSHOT_PB);
+  }
+
   public Path getGlobalPropertiesPath() {
     return getGlobalStorageRoot().resolve(PROPERTIES_PB);
   }
@@ -110,10 +124,22 @@ public class StorageManager {
     return getGlobalStorageRoot().resolve(MODULE_LIST_PB);
   }
 
+  public Path getModuleSearchIndexPath() {
+    return getGlobalStorageRoot().resolve(MODULE_SEARCH_INDEX_PB);
+  }
+
   public Path getRulesPath() {
     return getGlobalStorageRoot().resolve(RULES_PB);
   }
 
+  public Path getRuleDescriptionsIndexPath() {
+    return getGlobalStorageRoot().resolve(RULE_DESCRIPTIONS_INDEX_PB);
+  }
+
+  public Path getRuleDescriptionsPath() {
+    return getGlobalStorageRoot().resolve(RULE_DESCRIPTIONS_DATA);
+  }
+
   public Path getQProfilesPath() {
     return getGlobalStorageRoot().resolve(QUALITY_PROFILES_PB);
   }
@@ -158,7 +184,7 @@ public class StorageManager {
   }
 
   public Sonarlint.ServerInfos readServerInfosFromStorage() {
-    return ProtobufUtil.readFile(getServerInfosPath(), Sonarlint.ServerInfos.parser());
+    return read(getServerInfosPath(), Sonarlint.ServerInfos.parser());
   }
 
   public Sonarlint.ServerIssues readServerIssesFromStorage(String moduleKey) {
@@ -166,26 +192,41 @@ public class StorageManager {
   }
 
   public Sonarlint.Rules readRulesFromStorage() {
-    return ProtobufUtil.readFile(getRulesPath(), Sonarlint.Rules.parser());
+    return read(getRulesPath(), Sonarlint.Rules.parser());
   }
 
   public Sonarlint.QProfiles readQProfilesFromStorage() {
-    return ProtobufUtil.readFile(getQProfilesPath(), Sonarlint.QProfiles.parser());
+    return read(getQProfilesPath(), Sonarlint.QProfiles.parser());
   }
 
   public Sonarlint.GlobalProperties readGlobalPropertiesFromStorage() {
-    return ProtobufUtil.readFile(getGlobalPropertiesPath(), Sonarlint.GlobalProperties.parser());
+    return read(getGlobalPropertiesPath(), Sonarlint.GlobalProperties.parser());
   }
 
   public Sonarlint.PluginReferences readPluginReferencesFromStorage() {
-    return ProtobufUtil.readFile(getPluginReferencesPath(), Sonarlint.PluginReferences.parser());
+    return read(getPluginReferencesPath(), Sonarlint.PluginReferences.parser());
   }
 
   public Sonarlint.ModuleConfiguration readModuleConfigFromStorage(String moduleKey) {
-    return ProtobufUtil.readFile(getModuleConfigurationPath(moduleKey), Sonarlint.ModuleConfiguration.parser());
+    return read(getModuleConfigurationPath(moduleKey), Sonarlint.ModuleConfiguration.parser());
+  }
+
+  public Sonarlint.ActiveRules readActiveRulesFromStorage(String qProfileKey) {
+    return read(getActiveRulesPath(qProfileKey), Sonarlint.ActiveRules.parser());
   }
 
   public Sonarlint.ModuleList readModuleListFromStorage() {
-    return ProtobufUtil.readFile(getModuleListPath(), Sonarlint.ModuleList.parser());
+    return read(getModuleListPath(), Sonarlint.ModuleList.parser());
+  }
+
+  public Sonarlint.ModuleSearchIndex readModuleSearchIndexFromStorage() {
+    return read(getModuleSearchIndexPath(), Sonarlint.ModuleSearchIndex.parser());
+  }
+
+  private <T extends Message> T read(Path file, Parser<T> parser) {
+    if (fileCache != null) {
+      return fileCache.read(file, parser);
+    }
+    return ProtobufUtil.readFile(file, parser);
   }
 }
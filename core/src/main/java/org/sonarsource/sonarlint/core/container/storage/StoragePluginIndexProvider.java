@@ -43,8 +43,7 @@ public class StoragePluginIndexProvider implements PluginIndexProvider {
     if (!Files.exists(pluginReferencesPath)) {
       return Collections.emptyList();
     }
-    org.sonarsource.sonarlint.core.proto.Sonarlint.PluginReferences protoReferences = ProtobufUtil.readFile(pluginReferencesPath,
-      org.sonarsource.sonarlint.core.proto.Sonarlint.PluginReferences.parser());
+    org.sonarsource.sonarlint.core.proto.Sonarlint.PluginReferences protoReferences = storageManager.readPluginReferencesFromStorage();
     return Lists.transform(protoReferences.getReferenceList(), input -> new PluginReference().setHash(input.getHash()).setFilename(input.getFilename()));
   }
 }
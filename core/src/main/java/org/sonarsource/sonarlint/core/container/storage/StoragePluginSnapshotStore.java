@@ -0,0 +1,86 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+import org.sonarsource.sonarlint.core.plugin.PluginSnapshotStore;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
+
+/**
+ * Snapshot of the plugins in the global storage. It is removed with the rest of the global storage by the next update.
+ */
+public class StoragePluginSnapshotStore implements PluginSnapshotStore {
+  private static final Logger LOG = LoggerFactory.getLogger(StoragePluginSnapshotStore.class);
+
+  private final StorageManager storageManager;
+
+  public StoragePluginSnapshotStore(StorageManager storageManager) {
+    this.storageManager = storageManager;
+  }
+
+  @CheckForNull
+  @Override
+  public PluginSnapshot read() {
+    Path snapshotPath = storageManager.getPluginSnapshotPath();
+    if (!Files.exists(snapshotPath)) {
+      return null;
+    }
+    try {
+      return ProtobufUtil.readFile(snapshotPath, PluginSnapshot.parser());
+    } catch (StorageException e) {
+      LOG.debug("Ignoring plugin snapshot that can't be read", e);
+      return null;
+    }
+  }
+
+  @Override
+  public void write(PluginSnapshot snapshot) {
+    Path snapshotPath = storageManager.getPluginSnapshotPath();
+    if (!Files.isDirectory(snapshotPath.getParent())) {
+      // not updated yet
+      return;
+    }
+    // other processes sharing the storage can read or write the snapshot at the same time
+    Path tempPath = null;
+    try {
+      tempPath = Files.createTempFile(snapshotPath.getParent(), StorageManager.PLUGIN_SNAPSHOT_PB, null);
+      ProtobufUtil.writeToFile(snapshot, tempPath);
+      try {
+        Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (StorageException | IOException e) {
+      LOG.debug("Unable to save plugin snapshot", e);
+      if (tempPath != null) {
+        FileUtils.deleteQuietly(tempPath.toFile());
+      }
+    }
+  }
+}
@@ -28,7 +28,7 @@ public class StorageQProfilesProvider extends ProviderAdapter {
 
   public Sonarlint.QProfiles provide(StorageManager storageManager) {
     if (qProfilesFromStorage == null) {
-      qProfilesFromStorage = ProtobufUtil.readFile(storageManager.getQProfilesPath(), Sonarlint.QProfiles.parser());
+      qProfilesFromStorage = storageManager.readQProfilesFromStorage();
     }
     return qProfilesFromStorage;
   }
@@ -20,32 +20,46 @@
 package org.sonarsource.sonarlint.core.container.storage;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.function.Function;
 
 import org.sonar.api.rule.RuleKey;
 import org.sonarsource.sonarlint.core.client.api.common.RuleDetails;
 import org.sonarsource.sonarlint.core.container.model.DefaultRuleDetails;
 import org.sonarsource.sonarlint.core.proto.Sonarlint;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescription;
 import org.sonarsource.sonarlint.core.util.StringUtils;
 
+/**
+ * The rules are the ones read once from the storage by {@link StorageRulesProvider}, but their description is read
+ * for each rule. The container is restarted when the storage is updated.
+ */
 public class StorageRuleDetailsReader implements Function<String, RuleDetails> {
-  private StorageManager storageManager;
+  private final Map<String, Sonarlint.Rules.Rule> rulesByKey;
+  private final RuleDescriptionStore ruleDescriptionStore;
 
-  public StorageRuleDetailsReader(StorageManager storageManager) {
-    this.storageManager = storageManager;
+  public StorageRuleDetailsReader(Sonarlint.Rules rules, RuleDescriptionStore ruleDescriptionStore) {
+    this.rulesByKey = rules.getRulesByKeyMap();
+    this.ruleDescriptionStore = ruleDescriptionStore;
   }
 
   @Override
   public RuleDetails apply(String ruleKeyStr) {
-    Sonarlint.Rules rulesFromStorage = storageManager.readRulesFromStorage();
     RuleKey ruleKey = RuleKey.parse(ruleKeyStr);
-    Sonarlint.Rules.Rule rule = rulesFromStorage.getRulesByKeyMap().get(ruleKeyStr);
+    Sonarlint.Rules.Rule rule = rulesByKey.get(ruleKeyStr);
     if (rule == null) {
       throw new IllegalArgumentException("Unable to find rule with key " + ruleKey);
     }
 
     String type = StringUtils.isEmpty(rule.getType()) ? null : rule.getType();
+    String htmlDesc = rule.getHtmlDesc();
+    String htmlNote = rule.getHtmlNote();
+    RuleDescription description = ruleDescriptionStore.get(ruleKeyStr);
+    if (description != null) {
+      htmlDesc = description.getHtmlDesc();
+      htmlNote = description.getHtmlNote();
+    }
 
-    return new DefaultRuleDetails(ruleKeyStr, rule.getName(), rule.getHtmlDesc(), rule.getSeverity(), type, rule.getLang(), Collections.<String>emptySet(), rule.getHtmlNote());
+    return new DefaultRuleDetails(ruleKeyStr, rule.getName(), htmlDesc, rule.getSeverity(), type, rule.getLang(), Collections.<String>emptySet(), htmlNote);
   }
 }
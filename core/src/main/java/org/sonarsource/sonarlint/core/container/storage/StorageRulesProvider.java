@@ -28,7 +28,7 @@ public class StorageRulesProvider extends ProviderAdapter {
 
   public Sonarlint.Rules provide(StorageManager storageManager) {
     if (rulesFromStorage == null) {
-      rulesFromStorage = ProtobufUtil.readFile(storageManager.getRulesPath(), Sonarlint.Rules.parser());
+      rulesFromStorage = storageManager.readRulesFromStorage();
     }
     return rulesFromStorage;
   }
@@ -19,72 +19,236 @@
  */
 package org.sonarsource.sonarlint.core.container.storage.partialupdate;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerConfiguration;
 import org.sonarsource.sonarlint.core.client.api.exceptions.DownloadException;
+import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
 import org.sonarsource.sonarlint.core.container.connected.IssueStore;
 import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
 import org.sonarsource.sonarlint.core.container.connected.update.IssueDownloader;
 import org.sonarsource.sonarlint.core.container.connected.update.IssueDownloaderImpl;
 import org.sonarsource.sonarlint.core.container.connected.update.ModuleListDownloader;
+import org.sonarsource.sonarlint.core.container.connected.update.RelevantIssueDownloader;
 import org.sonarsource.sonarlint.core.container.connected.update.perform.ServerIssueUpdater;
 import org.sonarsource.sonarlint.core.container.storage.IssueStoreReader;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.util.ProgressWrapper;
 
 public class PartialUpdater {
+  private static final Logger LOG = LoggerFactory.getLogger(PartialUpdater.class);
+
+  static final int DOWNLOAD_PARALLELISM = 4;
+
+  // shared by all the updates, so that concurrent updates don't multiply the number of concurrent requests
+  private static final ExecutorService DOWNLOAD_EXECUTOR = createDownloadExecutor();
+
   private final IssueStoreFactory issueStoreFactory;
   private final IssueDownloader downloader;
   private final StorageManager storageManager;
   private final IssueStoreReader issueStoreReader;
   private ModuleListDownloader moduleListDownloader;
+  private final boolean relevantIssuesOnly;
 
   public PartialUpdater(IssueStoreFactory issueStoreFactory, IssueDownloader downloader, StorageManager storageManager,
     IssueStoreReader issueStoreReader, ModuleListDownloader moduleListDownloader) {
+    this(issueStoreFactory, downloader, storageManager, issueStoreReader, moduleListDownloader, false);
+  }
+
+  public PartialUpdater(IssueStoreFactory issueStoreFactory, IssueDownloader downloader, StorageManager storageManager,
+    IssueStoreReader issueStoreReader, ModuleListDownloader moduleListDownloader, boolean relevantIssuesOnly) {
     this.issueStoreFactory = issueStoreFactory;
     this.downloader = downloader;
     this.storageManager = storageManager;
     this.issueStoreReader = issueStoreReader;
     this.moduleListDownloader = moduleListDownloader;
+    this.relevantIssuesOnly = relevantIssuesOnly;
   }
 
   public static PartialUpdater create(StorageManager storageManager, ServerConfiguration serverConfig, IssueStoreReader issueStoreReader) {
+    return create(storageManager, serverConfig, issueStoreReader, false);
+  }
+
+  /**
+   * @param relevantIssuesOnly only store the issues of the rules active in the quality profiles of the module
+   */
+  public static PartialUpdater create(StorageManager storageManager, ServerConfiguration serverConfig, IssueStoreReader issueStoreReader,
+    boolean relevantIssuesOnly) {
     SonarLintWsClient client = new SonarLintWsClient(serverConfig);
     IssueStoreFactory issueStoreFactory = new IssueStoreFactory();
     IssueDownloader downloader = new IssueDownloaderImpl(client);
     ModuleListDownloader moduleListDownloader = new ModuleListDownloader(client);
 
-    return new PartialUpdater(issueStoreFactory, downloader, storageManager, issueStoreReader, moduleListDownloader);
+    return new PartialUpdater(issueStoreFactory, downloader, storageManager, issueStoreReader, moduleListDownloader, relevantIssuesOnly);
+  }
+
+  private IssueDownloader downloaderFor(String moduleKey) {
+    if (!relevantIssuesOnly) {
+      return downloader;
+    }
+    return RelevantIssueDownloader.forModule(downloader, storageManager, storageManager.readModuleConfigFromStorage(moduleKey));
   }
 
   public void updateFileIssues(String moduleKey, String filePath) {
+    updateFileIssues(moduleKey, filePath, Runnable::run);
+  }
+
+  /**
+   * @param publisher runs the action that makes the downloaded issues visible in the storage
+   */
+  public void updateFileIssues(String moduleKey, String filePath, Consumer<Runnable> publisher) {
     Path serverIssuesPath = storageManager.getServerIssuesPath(moduleKey);
     IssueStore issueStore = issueStoreFactory.apply(serverIssuesPath);
     String fileKey = issueStoreReader.getFileKey(moduleKey, filePath);
+    IssueDownloader moduleDownloader = downloaderFor(moduleKey);
     List<ServerIssue> issues;
     try {
-      issues = downloader.apply(fileKey);
+      issues = moduleDownloader.apply(fileKey);
     } catch (Exception e) {
       // null as cause so that it doesn't get wrapped
       throw new DownloadException("Failed to update file issues: " + e.getMessage(), null);
     }
-    issueStore.save(issues);
+    issueStore.save(issues.iterator(), publisher);
   }
 
-  public void updateFileIssues(String moduleKey, TempFolder tempFolder) {
-    new ServerIssueUpdater(storageManager, downloader, issueStoreFactory, tempFolder).update(moduleKey);
+  /**
+   * Download and store the issues of several files, with a bounded number of concurrent requests sharing the same client.
+   * A failure to download the issues of a file doesn't prevent the issues of the other files from being downloaded.
+   * The issues of all the files are saved at once, when all of them are downloaded.
+   *
+   * @return the files whose issues were downloaded
+   */
+  public Set<String> updateFileIssues(String moduleKey, Collection<String> filePaths, ProgressWrapper progress) {
+    return updateFileIssues(moduleKey, filePaths, progress, Runnable::run);
   }
 
-  public void updateModuleList(ProgressWrapper progress) {
+  /**
+   * @param publisher runs the action that makes the downloaded issues of all the files visible in the storage
+   */
+  public Set<String> updateFileIssues(String moduleKey, Collection<String> filePaths, ProgressWrapper progress, Consumer<Runnable> publisher) {
+    Path serverIssuesPath = storageManager.getServerIssuesPath(moduleKey);
+    IssueStore issueStore = issueStoreFactory.apply(serverIssuesPath);
+    Map<String, String> fileKeysByPath = new LinkedHashMap<>();
+    for (String filePath : filePaths) {
+      fileKeysByPath.put(filePath, issueStoreReader.getFileKey(moduleKey, filePath));
+    }
+    IssueDownloader moduleDownloader = downloaderFor(moduleKey);
+
+    Map<String, List<ServerIssue>> issuesByPath = new ConcurrentHashMap<>();
+    AtomicInteger done = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
     try {
-      moduleListDownloader.fetchModulesListTo(storageManager.getGlobalStorageRoot(), storageManager.readServerInfosFromStorage().getVersion(), progress);
-    } catch (Exception e) {
-      // null as cause so that it doesn't get wrapped
-      throw new DownloadException("Failed to update module list: " + e.getMessage(), null);
+      for (Map.Entry<String, String> entry : fileKeysByPath.entrySet()) {
+        futures.add(DOWNLOAD_EXECUTOR.submit(() -> {
+          progress.checkCancel();
+          String filePath = entry.getKey();
+          try {
+            issuesByPath.put(filePath, moduleDownloader.apply(entry.getValue()));
+          } catch (Exception e) {
+            LOG.debug("Failed to update issues of file '{}': {}", filePath, e.getMessage());
+          }
+          synchronized (progress) {
+            progress.setProgress("Downloaded issues of " + filePath, (float) done.incrementAndGet() / fileKeysByPath.size());
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      // on failure, don't leave the remaining downloads in the shared queue
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+    if (!issuesByPath.isEmpty()) {
+      issueStore.save(issuesByPath.values().stream().flatMap(List::stream).iterator(), publisher);
+    }
+    return issuesByPath.keySet();
+  }
+
+  private static ExecutorService createDownloadExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(DOWNLOAD_PARALLELISM, DOWNLOAD_PARALLELISM, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "sonarlint-issue-download");
+        thread.setDaemon(true);
+        return thread;
+      });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while downloading issues", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @param publisher runs the action that writes the downloaded issues to the storage, before returning
+   */
+  public void updateFileIssues(String moduleKey, TempFolder tempFolder, Consumer<Runnable> publisher) {
+    new ServerIssueUpdater(storageManager, downloaderFor(moduleKey), issueStoreFactory, tempFolder).update(moduleKey, publisher);
+  }
+
+  /**
+   * The module list is downloaded in a temporary directory.
+   *
+   * @param publisher runs the action that moves the downloaded module list to the storage, before returning
+   */
+  public void updateModuleList(ProgressWrapper progress, TempFolder tempFolder, Consumer<Runnable> publisher) {
+    Path temp = tempFolder.newDir().toPath();
+    try {
+      try {
+        moduleListDownloader.fetchModulesListTo(temp, storageManager.readServerInfosFromStorage().getVersion(), progress);
+      } catch (Exception e) {
+        // null as cause so that it doesn't get wrapped
+        throw new DownloadException("Failed to update module list: " + e.getMessage(), null);
+      }
+      publisher.accept(() -> {
+        replaceFile(temp.resolve(StorageManager.MODULE_LIST_PB), storageManager.getModuleListPath());
+        replaceFile(temp.resolve(StorageManager.MODULE_SEARCH_INDEX_PB), storageManager.getModuleSearchIndexPath());
+      });
+    } finally {
+      FileUtils.deleteRecursively(temp);
+    }
+  }
+
+  private static void replaceFile(Path src, Path dest) {
+    try {
+      Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to move " + src + " to " + dest, e);
     }
   }
 }
@@ -23,10 +23,12 @@ import com.google.common.base.Preconditions;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.Plugin;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
 
 /**
  * Orchestrates the installation and loading of plugins
@@ -36,19 +38,38 @@ public class DefaultPluginRepository implements Startable {
 
   private final PluginCopier installer;
   private final PluginLoader loader;
+  @Nullable
+  private final PluginSnapshotStore snapshotStore;
 
   private Map<String, Plugin> pluginInstancesByKeys;
   private Map<String, PluginInfo> infosByKeys;
 
   public DefaultPluginRepository(PluginCopier installer, PluginLoader loader) {
+    this(installer, loader, null);
+  }
+
+  public DefaultPluginRepository(PluginCopier installer, PluginLoader loader, @Nullable PluginSnapshotStore snapshotStore) {
     this.installer = installer;
     this.loader = loader;
+    this.snapshotStore = snapshotStore;
   }
 
   @Override
   public void start() {
-    infosByKeys = new HashMap<>(installer.installRemotes());
-    pluginInstancesByKeys = new HashMap<>(loader.load(infosByKeys));
+    PluginSnapshot snapshot = snapshotStore != null ? snapshotStore.read() : null;
+    Collection<PluginClassLoaderDef> defs;
+    if (snapshot != null && PluginSnapshots.isUsable(snapshot)) {
+      LOG.debug("Load plugins from snapshot");
+      infosByKeys = PluginSnapshots.pluginInfos(snapshot);
+      defs = PluginSnapshots.classloaders(snapshot, infosByKeys);
+    } else {
+      infosByKeys = new HashMap<>(installer.installRemotes());
+      defs = loader.defineClassloaders(infosByKeys);
+      if (snapshotStore != null) {
+        snapshotStore.write(PluginSnapshots.create(infosByKeys, defs));
+      }
+    }
+    pluginInstancesByKeys = new HashMap<>(loader.load(defs));
 
     logPlugins();
   }
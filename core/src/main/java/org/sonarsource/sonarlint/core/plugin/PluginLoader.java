@@ -58,7 +58,10 @@ public class PluginLoader {
   }
 
   public Map<String, Plugin> load(Map<String, PluginInfo> infoByKeys) {
-    Collection<PluginClassLoaderDef> defs = defineClassloaders(infoByKeys);
+    return load(defineClassloaders(infoByKeys));
+  }
+
+  Map<String, Plugin> load(Collection<PluginClassLoaderDef> defs) {
     Map<PluginClassLoaderDef, ClassLoader> classloaders = classloaderFactory.create(defs);
     return instantiatePluginClasses(classloaders);
   }
@@ -83,9 +86,7 @@ public class PluginLoader {
       def.addFiles(explodedPlugin.getLibs());
       def.addMainClass(info.getKey(), info.getMainClass());
 
-      for (String defaultSharedResource : DEFAULT_SHARED_RESOURCES) {
-        def.getExportMask().addInclusion(String.format("%s/%s/api/", defaultSharedResource, info.getKey()));
-      }
+      exportApi(def, info.getKey());
 
       // The plugins that extend other plugins can only add some files to classloader.
       // They can't change metadata like ordering strategy or compatibility mode.
@@ -96,6 +97,12 @@ public class PluginLoader {
     return classloadersByBasePlugin.values();
   }
 
+  static void exportApi(PluginClassLoaderDef def, String pluginKey) {
+    for (String defaultSharedResource : DEFAULT_SHARED_RESOURCES) {
+      def.getExportMask().addInclusion(String.format("%s/%s/api/", defaultSharedResource, pluginKey));
+    }
+  }
+
   /**
    * Instantiates collection of {@link org.sonar.api.Plugin} according to given metadata and classloaders
    *
@@ -17,14 +17,22 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
-package org.sonarsource.sonarlint.core.tracking;
+package org.sonarsource.sonarlint.core.plugin;
+
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
 
 /**
- * A new leak
+ * Where the plugins resolved at startup are saved
  */
-public class LeakedTrackable extends AbstractTrackable {
-  public LeakedTrackable(Trackable trackable) {
-    super(trackable);
-    this.creationDate = System.currentTimeMillis();
-  }
+public interface PluginSnapshotStore {
+
+  /**
+   * @return null if no snapshot was saved
+   */
+  @CheckForNull
+  PluginSnapshot read();
+
+  void write(PluginSnapshot snapshot);
+
 }
@@ -0,0 +1,162 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.lang.StringUtils;
+import org.sonarsource.sonarlint.core.plugin.PluginInfo.RequiredPlugin;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot.Plugin;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot.PluginClassLoader;
+import org.sonarsource.sonarlint.core.util.VersionUtils;
+
+/**
+ * Converts the plugin infos and classloader definitions to and from a {@link PluginSnapshot}
+ */
+class PluginSnapshots {
+
+  private PluginSnapshots() {
+    // only statics
+  }
+
+  static PluginSnapshot create(Map<String, PluginInfo> infosByKey, Collection<PluginClassLoaderDef> defs) {
+    PluginSnapshot.Builder builder = PluginSnapshot.newBuilder()
+      .setSonarlintCoreVersion(VersionUtils.getLibraryVersion());
+    for (PluginInfo info : infosByKey.values()) {
+      builder.addPlugin(toProto(info));
+    }
+    for (PluginClassLoaderDef def : defs) {
+      List<String> pluginKeys = infosByKey.values().stream()
+        .filter(info -> def.getBasePluginKey().equals(PluginLoader.basePluginKey(info, infosByKey)))
+        .map(PluginInfo::getKey)
+        .collect(Collectors.toList());
+      builder.addClassLoader(PluginClassLoader.newBuilder()
+        .setBasePluginKey(def.getBasePluginKey())
+        .addAllPluginKey(pluginKeys)
+        .addAllFile(def.getFiles().stream().map(File::getAbsolutePath).collect(Collectors.toList()))
+        .setSelfFirst(def.isSelfFirstStrategy()));
+    }
+    return builder.build();
+  }
+
+  private static Plugin toProto(PluginInfo info) {
+    Plugin.Builder builder = Plugin.newBuilder()
+      .setKey(info.getKey())
+      .setName(info.getName())
+      .setUseChildFirstClassLoader(info.isUseChildFirstClassLoader())
+      .setJarFile(info.getNonNullJarFile().getAbsolutePath())
+      .setSonarlintSupported(Boolean.TRUE.equals(info.isSonarLintSupported()));
+    if (info.getVersion() != null) {
+      builder.setVersion(info.getVersion().getName());
+    }
+    if (info.getMinimalSqVersion() != null) {
+      builder.setMinimalSqVersion(info.getMinimalSqVersion().getName());
+    }
+    if (info.getMainClass() != null) {
+      builder.setMainClass(info.getMainClass());
+    }
+    if (info.getBasePlugin() != null) {
+      builder.setBasePlugin(info.getBasePlugin());
+    }
+    if (info.getImplementationBuild() != null) {
+      builder.setImplementationBuild(info.getImplementationBuild());
+    }
+    for (RequiredPlugin requiredPlugin : info.getRequiredPlugins()) {
+      builder.addRequiredPlugin(requiredPlugin.toString());
+    }
+    return builder.build();
+  }
+
+  /**
+   * A snapshot can't be used if it was created by another version of SonarLint or if some of the plugin files were deleted.
+   */
+  static boolean isUsable(PluginSnapshot snapshot) {
+    if (!VersionUtils.getLibraryVersion().equals(snapshot.getSonarlintCoreVersion())) {
+      return false;
+    }
+    for (Plugin plugin : snapshot.getPluginList()) {
+      if (!new File(plugin.getJarFile()).isFile()) {
+        return false;
+      }
+    }
+    for (PluginClassLoader classLoader : snapshot.getClassLoaderList()) {
+      for (String file : classLoader.getFileList()) {
+        if (!new File(file).isFile()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  static Map<String, PluginInfo> pluginInfos(PluginSnapshot snapshot) {
+    Map<String, PluginInfo> infosByKey = new HashMap<>();
+    for (Plugin plugin : snapshot.getPluginList()) {
+      infosByKey.put(plugin.getKey(), fromProto(plugin));
+    }
+    return infosByKey;
+  }
+
+  private static PluginInfo fromProto(Plugin plugin) {
+    PluginInfo info = new PluginInfo(plugin.getKey())
+      .setJarFile(new File(plugin.getJarFile()))
+      .setName(plugin.getName())
+      .setUseChildFirstClassLoader(plugin.getUseChildFirstClassLoader())
+      .setMainClass(StringUtils.defaultIfEmpty(plugin.getMainClass(), null))
+      .setBasePlugin(StringUtils.defaultIfEmpty(plugin.getBasePlugin(), null))
+      .setImplementationBuild(StringUtils.defaultIfEmpty(plugin.getImplementationBuild(), null))
+      .setSonarLintSupported(plugin.getSonarlintSupported() ? Boolean.TRUE : null);
+    if (!plugin.getVersion().isEmpty()) {
+      info.setVersion(Version.create(plugin.getVersion()));
+    }
+    if (!plugin.getMinimalSqVersion().isEmpty()) {
+      info.setMinimalSqVersion(Version.create(plugin.getMinimalSqVersion()));
+    }
+    for (String requiredPlugin : plugin.getRequiredPluginList()) {
+      info.addRequiredPlugin(RequiredPlugin.parse(requiredPlugin));
+    }
+    return info;
+  }
+
+  static Collection<PluginClassLoaderDef> classloaders(PluginSnapshot snapshot, Map<String, PluginInfo> infosByKey) {
+    List<PluginClassLoaderDef> defs = new ArrayList<>();
+    for (PluginClassLoader classLoader : snapshot.getClassLoaderList()) {
+      PluginClassLoaderDef def = new PluginClassLoaderDef(classLoader.getBasePluginKey());
+      List<File> files = new ArrayList<>();
+      for (String file : classLoader.getFileList()) {
+        files.add(new File(file));
+      }
+      def.addFiles(files);
+      for (String pluginKey : classLoader.getPluginKeyList()) {
+        def.addMainClass(pluginKey, infosByKey.get(pluginKey).getMainClass());
+        PluginLoader.exportApi(def, pluginKey);
+      }
+      def.setSelfFirstStrategy(classLoader.getSelfFirst());
+      defs.add(def);
+    }
+    return defs;
+  }
+}
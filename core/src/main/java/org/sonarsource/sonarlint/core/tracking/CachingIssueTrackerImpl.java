@@ -19,12 +19,21 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
+import com.google.common.util.concurrent.Striped;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.locks.Lock;
 
+/**
+ * Trackables of a given file are matched and stored under a lock of that file only, so that unrelated files can be
+ * tracked concurrently.
+ */
 public class CachingIssueTrackerImpl extends IssueTrackerImpl implements CachingIssueTracker {
 
+  static final int LOCK_STRIPES = 64;
+
   private final IssueTrackerCache cache;
+  private final Striped<Lock> fileLocks = Striped.lock(LOCK_STRIPES);
 
   public CachingIssueTrackerImpl(IssueTrackerCache cache) {
     this.cache = cache;
@@ -36,32 +45,44 @@ public class CachingIssueTrackerImpl extends IssueTrackerImpl implements Caching
    * If this is the first analysis, leave creation date as null.
    */
   @Override
-  public synchronized Collection<Trackable> matchAndTrackAsNew(String file, Collection<Trackable> trackables) {
-    Collection<Trackable> tracked;
-    if (cache.isFirstAnalysis(file)) {
-      tracked = trackables;
-    } else {
-      tracked = apply(cache.getCurrentTrackables(file), trackables, false);
+  public Collection<Trackable> matchAndTrackAsNew(String file, Collection<Trackable> trackables) {
+    Lock lock = fileLocks.get(file);
+    lock.lock();
+    try {
+      Collection<Trackable> tracked;
+      if (cache.isFirstAnalysis(file)) {
+        tracked = trackables;
+      } else {
+        tracked = apply(cache.getCurrentTrackables(file), trackables, false);
+      }
+      cache.put(file, tracked);
+      return tracked;
+    } finally {
+      lock.unlock();
     }
-    cache.put(file, tracked);
-    return tracked;
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public synchronized Collection<Trackable> matchAndTrackAsBase(String file, Collection<Trackable> trackables) {
-    // store issues (ProtobufIssueTrackable) are of no use since they can't be used in markers. There should have been
-    // an analysis before that set the live issues for the file (even if it is empty)
-    Collection<Trackable> current = cache.getLiveOrFail(file);
-    if (current.isEmpty()) {
-      // whatever is the base, if current is empty, then nothing to do
-      return Collections.emptyList();
+  public Collection<Trackable> matchAndTrackAsBase(String file, Collection<Trackable> trackables) {
+    Lock lock = fileLocks.get(file);
+    lock.lock();
+    try {
+      // store issues (ProtobufIssueTrackable) are of no use since they can't be used in markers. There should have been
+      // an analysis before that set the live issues for the file (even if it is empty)
+      Collection<Trackable> current = cache.getLiveOrFail(file);
+      if (current.isEmpty()) {
+        // whatever is the base, if current is empty, then nothing to do
+        return Collections.emptyList();
+      }
+      Collection<Trackable> tracked = apply(trackables, current, true);
+      cache.put(file, tracked);
+      return tracked;
+    } finally {
+      lock.unlock();
     }
-    Collection<Trackable> tracked = apply(trackables, current, true);
-    cache.put(file, tracked);
-    return tracked;
   }
 
   public void clear() {
@@ -0,0 +1,281 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+/**
+ * Immutable list of trackables stored in columns, to reduce the memory used by large sets of tracked issues.
+ * <p>
+ * Nullable numbers are stored as primitives along with a bit telling whether they are set, and the strings that
+ * are repeated among issues (rule keys, messages, ...) are interned. Each element is a view on its row, created once
+ * when it is added, so that the same instance is returned on each access.
+ * Trackables that can't be copied (typically those read from the issue store, that don't support all the getters)
+ * are kept as is.
+ */
+class CompactTrackables extends AbstractList<Trackable> implements RandomAccess {
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+  private static final short LINE = 1;
+  private static final short LINE_HASH = 1 << 1;
+  private static final short TEXT_RANGE_HASH = 1 << 2;
+  private static final short CREATION_DATE = 1 << 3;
+  private static final short RESOLVED = 1 << 4;
+
+  private final Issue[] issues;
+  private final String[] ruleKeys;
+  private final String[] ruleNames;
+  private final String[] severities;
+  private final String[] types;
+  private final String[] messages;
+  private final String[] serverIssueKeys;
+  private final String[] assignees;
+  private final int[] lines;
+  private final int[] lineHashes;
+  private final int[] textRangeHashes;
+  // immutable, shared with the copied trackable
+  private final TextRange[] textRanges;
+  private final long[] creationDates;
+  private final short[] flags;
+  private final Trackable[] elements;
+  private int size;
+
+  CompactTrackables(int capacity) {
+    issues = new Issue[capacity];
+    ruleKeys = new String[capacity];
+    ruleNames = new String[capacity];
+    severities = new String[capacity];
+    types = new String[capacity];
+    messages = new String[capacity];
+    serverIssueKeys = new String[capacity];
+    assignees = new String[capacity];
+    lines = new int[capacity];
+    lineHashes = new int[capacity];
+    textRangeHashes = new int[capacity];
+    textRanges = new TextRange[capacity];
+    creationDates = new long[capacity];
+    flags = new short[capacity];
+    elements = new Trackable[capacity];
+  }
+
+  @Override
+  public Trackable get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Add a trackable with its values unchanged. It is copied only if it comes from another instance, so that a few
+   * remaining elements don't retain all the previous rows.
+   */
+  void addUnchanged(Trackable trackable) {
+    if (trackable instanceof Row) {
+      copy(trackable);
+      return;
+    }
+    elements[size++] = trackable;
+  }
+
+  /**
+   * Add the values of next, with the server key, creation date, resolution and assignee of base.
+   * <p>
+   * Local issue tracking: base are existing issues, next are raw issues coming from the analysis. We don't want to inherit severity and type
+   * so that latest analysis always overrides them.
+   * Server issue tracking: base are server issues, next are the existing issue, coming from local issue tracking. We want to inherit severity and type
+   * so that the server issues override analyzers.
+   */
+  void addCombined(Trackable base, Trackable next, boolean inheritSeverity) {
+    // no reference to base is kept, so that it can be garbage collected
+    int row = copy(next);
+    setCreationDate(row, base.getCreationDate());
+    serverIssueKeys[row] = base.getServerIssueKey();
+    setFlag(row, RESOLVED, base.isResolved());
+    assignees[row] = intern(base.getAssignee());
+    if (inheritSeverity) {
+      severities[row] = intern(base.getSeverity());
+      if (base.getType() != null) {
+        // this can be null for old SQ servers that didn't have issue types yet
+        types[row] = intern(base.getType());
+      }
+    }
+  }
+
+  /**
+   * Add a new issue, created at the given date.
+   */
+  void addLeaked(Trackable trackable, long creationDate) {
+    int row = copy(trackable);
+    setCreationDate(row, creationDate);
+  }
+
+  /**
+   * Add a new issue of an unbound project: it has no server key, isn't resolved and has no assignee.
+   */
+  void addDisconnected(Trackable trackable, long creationDate) {
+    int row = copy(trackable);
+    setCreationDate(row, creationDate);
+    serverIssueKeys[row] = null;
+    setFlag(row, RESOLVED, false);
+    assignees[row] = "";
+  }
+
+  private int copy(Trackable trackable) {
+    int row = size++;
+    issues[row] = trackable.getIssue();
+    ruleKeys[row] = intern(trackable.getRuleKey());
+    ruleNames[row] = intern(trackable.getRuleName());
+    severities[row] = intern(trackable.getSeverity());
+    types[row] = intern(trackable.getType());
+    messages[row] = intern(trackable.getMessage());
+    serverIssueKeys[row] = trackable.getServerIssueKey();
+    assignees[row] = intern(trackable.getAssignee());
+    lines[row] = setInt(row, LINE, trackable.getLine());
+    lineHashes[row] = setInt(row, LINE_HASH, trackable.getLineHash());
+    textRangeHashes[row] = setInt(row, TEXT_RANGE_HASH, trackable.getTextRangeHash());
+    setCreationDate(row, trackable.getCreationDate());
+    setFlag(row, RESOLVED, trackable.isResolved());
+    textRanges[row] = trackable.getTextRange();
+    elements[row] = new Row(row);
+    return row;
+  }
+
+  @CheckForNull
+  private static String intern(@Nullable String value) {
+    return value != null ? STRINGS.intern(value) : null;
+  }
+
+  private int setInt(int row, short flag, @Nullable Integer value) {
+    setFlag(row, flag, value != null);
+    return value != null ? value : 0;
+  }
+
+  private void setCreationDate(int row, @Nullable Long creationDate) {
+    setFlag(row, CREATION_DATE, creationDate != null);
+    creationDates[row] = creationDate != null ? creationDate : 0L;
+  }
+
+  private void setFlag(int row, short flag, boolean value) {
+    if (value) {
+      flags[row] |= flag;
+    } else {
+      flags[row] &= ~flag;
+    }
+  }
+
+  private boolean hasFlag(int row, short flag) {
+    return (flags[row] & flag) != 0;
+  }
+
+  @CheckForNull
+  private Integer getInt(int row, short flag, int[] column) {
+    return hasFlag(row, flag) ? column[row] : null;
+  }
+
+  private class Row implements Trackable {
+    private final int row;
+
+    Row(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Issue getIssue() {
+      return issues[row];
+    }
+
+    @Override
+    public String getRuleKey() {
+      return ruleKeys[row];
+    }
+
+    @Override
+    public String getRuleName() {
+      return ruleNames[row];
+    }
+
+    @Override
+    public String getSeverity() {
+      return severities[row];
+    }
+
+    @Override
+    public String getMessage() {
+      return messages[row];
+    }
+
+    @Override
+    public String getType() {
+      return types[row];
+    }
+
+    @Override
+    public Integer getLine() {
+      return getInt(row, LINE, lines);
+    }
+
+    @Override
+    public Integer getLineHash() {
+      return getInt(row, LINE_HASH, lineHashes);
+    }
+
+    @Override
+    public TextRange getTextRange() {
+      return textRanges[row];
+    }
+
+    @Override
+    public Integer getTextRangeHash() {
+      return getInt(row, TEXT_RANGE_HASH, textRangeHashes);
+    }
+
+    @Override
+    public Long getCreationDate() {
+      return hasFlag(row, CREATION_DATE) ? creationDates[row] : null;
+    }
+
+    @Override
+    public String getServerIssueKey() {
+      return serverIssueKeys[row];
+    }
+
+    @Override
+    public boolean isResolved() {
+      return hasFlag(row, RESOLVED);
+    }
+
+    @Override
+    public String getAssignee() {
+      return assignees[row];
+    }
+  }
+}
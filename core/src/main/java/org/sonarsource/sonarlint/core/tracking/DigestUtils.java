@@ -19,23 +19,60 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
+/**
+ * Whitespace-insensitive MD5 hashing of source code, as used for the checksums of issues.
+ * <p>
+ * Each thread uses its own digest and buffers, and content is encoded to UTF-8 on the fly,
+ * so that no intermediate string is created.
+ */
 public class DigestUtils {
 
   private static final char[] DIGITS = "0123456789abcdef".toCharArray();
 
-  private static final MessageDigest MD5_DIGEST = DigestUtils.getMd5Digest();
+  private static final ThreadLocal<Hasher> HASHERS = ThreadLocal.withInitial(Hasher::new);
 
   private DigestUtils() {
     // utility class, forbidden constructor
   }
 
+  /**
+   * @return hex encoded MD5 of the content without whitespaces, encoded in UTF-8
+   */
   public static String digest(String content) {
-    return encodeHexString(MD5_DIGEST.digest(content.replaceAll("[\\s]", "").getBytes(UTF_8)));
+    Hasher hasher = HASHERS.get();
+    hasher.update(content, 0, content.length());
+    return encodeHexString(hasher.finish());
+  }
+
+  /**
+   * Same as {@code digest(content).hashCode()}, which is the hash used to track issues.
+   */
+  public static int digestHashCode(CharSequence content) {
+    return digestHashCode(content, 0, content.length());
+  }
+
+  /**
+   * Same as {@code digest(content.subSequence(start, end).toString()).hashCode()}.
+   */
+  public static int digestHashCode(CharSequence content, int start, int end) {
+    Hasher hasher = HASHERS.get();
+    hasher.update(content, start, end);
+    return hexStringHashCode(hasher.finish());
+  }
+
+  /**
+   * Same as {@code encodeHexString(data).hashCode()}.
+   */
+  static int hexStringHashCode(byte[] data) {
+    int hash = 0;
+    for (byte b : data) {
+      hash = 31 * (31 * hash + DIGITS[(240 & b) >>> 4]) + DIGITS[15 & b];
+    }
+    return hash;
   }
 
   private static MessageDigest getMd5Digest() {
@@ -61,4 +98,94 @@ public class DigestUtils {
 
     return new String(out);
   }
+
+  /**
+   * Feeds characters to a digest, skipping whitespaces (as matched by the regex {@code \s}) and encoding the others
+   * like {@link String#getBytes} with UTF-8 would, unpaired surrogates included.
+   * Not thread-safe: one instance per thread.
+   */
+  static class Hasher {
+    private static final int BUFFER_SIZE = 1024;
+    private static final byte UNMAPPABLE = '?';
+
+    private final MessageDigest digest = getMd5Digest();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] result = new byte[16];
+    private int length;
+    private char highSurrogate;
+
+    void update(CharSequence content, int start, int end) {
+      for (int i = start; i < end; i++) {
+        update(content.charAt(i));
+      }
+    }
+
+    void update(char[] chars, int start, int end) {
+      for (int i = start; i < end; i++) {
+        update(chars[i]);
+      }
+    }
+
+    void update(char c) {
+      if (isWhitespace(c)) {
+        return;
+      }
+      if (length > BUFFER_SIZE - 4) {
+        flush();
+      }
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          int codePoint = Character.toCodePoint(high, c);
+          buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+          buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+          return;
+        }
+        buffer[length++] = UNMAPPABLE;
+      }
+      if (c < 0x80) {
+        buffer[length++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xc0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c)) {
+        highSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        buffer[length++] = UNMAPPABLE;
+      } else {
+        buffer[length++] = (byte) (0xe0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+
+    /**
+     * @return the digest of everything fed since the last call. The returned array is reused by the next call.
+     */
+    byte[] finish() {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        buffer[length++] = UNMAPPABLE;
+      }
+      flush();
+      try {
+        digest.digest(result, 0, result.length);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e);
+      }
+      return result;
+    }
+
+    private void flush() {
+      digest.update(buffer, 0, length);
+      length = 0;
+    }
+
+    private static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
+    }
+  }
 }
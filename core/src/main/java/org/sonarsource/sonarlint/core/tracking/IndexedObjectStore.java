@@ -26,7 +26,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Optional;
-import org.sonarsource.sonarlint.core.client.api.connected.objectstore.ObjectStore;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.PathMapper;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Reader;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Writer;
@@ -37,7 +36,7 @@ import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Writer;
  * @param <K> type of the key to store by and used when reading back; must be hashable
  * @param <V> type of the value to store
  */
-class IndexedObjectStore<K, V> implements ObjectStore<K, V> {
+class IndexedObjectStore<K, V> implements ValidatingObjectStore<K, V> {
   private final Logger logger;
 
   private final StoreIndex<K> index;
@@ -66,14 +65,21 @@ class IndexedObjectStore<K, V> implements ObjectStore<K, V> {
     }
   }
 
+  @Override
   public boolean contains(K key) {
     Path path = pathMapper.apply(key);
     return path.toFile().exists();
   }
 
+  @Override
+  public Collection<K> keys() {
+    return index.keys();
+  }
+
   /**
    * Deletes all entries in the index that are no longer valid.
    */
+  @Override
   public void deleteInvalid() {
     int counter = 0;
     Collection<K> keys = index.keys();
@@ -92,6 +98,11 @@ class IndexedObjectStore<K, V> implements ObjectStore<K, V> {
     logger.debug(String.format("%d entries removed from the store", counter));
   }
 
+  @Override
+  public void clear() {
+    index.clear();
+  }
+
   @Override
   public void delete(K key) throws IOException {
     Path path = pathMapper.apply(key);
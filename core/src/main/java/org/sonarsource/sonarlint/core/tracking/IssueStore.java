@@ -22,8 +22,13 @@ package org.sonarsource.sonarlint.core.tracking;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import org.sonarsource.sonarlint.core.client.api.connected.objectstore.HashingPathMapper;
@@ -34,15 +39,37 @@ import org.sonarsource.sonarlint.core.client.api.util.FileUtils;
 import org.sonarsource.sonarlint.core.proto.Sonarlint;
 
 public class IssueStore {
+  /**
+   * How issues are laid out on disk.
+   */
+  public enum Layout {
+    /**
+     * One file per source file, located by hashing its key.
+     */
+    FILE_PER_KEY,
+    /**
+     * All source files in a few append-only segment files. Better suited to projects with many files.
+     */
+    SEGMENTS
+  }
+
+  private final Logger logger;
+  private final StoreKeyValidator<String> validator;
   private Path basePath;
-  private IndexedObjectStore<String, Sonarlint.Issues> store;
+  private ValidatingObjectStore<String, Sonarlint.Issues> store;
+  // keys remaining to be checked by the incremental clean
+  private Iterator<String> keysToClean = Collections.emptyIterator();
+  private ExecutorService cleaner;
 
   public IssueStore(Path storeBasePath, Path projectBasePath, Logger logger) {
+    this(storeBasePath, projectBasePath, logger, Layout.FILE_PER_KEY);
+  }
+
+  public IssueStore(Path storeBasePath, Path projectBasePath, Logger logger, Layout layout) {
     this.basePath = storeBasePath;
+    this.logger = logger;
     FileUtils.mkdirs(storeBasePath);
-    StoreIndex<String> index = new StringStoreIndex(storeBasePath);
-    PathMapper<String> mapper = new HashingPathMapper(storeBasePath, 2);
-    StoreKeyValidator<String> validator = new PathStoreKeyValidator(projectBasePath);
+    validator = new PathStoreKeyValidator(projectBasePath);
     Reader<Sonarlint.Issues> reader = is -> {
       try {
         return Sonarlint.Issues.parseFrom(is);
@@ -57,31 +84,112 @@ public class IssueStore {
         throw new IllegalStateException("Failed to save issues", e);
       }
     };
-    store = new IndexedObjectStore<>(index, mapper, reader, writer, validator, logger);
-    store.deleteInvalid();
+    if (layout == Layout.SEGMENTS) {
+      store = new SegmentedObjectStore<>(storeBasePath, reader, writer, validator, logger);
+    } else {
+      StoreIndex<String> index = new JournaledStoreIndex(storeBasePath);
+      PathMapper<String> mapper = new HashingPathMapper(storeBasePath, 2);
+      store = new IndexedObjectStore<>(index, mapper, reader, writer, validator, logger);
+    }
   }
 
-  public boolean contains(String key) {
+  /**
+   * Like {@link #read(String)}, entries of files that no longer exist are removed.
+   */
+  public synchronized boolean contains(String key) {
+    if (!validator.apply(key)) {
+      delete(key);
+      return false;
+    }
     return store.contains(key);
   }
 
-  public void save(String key, Collection<Trackable> issues) throws IOException {
+  public synchronized void save(String key, Collection<Trackable> issues) throws IOException {
     store.write(key, transform(issues));
   }
 
+  /**
+   * Entries of files that no longer exist are not removed when the store is opened, but when they are read.
+   */
   @CheckForNull
-  public Collection<Trackable> read(String key) throws IOException {
+  public synchronized Collection<Trackable> read(String key) throws IOException {
+    if (!validator.apply(key)) {
+      store.delete(key);
+      return null;
+    }
     Optional<Sonarlint.Issues> issues = store.read(key);
     return issues.map(IssueStore::transform).orElse(null);
   }
 
-  public void clean() {
+  /**
+   * Removes all the entries of files that no longer exist.
+   */
+  public synchronized void clean() {
     store.deleteInvalid();
+    keysToClean = Collections.emptyIterator();
+  }
+
+  /**
+   * Removes the entries of files that no longer exist, checking files for at most the given time.
+   * The next call continues where this one stopped, so that repeated calls eventually check the whole store.
+   *
+   * @return true if the last entry of the store was checked
+   */
+  public boolean clean(long timeBudgetMillis) {
+    long deadline = System.currentTimeMillis() + timeBudgetMillis;
+    int counter = 0;
+    do {
+      synchronized (this) {
+        if (!keysToClean.hasNext()) {
+          keysToClean = store.keys().iterator();
+        }
+        if (!keysToClean.hasNext()) {
+          return true;
+        }
+        String key = keysToClean.next();
+        if (!validator.apply(key)) {
+          counter += delete(key);
+        }
+        if (!keysToClean.hasNext()) {
+          logger.debug(String.format("%d entries removed from the store", counter));
+          return true;
+        }
+      }
+    } while (System.currentTimeMillis() < deadline);
+    logger.debug(String.format("%d entries removed from the store", counter));
+    return false;
+  }
+
+  /**
+   * Same as {@link #clean(long)}, in a background thread.
+   */
+  public synchronized Future<Boolean> cleanInBackground(long timeBudgetMillis) {
+    if (cleaner == null) {
+      cleaner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sonarlint-issue-store-cleaner");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return cleaner.submit(() -> clean(timeBudgetMillis));
+  }
+
+  private int delete(String key) {
+    try {
+      store.delete(key);
+      return 1;
+    } catch (IOException e) {
+      logger.error(String.format("failed to delete invalidated key '%s'", key), e);
+      return 0;
+    }
   }
 
-  public void clear() {
+  public synchronized void clear() {
+    // release the files of the store first, mapped segments can't be deleted on Windows
+    store.clear();
     FileUtils.deleteRecursively(basePath);
     FileUtils.mkdirs(basePath);
+    keysToClean = Collections.emptyIterator();
   }
 
   private static Collection<Trackable> transform(Sonarlint.Issues protoIssues) {
@@ -22,8 +22,6 @@ package org.sonarsource.sonarlint.core.tracking;
 import javax.annotation.Nullable;
 import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
 
-import static org.sonarsource.sonarlint.core.tracking.DigestUtils.digest;
-
 public class IssueTrackable implements Trackable {
 
   private final Issue issue;
@@ -32,18 +30,29 @@ public class IssueTrackable implements Trackable {
   private final Integer lineHash;
 
   public IssueTrackable(Issue issue) {
-    this(issue, null, null, null);
+    this(issue, null, (Integer) null, null);
   }
 
   public IssueTrackable(Issue issue, @Nullable TextRange textRange, @Nullable String textRangeContent, @Nullable String lineContent) {
+    this(issue, textRange, hashOrNull(textRangeContent), hashOrNull(lineContent));
+  }
+
+  private IssueTrackable(Issue issue, @Nullable TextRange textRange, @Nullable Integer textRangeHash, @Nullable Integer lineHash) {
     this.issue = issue;
     this.textRange = textRange;
-    this.textRangeHash = hashOrNull(textRangeContent);
-    this.lineHash = hashOrNull(lineContent);
+    this.textRangeHash = textRangeHash;
+    this.lineHash = lineHash;
+  }
+
+  /**
+   * Create a trackable with already computed hashes, typically with the line hash coming from the {@link LineHashes} of the file.
+   */
+  public static IssueTrackable withHashes(Issue issue, @Nullable TextRange textRange, @Nullable Integer textRangeHash, @Nullable Integer lineHash) {
+    return new IssueTrackable(issue, textRange, textRangeHash, lineHash);
   }
 
   private static Integer hashOrNull(@Nullable String content) {
-    return content != null ? digest(content).hashCode() : null;
+    return content != null ? DigestUtils.digestHashCode(content) : null;
   }
 
   @Override
@@ -0,0 +1,77 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+/**
+ * Snapshot of the counters of an {@link IssueTrackerCache}.
+ */
+public class IssueTrackerCacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long writeCount;
+  private final long totalWriteTimeMillis;
+
+  public IssueTrackerCacheStats(long hitCount, long missCount, long evictionCount, long writeCount, long totalWriteTimeMillis) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.writeCount = writeCount;
+    this.totalWriteTimeMillis = totalWriteTimeMillis;
+  }
+
+  /**
+   * Number of reads served from memory
+   */
+  public long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Number of reads that had to go to the persistent store
+   */
+  public long missCount() {
+    return missCount;
+  }
+
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Number of files written to the persistent store
+   */
+  public long writeCount() {
+    return writeCount;
+  }
+
+  public long totalWriteTimeMillis() {
+    return totalWriteTimeMillis;
+  }
+
+  public long averageWriteTimeMillis() {
+    return writeCount == 0 ? 0 : (totalWriteTimeMillis / writeCount);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d, misses=%d, evictions=%d, writes=%d, write time=%dms", hitCount, missCount, evictionCount, writeCount, totalWriteTimeMillis);
+  }
+}
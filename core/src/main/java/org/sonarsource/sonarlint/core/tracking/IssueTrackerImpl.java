@@ -19,11 +19,12 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 /**
  * {@inheritDoc}
+ *
+ * Tracked issues are returned in a compact columnar collection, to limit the memory used when many issues are kept.
  */
 public class IssueTrackerImpl implements IssueTracker {
 
@@ -33,22 +34,22 @@ public class IssueTrackerImpl implements IssueTracker {
    */
   @Override
   public Collection<Trackable> apply(Collection<Trackable> baseIssues, Collection<Trackable> nextIssues, boolean inheritSeverity) {
-    Collection<Trackable> trackedIssues = new ArrayList<>();
     Tracking<Trackable, Trackable> tracking = new Tracker<Trackable, Trackable>().track(() -> nextIssues, () -> baseIssues);
+    CompactTrackables trackedIssues = new CompactTrackables(tracking.getRaws().size());
 
-    tracking.getMatchedRaws().entrySet().stream()
-      .map(e -> new CombinedTrackable(e.getValue(), e.getKey(), inheritSeverity))
-      .forEach(trackedIssues::add);
+    tracking.getMatchedRaws().forEach((next, base) -> trackedIssues.addCombined(base, next, inheritSeverity));
 
+    long now = System.currentTimeMillis();
     for (Trackable next : tracking.getUnmatchedRaws()) {
       if (next.getServerIssueKey() != null) {
         // not matched with server anymore
-        next = new DisconnectedTrackable(next);
+        trackedIssues.addDisconnected(next, now);
       } else if (next.getCreationDate() == null) {
         // first time we see this issue locally
-        next = new LeakedTrackable(next);
+        trackedIssues.addLeaked(next, now);
+      } else {
+        trackedIssues.addUnchanged(next);
       }
-      trackedIssues.add(next);
     }
 
     return trackedIssues;
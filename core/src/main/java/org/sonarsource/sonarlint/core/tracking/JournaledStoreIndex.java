@@ -0,0 +1,223 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.sonarsource.sonarlint.core.proto.Sonarlint;
+
+/**
+ * A store index kept in memory. Changes are appended to a journal next to the index file, and merged into the index
+ * file when the journal gets bigger than the index itself.
+ * When loading, the journal is replayed on top of the index file. A partially written last change, for example after a crash,
+ * is ignored.
+ */
+class JournaledStoreIndex implements StoreIndex<String> {
+  private static final String DEFAULT_INDEX_FILENAME = "index.pb";
+  private static final String JOURNAL_SUFFIX = ".journal";
+  static final int DEFAULT_MIN_COMPACTION_THRESHOLD = 1000;
+
+  private final Path storeBasePath;
+  private final Path indexFilePath;
+  private final Path journalFilePath;
+  private final int minCompactionThreshold;
+
+  private Map<String, String> mappedPathByKey;
+  private int journalSize;
+
+  public JournaledStoreIndex(Path storeBasePath) {
+    this(storeBasePath, DEFAULT_INDEX_FILENAME, DEFAULT_MIN_COMPACTION_THRESHOLD);
+  }
+
+  JournaledStoreIndex(Path storeBasePath, String indexFileName, int minCompactionThreshold) {
+    this.storeBasePath = storeBasePath;
+    this.indexFilePath = storeBasePath.resolve(indexFileName);
+    this.journalFilePath = storeBasePath.resolve(indexFileName + JOURNAL_SUFFIX);
+    this.minCompactionThreshold = minCompactionThreshold;
+  }
+
+  @Override
+  public synchronized Collection<String> keys() {
+    return new ArrayList<>(index().keySet());
+  }
+
+  @Override
+  public synchronized void save(String storageKey, Path path) {
+    String relativeMappedPath = storeBasePath.relativize(path).toString();
+    if (relativeMappedPath.equals(index().get(storageKey))) {
+      return;
+    }
+    append(Sonarlint.StorageIndexChange.newBuilder().setKey(storageKey).setMappedPath(relativeMappedPath).build());
+    mappedPathByKey.put(storageKey, relativeMappedPath);
+    compactIfNeeded();
+  }
+
+  @Override
+  public synchronized void delete(String storageKey) {
+    if (!index().containsKey(storageKey)) {
+      return;
+    }
+    append(Sonarlint.StorageIndexChange.newBuilder().setKey(storageKey).setDeleted(true).build());
+    mappedPathByKey.remove(storageKey);
+    compactIfNeeded();
+  }
+
+  @Override
+  public synchronized void clear() {
+    try {
+      Files.deleteIfExists(journalFilePath);
+      Files.deleteIfExists(indexFilePath);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to delete local issue store index", e);
+    }
+    mappedPathByKey = new HashMap<>();
+    journalSize = 0;
+  }
+
+  private Map<String, String> index() {
+    if (mappedPathByKey == null) {
+      load();
+    }
+    return mappedPathByKey;
+  }
+
+  private void load() {
+    mappedPathByKey = new HashMap<>();
+    if (Files.exists(indexFilePath)) {
+      try (InputStream stream = Files.newInputStream(indexFilePath)) {
+        mappedPathByKey.putAll(Sonarlint.StorageIndex.parseFrom(stream).getMappedPathByKeyMap());
+      } catch (IOException e) {
+        mappedPathByKey = null;
+        throw new IllegalStateException("Failed to read local issue store index", e);
+      }
+    }
+    if (Files.exists(journalFilePath) && !replayJournal()) {
+      // get rid of the corrupted part of the journal
+      compact();
+    }
+  }
+
+  /**
+   * @return false if the journal ends with a corrupted change
+   */
+  private boolean replayJournal() {
+    try (InputStream stream = Files.newInputStream(journalFilePath)) {
+      Sonarlint.StorageIndexChange change;
+      while ((change = Sonarlint.StorageIndexChange.parseDelimitedFrom(stream)) != null) {
+        if (change.getDeleted()) {
+          mappedPathByKey.remove(change.getKey());
+        } else {
+          mappedPathByKey.put(change.getKey(), change.getMappedPath());
+        }
+        journalSize++;
+      }
+      return true;
+    } catch (InvalidProtocolBufferException e) {
+      return false;
+    } catch (IOException e) {
+      mappedPathByKey = null;
+      throw new IllegalStateException("Failed to read local issue store index journal", e);
+    }
+  }
+
+  private void append(Sonarlint.StorageIndexChange change) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      change.writeDelimitedTo(bytes);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write local issue store index", e);
+    }
+    ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+    try (FileChannel channel = FileChannel.open(journalFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      long length = channel.size();
+      try {
+        channel.position(length);
+        write(channel, record);
+      } catch (IOException e) {
+        // don't leave a partial change behind, the replay would stop at it and lose the following ones
+        try {
+          channel.truncate(length);
+        } catch (IOException truncateError) {
+          e.addSuppressed(truncateError);
+        }
+        throw e;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write local issue store index", e);
+    }
+    journalSize++;
+  }
+
+  void write(FileChannel channel, ByteBuffer record) throws IOException {
+    while (record.hasRemaining()) {
+      channel.write(record);
+    }
+  }
+
+  private void compactIfNeeded() {
+    if (journalSize > Math.max(minCompactionThreshold, mappedPathByKey.size())) {
+      compact();
+    }
+  }
+
+  /**
+   * Write the whole index to a new file, then replace the index file and delete the journal.
+   * Replaying the journal on top of the new index file gives the same result, so a crash in between is harmless.
+   */
+  private void compact() {
+    Path tempFilePath = indexFilePath.resolveSibling(indexFilePath.getFileName() + ".tmp");
+    try {
+      try (OutputStream stream = Files.newOutputStream(tempFilePath)) {
+        Sonarlint.StorageIndex.newBuilder().putAllMappedPathByKey(mappedPathByKey).build().writeTo(stream);
+      }
+      move(tempFilePath, indexFilePath);
+      Files.deleteIfExists(journalFilePath);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write local issue store index", e);
+    }
+    journalSize = 0;
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  int journalSize() {
+    return journalSize;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+
+/**
+ * Hashes of all the lines of a file, computed in a single pass, to be shared by all the issues of the file.
+ * <p>
+ * The hash of a line is the same as {@code DigestUtils.digest(lineContent).hashCode()}, so it can be compared
+ * with the hashes of stored issues and of the checksums of server issues.
+ * Lines are terminated by {@code \n}, {@code \r\n} or {@code \r}.
+ */
+public class LineHashes {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final int[] hashes;
+
+  private LineHashes(int[] hashes) {
+    this.hashes = hashes;
+  }
+
+  public static LineHashes of(CharSequence content) {
+    Builder builder = new Builder();
+    for (int i = 0; i < content.length(); i++) {
+      builder.accept(content.charAt(i));
+    }
+    return builder.build();
+  }
+
+  public static LineHashes read(Reader reader) throws IOException {
+    Builder builder = new Builder();
+    char[] buffer = new char[BUFFER_SIZE];
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        builder.accept(buffer[i]);
+      }
+    }
+    return builder.build();
+  }
+
+  public int lineCount() {
+    return hashes.length;
+  }
+
+  /**
+   * @param line 1-based line number
+   * @return null if the line is out of the file
+   */
+  @CheckForNull
+  public Integer lineHash(int line) {
+    if (line < 1 || line > hashes.length) {
+      return null;
+    }
+    return hashes[line - 1];
+  }
+
+  private static class Builder {
+    // not the shared hasher of the thread, which would keep a partial line if reading the file fails
+    private final DigestUtils.Hasher hasher = new DigestUtils.Hasher();
+    private int[] hashes = new int[64];
+    private int count;
+    private boolean afterCarriageReturn;
+
+    void accept(char c) {
+      if (c == '\n') {
+        if (!afterCarriageReturn) {
+          endLine();
+        }
+        afterCarriageReturn = false;
+      } else if (c == '\r') {
+        endLine();
+        afterCarriageReturn = true;
+      } else {
+        hasher.update(c);
+        afterCarriageReturn = false;
+      }
+    }
+
+    private void endLine() {
+      if (count == hashes.length) {
+        hashes = Arrays.copyOf(hashes, count * 2);
+      }
+      hashes[count++] = DigestUtils.hexStringHashCode(hasher.finish());
+    }
+
+    LineHashes build() {
+      endLine();
+      return new LineHashes(Arrays.copyOf(hashes, count));
+    }
+  }
+}
@@ -22,77 +22,133 @@ package org.sonarsource.sonarlint.core.tracking;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.CheckForNull;
 
+/**
+ * Keeps the trackables of the most recently updated files in memory, and persists the others in an {@link IssueStore}.
+ * Reads can be done concurrently, updates are exclusive.
+ * <p>
+ * The memory is bounded by the total weight of the cached entries, which is their number of trackables plus one.
+ * Evicted entries are written to the store by a background thread. If an entry is evicted again before being written,
+ * only its latest version is written. An entry that fails to be written stays pending, it is written again on
+ * {@link #flushAll()}, which fails if it still can't be written. Everything is written on {@link #shutdown()}.
+ */
 public class PersistentIssueTrackerCache implements IssueTrackerCache {
 
-  private final Logger logger;
+  static final int DEFAULT_MAX_WEIGHT = 10_000;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
 
-  static final int MAX_ENTRIES = 100;
+  private final Logger logger;
 
   private final IssueStore store;
-  private final Map<String, Collection<Trackable>> cache;
+  private final int maxWeight;
+  private final Map<String, Collection<Trackable>> cache = new LinkedHashMap<>();
+  private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+  private int weight;
+
+  /**
+   * Evicted entries not yet written to the store
+   */
+  private final Map<String, Collection<Trackable>> pendingWrites = new ConcurrentHashMap<>();
+  // the store is not safe for concurrent writes
+  private final Object storeLock = new Object();
+  private final ExecutorService writer;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong writeCount = new AtomicLong();
+  private final AtomicLong totalWriteTime = new AtomicLong();
 
   public PersistentIssueTrackerCache(IssueStore store, Logger logger) {
-    this.store = store;
-    this.cache = new LimitedSizeLinkedHashMap();
-    this.logger = logger;
+    this(store, logger, DEFAULT_MAX_WEIGHT);
   }
 
   /**
-   * Keeps a maximum number of entries in the map. On insertion, if the limit is passed, the entry accessed the longest time ago
-   * is flushed into cache and removed from the map.
+   * @param maxWeight maximum number of trackables kept in memory, counting one more for each file
    */
-  private class LimitedSizeLinkedHashMap extends LinkedHashMap<String, Collection<Trackable>> {
-    LimitedSizeLinkedHashMap() {
-      super(MAX_ENTRIES, 0.75f, true);
-    }
-
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, Collection<Trackable>> eldest) {
-      if (size() <= MAX_ENTRIES) {
-        return false;
-      }
+  public PersistentIssueTrackerCache(IssueStore store, Logger logger, int maxWeight) {
+    this.store = store;
+    this.logger = logger;
+    this.maxWeight = maxWeight;
+    this.writer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "sonarlint-issue-store-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
 
-      String key = eldest.getKey();
-      try {
-        logger.debug("Persisting issues for " + key);
-        store.save(key, eldest.getValue());
-      } catch (IOException e) {
-        throw new IllegalStateException(String.format("Error persisting issues for %s", key), e);
-      }
-      return true;
-    }
+  private static int weigh(Collection<Trackable> trackables) {
+    return trackables.size() + 1;
   }
 
   @Override
   public boolean isFirstAnalysis(String file) {
-    return !cache.containsKey(file) && !store.contains(file);
+    if (getLive(file) != null || pendingWrites.containsKey(file)) {
+      return false;
+    }
+    synchronized (storeLock) {
+      return !store.contains(file);
+    }
   }
 
   @Override
-  public synchronized Collection<Trackable> getLiveOrFail(String file) {
-    Collection<Trackable> liveTrackables = cache.get(file);
+  public Collection<Trackable> getLiveOrFail(String file) {
+    Collection<Trackable> liveTrackables = getLive(file);
     if (liveTrackables != null) {
+      hitCount.incrementAndGet();
       return liveTrackables;
     }
 
+    missCount.incrementAndGet();
     throw new IllegalStateException("No issues in cache for file: " + file);
   }
 
+  @CheckForNull
+  private Collection<Trackable> getLive(String file) {
+    Lock lock = rwl.readLock();
+    lock.lock();
+    try {
+      return cache.get(file);
+    } finally {
+      lock.unlock();
+    }
+  }
+
   /**
    * Read issues from a file that is cached. On cache miss, it won't fallback to the persistent store.
    */
   @Override
-  public synchronized Collection<Trackable> getCurrentTrackables(String file) {
-    Collection<Trackable> liveTrackables = cache.get(file);
+  public Collection<Trackable> getCurrentTrackables(String file) {
+    Collection<Trackable> liveTrackables = getLive(file);
     if (liveTrackables != null) {
+      hitCount.incrementAndGet();
       return liveTrackables;
     }
+    Collection<Trackable> pendingTrackables = pendingWrites.get(file);
+    if (pendingTrackables != null) {
+      hitCount.incrementAndGet();
+      return Collections.unmodifiableCollection(pendingTrackables);
+    }
 
+    missCount.incrementAndGet();
     try {
-      Collection<Trackable> storedTrackables = store.read(file);
+      Collection<Trackable> storedTrackables;
+      synchronized (storeLock) {
+        storedTrackables = store.read(file);
+      }
       if (storedTrackables != null) {
         return Collections.unmodifiableCollection(storedTrackables);
       }
@@ -103,33 +159,130 @@ public class PersistentIssueTrackerCache implements IssueTrackerCache {
   }
 
   @Override
-  public synchronized void put(String file, Collection<Trackable> trackables) {
-    cache.put(file, trackables);
+  public void put(String file, Collection<Trackable> trackables) {
+    Lock lock = rwl.writeLock();
+    lock.lock();
+    try {
+      // re-insert to move the entry at the end of the eviction order
+      Collection<Trackable> previous = cache.remove(file);
+      if (previous != null) {
+        weight -= weigh(previous);
+      }
+      cache.put(file, trackables);
+      weight += weigh(trackables);
+      evictIfNeeded();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Evicts the entries updated the longest time ago until the weight is under the limit, always keeping the latest one.
+   */
+  private void evictIfNeeded() {
+    Iterator<Map.Entry<String, Collection<Trackable>>> it = cache.entrySet().iterator();
+    while (weight > maxWeight && cache.size() > 1) {
+      Map.Entry<String, Collection<Trackable>> eldest = it.next();
+      String key = eldest.getKey();
+      weight -= weigh(eldest.getValue());
+      it.remove();
+      evictionCount.incrementAndGet();
+      pendingWrites.put(key, eldest.getValue());
+      try {
+        writer.submit(() -> tryWritePending(key));
+      } catch (RejectedExecutionException e) {
+        // already shut down
+        tryWritePending(key);
+      }
+    }
+  }
+
+  private void tryWritePending(String key) {
+    try {
+      writePending(key);
+    } catch (IOException e) {
+      // still pending, written again by the next flush
+      logger.error(String.format("Error persisting issues for %s", key), e);
+    }
+  }
+
+  private void writePending(String key) throws IOException {
+    synchronized (storeLock) {
+      Collection<Trackable> trackables = pendingWrites.get(key);
+      if (trackables == null) {
+        // already written with a later eviction, or cleared
+        return;
+      }
+      logger.debug("Persisting issues for " + key);
+      save(key, trackables);
+      // keep it if evicted again in the meantime
+      pendingWrites.remove(key, trackables);
+    }
+  }
+
+  private void save(String key, Collection<Trackable> trackables) throws IOException {
+    long start = System.nanoTime();
+    store.save(key, trackables);
+    writeCount.incrementAndGet();
+    totalWriteTime.addAndGet(System.nanoTime() - start);
   }
 
   @Override
-  public synchronized void clear() {
-    store.clear();
-    cache.clear();
+  public void clear() {
+    Lock lock = rwl.writeLock();
+    lock.lock();
+    try {
+      synchronized (storeLock) {
+        pendingWrites.clear();
+        store.clear();
+      }
+      cache.clear();
+      weight = 0;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
-   * Flushes all cached entries to disk.
+   * Flushes all cached entries to disk, including evicted entries that were not written yet.
    * It does not clear the cache.
    */
-  public synchronized void flushAll() {
+  public void flushAll() {
     logger.debug("Persisting all issues");
-    cache.forEach((path, trackables) -> {
-      try {
-        store.save(path, trackables);
-      } catch (IOException e) {
-        throw new IllegalStateException("Failed to flush cache", e);
+    Lock lock = rwl.writeLock();
+    lock.lock();
+    try {
+      synchronized (storeLock) {
+        for (String key : pendingWrites.keySet()) {
+          writePending(key);
+        }
+        for (Map.Entry<String, Collection<Trackable>> entry : cache.entrySet()) {
+          save(entry.getKey(), entry.getValue());
+        }
       }
-    });
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to flush cache", e);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void shutdown() {
+  public void shutdown() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        logger.debug("Timeout while waiting for pending issues to be persisted");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // whatever was not written by the background thread is written now
     flushAll();
   }
+
+  public IssueTrackerCacheStats getStats() {
+    return new IssueTrackerCacheStats(hitCount.get(), missCount.get(), evictionCount.get(), writeCount.get(),
+      TimeUnit.NANOSECONDS.toMillis(totalWriteTime.get()));
+  }
 }
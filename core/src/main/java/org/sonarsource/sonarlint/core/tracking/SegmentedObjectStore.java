@@ -0,0 +1,642 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import javax.annotation.CheckForNull;
+import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Reader;
+import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Writer;
+
+/**
+ * An ObjectStore keeping all entries in a few append-only segment files, instead of one file per key.
+ * <p>
+ * Each write or delete appends a record to the active segment, and a new segment is started when it is full.
+ * The location of the latest record of each key is kept in memory, and is rebuilt on startup by replaying the segments.
+ * A partially written record at the end of the last segment is discarded. Segments are read through memory mapping,
+ * and all accesses to the mappings are done while holding the lock of the store, so that they can be unmapped explicitly.
+ * <p>
+ * When most of the records of the full segments are obsolete, a background thread copies the live records into a
+ * new segment, which replaces all of them. Each segment file has its own id, and its header tells at which position it is
+ * replayed (its sequence number) and which sequence numbers it replaces, so that the replaced segments are ignored
+ * (and deleted) on startup if they could not be deleted right away.
+ *
+ * @param <V> type of the value to store
+ */
+class SegmentedObjectStore<V> implements ValidatingObjectStore<String, V> {
+  static final long DEFAULT_MAX_SEGMENT_SIZE = 16L * 1024 * 1024;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x534c5347;
+  // magic number + sequence number of the first segment replaced by this one + sequence number of this one
+  private static final int SEGMENT_HEADER_SIZE = 12;
+  // key length + value length, followed by the key, the value and a CRC32 of all of that
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int RECORD_TRAILER_SIZE = 4;
+  private static final int TOMBSTONE = -1;
+
+  private final Path basePath;
+  private final Reader<V> reader;
+  private final Writer<V> writer;
+  private final StoreKeyValidator<String> validator;
+  private final Logger logger;
+  private final long maxSegmentSize;
+  private final Executor compactor;
+  private final Object compactionLock = new Object();
+
+  private final Map<String, Location> locations = new HashMap<>();
+  // by sequence number
+  private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+  private Segment active;
+  private int nextId = 1;
+  private boolean loaded;
+  private boolean compacting;
+  // sequence number of the last segment of a failed compaction, not retried until another segment is full
+  private int failedCompaction;
+  // incremented when the store is cleared, to abandon a compaction in progress
+  private int generation;
+
+  SegmentedObjectStore(Path basePath, Reader<V> reader, Writer<V> writer, StoreKeyValidator<String> validator, Logger logger) {
+    this(basePath, reader, writer, validator, logger, DEFAULT_MAX_SEGMENT_SIZE, Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "sonarlint-issue-store-compactor");
+      thread.setDaemon(true);
+      return thread;
+    }));
+  }
+
+  SegmentedObjectStore(Path basePath, Reader<V> reader, Writer<V> writer, StoreKeyValidator<String> validator, Logger logger, long maxSegmentSize,
+    Executor compactor) {
+    this.basePath = basePath;
+    this.reader = reader;
+    this.writer = writer;
+    this.validator = validator;
+    this.logger = logger;
+    this.maxSegmentSize = maxSegmentSize;
+    this.compactor = compactor;
+  }
+
+  @Override
+  public Optional<V> read(String key) throws IOException {
+    byte[] value;
+    synchronized (this) {
+      load();
+      Location location = locations.get(key);
+      if (location == null) {
+        return Optional.empty();
+      }
+      value = location.segment.read(location.valueOffset(), location.valueLength);
+    }
+    return Optional.of(reader.apply(new ByteArrayInputStream(value)));
+  }
+
+  @Override
+  public synchronized boolean contains(String key) {
+    load();
+    return locations.containsKey(key);
+  }
+
+  @Override
+  public synchronized Collection<String> keys() {
+    load();
+    return new ArrayList<>(locations.keySet());
+  }
+
+  @Override
+  public void write(String key, V value) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.accept(out, value);
+    byte[] bytes = out.toByteArray();
+    synchronized (this) {
+      load();
+      Location location = append(key, bytes);
+      release(locations.put(key, location));
+      location.segment.liveBytes += location.recordSize;
+      compactIfNeeded();
+    }
+  }
+
+  @Override
+  public synchronized void delete(String key) throws IOException {
+    load();
+    if (!locations.containsKey(key)) {
+      return;
+    }
+    append(key, null);
+    release(locations.remove(key));
+    compactIfNeeded();
+  }
+
+  @Override
+  public void deleteInvalid() {
+    int counter = 0;
+    for (String k : keys()) {
+      if (!validator.apply(k)) {
+        try {
+          counter++;
+          delete(k);
+        } catch (IOException e) {
+          logger.error(String.format("failed to delete invalidated key '%s'", k), e);
+        }
+      }
+    }
+    logger.debug(String.format("%d entries removed from the store", counter));
+  }
+
+  @Override
+  public synchronized void clear() {
+    segments.values().forEach(Segment::unmap);
+    locations.clear();
+    segments.clear();
+    active = null;
+    nextId = 1;
+    loaded = false;
+    failedCompaction = 0;
+    generation++;
+  }
+
+  private static void release(@CheckForNull Location previous) {
+    if (previous != null) {
+      previous.segment.liveBytes -= previous.recordSize;
+    }
+  }
+
+  private Location append(String key, @CheckForNull byte[] value) throws IOException {
+    if (active == null || active.size >= maxSegmentSize) {
+      // ids are never reused, so the sequence number of a new segment is greater than all the existing ones
+      int id = nextId++;
+      active = Segment.create(segmentPath(id), id, id, id);
+      segments.put(active.seq, active);
+    }
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int valueLength = value != null ? value.length : TOMBSTONE;
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + Math.max(0, valueLength) + RECORD_TRAILER_SIZE);
+    record.putInt(keyBytes.length).putInt(valueLength).put(keyBytes);
+    if (value != null) {
+      record.put(value);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, record.position());
+    record.putInt((int) crc.getValue());
+    record.flip();
+
+    long offset = active.size;
+    try (FileChannel channel = FileChannel.open(active.path, StandardOpenOption.WRITE)) {
+      channel.position(offset);
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+    } catch (IOException e) {
+      // don't leave a partial record behind, it would hide the following ones
+      try (FileChannel channel = FileChannel.open(active.path, StandardOpenOption.WRITE)) {
+        channel.truncate(offset);
+      } catch (IOException truncateError) {
+        e.addSuppressed(truncateError);
+      }
+      throw e;
+    }
+    active.size += record.limit();
+    return new Location(active, offset, record.limit(), keyBytes.length, valueLength);
+  }
+
+  private Path segmentPath(int id) {
+    return basePath.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+  private void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    try {
+      for (Segment segment : listSegments()) {
+        nextId = Math.max(nextId, segment.id + 1);
+        Segment other = segments.get(segment.seq);
+        if (other == null || other.id < segment.id) {
+          segments.put(segment.seq, segment);
+        }
+        if (other != null) {
+          // a compacted segment and the last segment it replaces, the most recent one wins
+          deleteQuietly(other.id < segment.id ? other.path : segment.path);
+        }
+      }
+      deleteReplacedSegments();
+      for (Segment segment : segments.values()) {
+        replay(segment, segment == segments.lastEntry().getValue());
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to load local issue store", e);
+    }
+    if (!segments.isEmpty()) {
+      active = segments.lastEntry().getValue();
+    }
+  }
+
+  private List<Segment> listSegments() throws IOException {
+    List<Segment> result = new ArrayList<>();
+    if (!Files.isDirectory(basePath)) {
+      return result;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(basePath, SEGMENT_PREFIX + "*")) {
+      for (Path path : stream) {
+        String fileName = path.getFileName().toString();
+        if (fileName.endsWith(TEMP_SUFFIX)) {
+          // interrupted compaction
+          Files.deleteIfExists(path);
+        } else if (fileName.endsWith(SEGMENT_SUFFIX)) {
+          Segment segment = Segment.open(path, Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+          if (segment != null) {
+            result.add(segment);
+          } else {
+            logger.debug("Ignoring invalid segment " + path);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private void deleteReplacedSegments() {
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      NavigableMap<Integer, Segment> replaced = segments.subMap(segment.firstReplacedSeq, true, segment.seq, false);
+      for (Segment old : replaced.values()) {
+        deleteQuietly(old.path);
+      }
+      replaced.clear();
+    }
+  }
+
+  private void replay(Segment segment, boolean last) throws IOException {
+    ByteBuffer buffer = segment.slice(0, (int) segment.size);
+    int offset = SEGMENT_HEADER_SIZE;
+    while (offset < buffer.limit()) {
+      int recordSize = checkRecord(buffer, offset);
+      if (recordSize < 0) {
+        break;
+      }
+      int keyLength = buffer.getInt(offset);
+      int valueLength = buffer.getInt(offset + 4);
+      byte[] keyBytes = new byte[keyLength];
+      ((ByteBuffer) buffer.duplicate().position(offset + RECORD_HEADER_SIZE)).get(keyBytes);
+      String key = new String(keyBytes, StandardCharsets.UTF_8);
+      Location previous;
+      if (valueLength == TOMBSTONE) {
+        previous = locations.remove(key);
+      } else {
+        Location location = new Location(segment, offset, recordSize, keyLength, valueLength);
+        segment.liveBytes += recordSize;
+        previous = locations.put(key, location);
+      }
+      release(previous);
+      offset += recordSize;
+    }
+    if (offset < buffer.limit()) {
+      logger.debug(String.format("Discarding %d corrupted bytes at the end of %s", buffer.limit() - offset, segment.path));
+      if (last) {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+          channel.truncate(offset);
+        }
+      }
+      segment.size = offset;
+    }
+  }
+
+  /**
+   * @return the size of the record starting at the given offset, or -1 if it is truncated or corrupted
+   */
+  private static int checkRecord(ByteBuffer buffer, int offset) {
+    int remaining = buffer.limit() - offset;
+    if (remaining < RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE) {
+      return -1;
+    }
+    int keyLength = buffer.getInt(offset);
+    int valueLength = buffer.getInt(offset + 4);
+    if (keyLength < 0 || valueLength < TOMBSTONE) {
+      return -1;
+    }
+    long recordSize = (long) RECORD_HEADER_SIZE + keyLength + Math.max(0, valueLength) + RECORD_TRAILER_SIZE;
+    if (recordSize > remaining) {
+      return -1;
+    }
+    int checkedSize = (int) recordSize - RECORD_TRAILER_SIZE;
+    byte[] checked = new byte[checkedSize];
+    ((ByteBuffer) buffer.duplicate().position(offset)).get(checked);
+    CRC32 crc = new CRC32();
+    crc.update(checked);
+    if ((int) crc.getValue() != buffer.getInt(offset + checkedSize)) {
+      return -1;
+    }
+    return (int) recordSize;
+  }
+
+  private void compactIfNeeded() {
+    if (compacting) {
+      return;
+    }
+    NavigableMap<Integer, Segment> sealed = segments.headMap(active.seq, false);
+    if (sealed.size() < 2 || sealed.lastKey() <= failedCompaction) {
+      return;
+    }
+    long total = 0;
+    long live = 0;
+    for (Segment segment : sealed.values()) {
+      total += segment.size - SEGMENT_HEADER_SIZE;
+      live += segment.liveBytes;
+    }
+    if (live * 2 < total) {
+      compacting = true;
+      compactor.execute(this::compactQuietly);
+    }
+  }
+
+  private void compactQuietly() {
+    try {
+      compact();
+    } catch (IOException e) {
+      logger.error("Failed to compact local issue store", e);
+    }
+  }
+
+  /**
+   * Copy the live records of all full segments into a single segment, replacing all of them.
+   * Only the first and last steps are done while holding the lock of the store, as full segments are not modified.
+   */
+  void compact() throws IOException {
+    synchronized (compactionLock) {
+      doCompact();
+    }
+  }
+
+  private void doCompact() throws IOException {
+    int startGeneration;
+    NavigableMap<Integer, Segment> sealed;
+    List<Map.Entry<String, Location>> live = new ArrayList<>();
+    Segment compacted;
+    Path tempPath;
+    synchronized (this) {
+      load();
+      compacting = true;
+      startGeneration = generation;
+      sealed = new TreeMap<>(segments.headMap(active != null ? active.seq : Integer.MAX_VALUE, false));
+      if (sealed.isEmpty()) {
+        compacting = false;
+        return;
+      }
+      for (Map.Entry<String, Location> entry : locations.entrySet()) {
+        if (sealed.containsKey(entry.getValue().segment.seq)) {
+          live.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+      }
+      // written under a fresh id, the replaced segments might still be read until it is complete
+      int id = nextId++;
+      tempPath = basePath.resolve(segmentPath(id).getFileName() + TEMP_SUFFIX);
+      compacted = new Segment(segmentPath(id), id, sealed.firstEntry().getValue().firstReplacedSeq, sealed.lastKey(), SEGMENT_HEADER_SIZE);
+    }
+
+    try {
+      compacted.writeHeader(tempPath);
+      List<Location> copies = new ArrayList<>(live.size());
+      try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+        long offset = compacted.size;
+        for (Map.Entry<String, Location> entry : live) {
+          Location location = entry.getValue();
+          ByteBuffer record;
+          synchronized (this) {
+            if (generation != startGeneration) {
+              break;
+            }
+            record = ByteBuffer.wrap(location.segment.read(location.offset, location.recordSize));
+          }
+          channel.position(offset);
+          while (record.hasRemaining()) {
+            channel.write(record);
+          }
+          copies.add(new Location(compacted, offset, location.recordSize, location.keyLength, location.valueLength));
+          offset += location.recordSize;
+        }
+        channel.force(true);
+        compacted.size = offset;
+      }
+
+      synchronized (this) {
+        if (generation != startGeneration) {
+          deleteQuietly(tempPath);
+          return;
+        }
+        move(tempPath, compacted.path);
+        for (int i = 0; i < live.size(); i++) {
+          String key = live.get(i).getKey();
+          // the key might have been written or deleted in the meantime
+          if (locations.get(key) == live.get(i).getValue()) {
+            Location copy = copies.get(i);
+            locations.put(key, copy);
+            compacted.liveBytes += copy.recordSize;
+          }
+        }
+        segments.keySet().removeAll(sealed.keySet());
+        segments.put(compacted.seq, compacted);
+        for (Segment old : sealed.values()) {
+          old.unmap();
+          deleteQuietly(old.path);
+        }
+        logger.debug(String.format("Compacted %d segments of the local issue store", sealed.size()));
+      }
+    } catch (IOException e) {
+      deleteQuietly(tempPath);
+      synchronized (this) {
+        if (generation == startGeneration) {
+          failedCompaction = sealed.lastKey();
+        }
+      }
+      throw e;
+    } finally {
+      synchronized (this) {
+        compacting = false;
+      }
+    }
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // will be deleted on next startup
+      logger.debug("Failed to delete " + path, e);
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target);
+    }
+  }
+
+  synchronized int segmentCount() {
+    load();
+    return segments.size();
+  }
+
+  private static class Segment {
+    private final Path path;
+    private final int id;
+    private final int firstReplacedSeq;
+    private final int seq;
+    private long size;
+    private long liveBytes;
+    private MappedByteBuffer mapped;
+
+    private Segment(Path path, int id, int firstReplacedSeq, int seq, long size) {
+      this.path = path;
+      this.id = id;
+      this.firstReplacedSeq = firstReplacedSeq;
+      this.seq = seq;
+      this.size = size;
+    }
+
+    static Segment create(Path path, int id, int firstReplacedSeq, int seq) throws IOException {
+      Segment segment = new Segment(path, id, firstReplacedSeq, seq, SEGMENT_HEADER_SIZE);
+      segment.writeHeader(path);
+      return segment;
+    }
+
+    void writeHeader(Path target) throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(MAGIC).putInt(firstReplacedSeq).putInt(seq);
+      try (OutputStream out = Files.newOutputStream(target)) {
+        out.write(header.array());
+      }
+    }
+
+    @CheckForNull
+    static Segment open(Path path, int id) throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+      long size;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        size = channel.size();
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+          // read the whole header
+        }
+      }
+      if (header.hasRemaining()) {
+        return null;
+      }
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        return null;
+      }
+      int firstReplacedSeq = header.getInt();
+      int seq = header.getInt();
+      return firstReplacedSeq <= seq && seq <= id ? new Segment(path, id, firstReplacedSeq, seq, size) : null;
+    }
+
+    byte[] read(long offset, int length) throws IOException {
+      byte[] bytes = new byte[length];
+      slice(offset, length).get(bytes);
+      return bytes;
+    }
+
+    /**
+     * The mapping is extended when the segment grew since it was mapped.
+     */
+    ByteBuffer slice(long offset, int length) throws IOException {
+      if (mapped == null || offset + length > mapped.capacity()) {
+        unmap();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+      }
+      ByteBuffer slice = mapped.duplicate();
+      slice.position((int) offset);
+      slice.limit((int) offset + length);
+      return slice.slice();
+    }
+
+    /**
+     * Releases the mapping right away instead of waiting for the GC, otherwise the file can't be deleted on Windows.
+     * No slice of the mapping must be in use.
+     */
+    void unmap() {
+      if (mapped == null) {
+        return;
+      }
+      MappedByteBuffer buffer = mapped;
+      mapped = null;
+      try {
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          Method cleanMethod = cleaner.getClass().getMethod("clean");
+          cleanMethod.setAccessible(true);
+          cleanMethod.invoke(cleaner);
+        }
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // not supported by this JVM, released by the GC
+      }
+    }
+  }
+
+  private static class Location {
+    private final Segment segment;
+    private final long offset;
+    private final int recordSize;
+    private final int keyLength;
+    private final int valueLength;
+
+    Location(Segment segment, long offset, int recordSize, int keyLength, int valueLength) {
+      this.segment = segment;
+      this.offset = offset;
+      this.recordSize = recordSize;
+      this.keyLength = keyLength;
+      this.valueLength = valueLength;
+    }
+
+    long valueOffset() {
+      return offset + RECORD_HEADER_SIZE + keyLength;
+    }
+  }
+}
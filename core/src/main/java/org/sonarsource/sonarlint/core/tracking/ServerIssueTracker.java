@@ -20,9 +20,13 @@
 package org.sonarsource.sonarlint.core.tracking;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonarsource.sonarlint.core.client.api.common.ProgressMonitor;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerConfiguration;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerIssue;
@@ -45,15 +49,75 @@ public class ServerIssueTracker {
   }
 
   public void update(ConnectedSonarLintEngine engine, String moduleKey, Collection<String> fileKeys) {
-    update(fileKeys, fileKey -> engine.getServerIssues(moduleKey, fileKey));
+    Map<String, List<ServerIssue>> stored;
+    try {
+      stored = engine.getServerIssues(moduleKey, fileKeys);
+    } catch (Exception e) {
+      String message = "error while reading stored server issues";
+      console.error(message, e);
+      logger.error(message, e);
+      return;
+    }
+    update(fileKeys, fileKey -> stored.getOrDefault(fileKey, Collections.emptyList()));
+  }
+
+  /**
+   * Download the server issues of all the files at once, then match the files concurrently.
+   * The issues in local storage are used for the files whose issues could not be downloaded.
+   *
+   * @param monitor reports the progress of the download of each file
+   */
+  public void updateInBatch(ServerConfiguration serverConfiguration, ConnectedSonarLintEngine engine, String moduleKey, Collection<String> fileKeys,
+    @Nullable ProgressMonitor monitor) {
+    Map<String, List<ServerIssue>> downloaded;
+    try {
+      logger.debug("fetchServerIssues moduleKey=" + moduleKey + ", fileKeys=" + fileKeys.size());
+      downloaded = engine.downloadServerIssues(serverConfiguration, moduleKey, fileKeys, monitor);
+    } catch (Exception e) {
+      String message = "error while fetching server issues";
+      console.error(message, e);
+      logger.error(message, e);
+      return;
+    }
+    Map<String, List<ServerIssue>> stored = Collections.emptyMap();
+    if (downloaded.size() < fileKeys.size()) {
+      console.info(String.format("Failed to download server issues of %d file(s), using stored issues", fileKeys.size() - downloaded.size()));
+      List<String> notDownloaded = fileKeys.stream().filter(fileKey -> !downloaded.containsKey(fileKey)).collect(Collectors.toList());
+      try {
+        stored = engine.getServerIssues(moduleKey, notDownloaded);
+      } catch (Exception e) {
+        String message = "error while reading stored server issues";
+        console.error(message, e);
+        logger.error(message, e);
+      }
+    }
+
+    Map<String, List<ServerIssue>> storedIssues = stored;
+    // files are locked independently by the caching tracker
+    fileKeys.parallelStream().forEach(fileKey -> {
+      List<ServerIssue> serverIssues = downloaded.containsKey(fileKey) ? downloaded.get(fileKey) : storedIssues.get(fileKey);
+      if (serverIssues == null) {
+        return;
+      }
+      try {
+        matchAndTrack(fileKey, serverIssues);
+      } catch (Exception e) {
+        String message = "error while matching server issues of " + fileKey;
+        console.error(message, e);
+        logger.error(message, e);
+      }
+    });
+  }
+
+  private void matchAndTrack(String fileKey, List<ServerIssue> serverIssues) {
+    Collection<Trackable> serverIssuesTrackable = serverIssues.stream().map(ServerIssueTrackable::new).collect(Collectors.toList());
+    issueTracker.matchAndTrackAsBase(fileKey, serverIssuesTrackable);
   }
 
   private void update(Collection<String> fileKeys, Function<String, List<ServerIssue>> issueGetter) {
     try {
       for (String fileKey : fileKeys) {
-        List<ServerIssue> serverIssues = issueGetter.apply(fileKey);
-        Collection<Trackable> serverIssuesTrackable = serverIssues.stream().map(ServerIssueTrackable::new).collect(Collectors.toList());
-        issueTracker.matchAndTrackAsBase(fileKey, serverIssuesTrackable);
+        matchAndTrack(fileKey, issueGetter.apply(fileKey));
       }
     } catch (Exception e) {
       String message = "error while fetching and matching server issues";
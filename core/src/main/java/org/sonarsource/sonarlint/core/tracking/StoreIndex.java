@@ -28,4 +28,9 @@ interface StoreIndex<T> {
   void save(T key, Path path);
 
   void delete(T key);
+
+  /**
+   * Remove all keys.
+   */
+  void clear();
 }
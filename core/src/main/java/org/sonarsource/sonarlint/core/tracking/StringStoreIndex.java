@@ -77,6 +77,15 @@ class StringStoreIndex implements StoreIndex<String> {
     save(builder.build());
   }
 
+  @Override
+  public void clear() {
+    try {
+      Files.deleteIfExists(indexFilePath);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to delete local issue store index", e);
+    }
+  }
+
   private void save(Sonarlint.StorageIndex index) {
     try (OutputStream stream = Files.newOutputStream(indexFilePath)) {
       index.writeTo(stream);
@@ -19,16 +19,18 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /**
  * Match and track a collection of issues.
+ * <p>
+ * Matching is done in several passes, from the most to the least discriminant {@link SearchKey}. Relevant fields of
+ * all trackables are read only once, with strings interned into ints, so that the indexes built for each pass
+ * don't allocate any key object.
  *
  * @param <R> type of the "raw" trackables that are in the incoming collection
  * @param <B> type of the base trackables that are in the current collection
@@ -37,324 +39,292 @@ public class Tracker<R extends Trackable, B extends Trackable> {
 
   public Tracking<R, B> track(TrackableSupplier<R> rawTrackableSupplier, TrackableSupplier<B> baseTrackableSupplier) {
     Tracking<R, B> tracking = new Tracking<>(rawTrackableSupplier, baseTrackableSupplier);
-
-    // 1. match issues with same rule, same line and same text range hash, but not necessarily with same message
-    match(tracking, LineAndTextRangeHashKeyFactory.INSTANCE);
-
-    // 2. match issues with same rule, same message and same text range hash
-    match(tracking, TextRangeHashAndMessageKeyFactory.INSTANCE);
-
-    // 3. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
-
-    // 4. match issues with same rule and same text range hash but different line and different message.
-    // See SONAR-2812
-    match(tracking, TextRangeHashKeyFactory.INSTANCE);
-
-    // 5. match issues with same rule, same line and same line hash
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
-
-    // 6. match issues with same rule and same same line hash
-    match(tracking, LineHashKeyFactory.INSTANCE);
-
-    // 7. match issues with same server issue key
-    match(tracking, ServerIssueSearchKeyFactory.INSTANCE);
-
-    return tracking;
-  }
-
-  private void match(Tracking<R, B> tracking, SearchKeyFactory factory) {
     if (tracking.isComplete()) {
-      return;
+      return tracking;
     }
 
-    Map<SearchKey, List<B>> baseSearch = new HashMap<>();
-    for (B base : tracking.getUnmatchedBases()) {
-      SearchKey searchKey = factory.apply(base);
-      if (!baseSearch.containsKey(searchKey)) {
-        baseSearch.put(searchKey, new ArrayList<>());
+    Matcher matcher = new Matcher(tracking);
+    for (SearchKey searchKey : SearchKey.values()) {
+      if (tracking.isComplete() || !tracking.hasUnmatchedBases()) {
+        break;
       }
-      baseSearch.get(searchKey).add(base);
+      matcher.match(searchKey);
     }
 
-    for (R raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.apply(raw);
-      Collection<B> bases = baseSearch.get(rawKey);
-      if (bases != null && !bases.isEmpty()) {
+    return tracking;
+  }
+
+  private class Matcher {
+    private final Tracking<R, B> tracking;
+    private final Columns rawColumns;
+    private final Columns baseColumns;
+
+    Matcher(Tracking<R, B> tracking) {
+      this.tracking = tracking;
+      Map<String, Integer> ids = new HashMap<>();
+      this.rawColumns = new Columns(tracking.getRaws(), ids);
+      this.baseColumns = new Columns(tracking.getBases(), ids);
+    }
+
+    /**
+     * Each unmatched raw is matched with the first unmatched base having the same key, in the order of the base collection.
+     */
+    void match(SearchKey searchKey) {
+      BaseIndex index = new BaseIndex(searchKey, baseColumns, tracking);
+      int rawCount = tracking.getRaws().size();
+      for (int r = 0; r < rawCount; r++) {
+        if (tracking.isRawMatched(r) || !searchKey.accepts(rawColumns, r)) {
+          continue;
+        }
         // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
         // Message could be checked to take the best one.
-        B match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.get(rawKey).remove(match);
+        int b = index.poll(rawColumns, r);
+        if (b >= 0) {
+          tracking.match(r, b);
+        }
       }
     }
   }
 
-  private interface SearchKey {
-  }
-
-  @FunctionalInterface
-  private interface SearchKeyFactory extends Function<Trackable, SearchKey> {
-    @Override
-    SearchKey apply(Trackable trackable);
-  }
-
-  private static class LineAndTextRangeHashKey implements SearchKey {
-    private final String ruleKey;
-    private final Integer textRangeHash;
-    private final Integer line;
-
-    LineAndTextRangeHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.textRangeHash = trackable.getTextRangeHash();
-    }
-
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      LineAndTextRangeHashKey that = (LineAndTextRangeHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && Objects.equals(textRangeHash, that.textRangeHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + (textRangeHash != null ? textRangeHash.hashCode() : 0);
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndTextRangeHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new LineAndTextRangeHashKey(t);
-    }
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final String ruleKey;
-    private final Integer line;
-    private final Integer lineHash;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = trackable.getLineHash();
-    }
-
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && Objects.equals(lineHash, that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + (lineHash != null ? lineHash.hashCode() : 0);
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashKey implements SearchKey {
-    private final String ruleKey;
-    private final Integer lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = trackable.getLineHash();
-    }
-
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(lineHash, that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+  /**
+   * The fields used by search keys, read once from the trackables and stored by position.
+   * Strings are replaced by ids shared between raws and bases, nullable integers are widened to longs so that
+   * {@code null} gets its own value.
+   */
+  private static final class Columns {
+    private static final int NO_ID = -1;
+    private static final long NULL = Long.MIN_VALUE;
+
+    private final int[] ruleKeys;
+    private final int[] messages;
+    private final long[] lines;
+    private final long[] lineHashes;
+    private final long[] textRangeHashes;
+    private final int[] serverIssueKeys;
+
+    Columns(List<? extends Trackable> trackables, Map<String, Integer> ids) {
+      int size = trackables.size();
+      ruleKeys = new int[size];
+      messages = new int[size];
+      lines = new long[size];
+      lineHashes = new long[size];
+      textRangeHashes = new long[size];
+      serverIssueKeys = new int[size];
+
+      for (int i = 0; i < size; i++) {
+        Trackable trackable = trackables.get(i);
+        ruleKeys[i] = id(ids, trackable.getRuleKey());
+        messages[i] = id(ids, trackable.getMessage());
+        lines[i] = widen(trackable.getLine());
+        lineHashes[i] = widen(trackable.getLineHash());
+        textRangeHashes[i] = widen(trackable.getTextRangeHash());
+        String serverIssueKey = trackable.getServerIssueKey();
+        serverIssueKeys[i] = serverIssueKey == null || serverIssueKey.isEmpty() ? NO_ID : id(ids, serverIssueKey);
+      }
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + (lineHash != null ? lineHash.hashCode() : 0);
-      return result;
+    private static int id(Map<String, Integer> ids, @Nullable String value) {
+      if (value == null) {
+        return NO_ID;
+      }
+      return ids.computeIfAbsent(value, k -> ids.size());
     }
-  }
-
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
 
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new LineHashKey(t);
+    private static long widen(@Nullable Integer value) {
+      return value != null ? value : NULL;
     }
   }
 
-  private static class TextRangeHashAndMessageKey implements SearchKey {
-    private final String ruleKey;
-    private final String message;
-    private final Integer textRangeHash;
-
-    TextRangeHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.textRangeHash = trackable.getTextRangeHash();
-    }
-
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      TextRangeHashAndMessageKey that = (TextRangeHashAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(textRangeHash, that.textRangeHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
+  /**
+   * Open addressing hash table of the unmatched bases, grouped by search key. Bases having the same key are chained in
+   * the order of the base collection, and are removed from the chain once matched.
+   */
+  private static final class BaseIndex {
+    private static final int NONE = -1;
+
+    private final SearchKey searchKey;
+    private final Columns bases;
+    private final int mask;
+    // a base that has the key of the slot, used for comparisons even after it was matched
+    private final int[] slotKeys;
+    private final int[] slotHeads;
+    private final int[] slotTails;
+    private final int[] next;
+
+    BaseIndex(SearchKey searchKey, Columns bases, Tracking<?, ?> tracking) {
+      this.searchKey = searchKey;
+      this.bases = bases;
+      int baseCount = tracking.getBases().size();
+      int capacity = Integer.highestOneBit(Math.max(2, baseCount) * 2 - 1) << 1;
+      this.mask = capacity - 1;
+      this.slotKeys = new int[capacity];
+      this.slotHeads = new int[capacity];
+      this.slotTails = new int[capacity];
+      this.next = new int[baseCount];
+      Arrays.fill(slotKeys, NONE);
+
+      for (int b = 0; b < baseCount; b++) {
+        if (!tracking.isBaseMatched(b) && searchKey.accepts(bases, b)) {
+          add(b);
+        }
+      }
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (textRangeHash != null ? textRangeHash.hashCode() : 0);
-      return result;
+    private void add(int b) {
+      next[b] = NONE;
+      int slot = searchKey.hash(bases, b) & mask;
+      while (slotKeys[slot] != NONE) {
+        if (searchKey.equal(bases, slotKeys[slot], bases, b)) {
+          next[slotTails[slot]] = b;
+          slotTails[slot] = b;
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      slotKeys[slot] = b;
+      slotHeads[slot] = b;
+      slotTails[slot] = b;
+    }
+
+    /**
+     * Remove and return the first base having the same key as the given raw, or -1 if there is none.
+     */
+    int poll(Columns raws, int r) {
+      int slot = searchKey.hash(raws, r) & mask;
+      while (slotKeys[slot] != NONE) {
+        if (searchKey.equal(bases, slotKeys[slot], raws, r)) {
+          int head = slotHeads[slot];
+          if (head != NONE) {
+            slotHeads[slot] = next[head];
+          }
+          return head;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NONE;
     }
   }
 
-  private enum TextRangeHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new TextRangeHashAndMessageKey(t);
-    }
-  }
+  /**
+   * The search keys, in the order of the matching passes. Rule key is part of all of them, except the server issue key.
+   */
+  private enum SearchKey {
+    // 1. match issues with same rule, same line and same text range hash, but not necessarily with same message
+    LINE_AND_TEXT_RANGE_HASH {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], c.lines[i], c.textRangeHashes[i]);
+      }
 
-  private static class LineAndMessageKey implements SearchKey {
-    private final String ruleKey;
-    private final String message;
-    private final Integer line;
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        // start with most discriminant field
+        return a.lines[i] == b.lines[j] && a.textRangeHashes[i] == b.textRangeHashes[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
+    // 2. match issues with same rule, same message and same text range hash
+    TEXT_RANGE_HASH_AND_MESSAGE {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], c.messages[i], c.textRangeHashes[i]);
+      }
 
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.textRangeHashes[i] == b.textRangeHashes[j] && a.messages[i] == b.messages[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
+    // 3. match issues with same rule, same line and same message
+    LINE_AND_MESSAGE {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], c.messages[i], c.lines[i]);
+      }
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.lines[i] == b.lines[j] && a.messages[i] == b.messages[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new LineAndMessageKey(t);
-    }
-  }
+    // 4. match issues with same rule and same text range hash but different line and different message.
+    // See SONAR-2812
+    TEXT_RANGE_HASH {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], 0, c.textRangeHashes[i]);
+      }
 
-  private static class TextRangeHashKey implements SearchKey {
-    private final String ruleKey;
-    private final Integer textRangeHash;
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.textRangeHashes[i] == b.textRangeHashes[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    TextRangeHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.textRangeHash = trackable.getTextRangeHash();
-    }
+    // 5. match issues with same rule, same line and same line hash
+    LINE_AND_LINE_HASH {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], c.lineHashes[i], c.lines[i]);
+      }
 
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      TextRangeHashKey that = (TextRangeHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(textRangeHash, that.textRangeHash)
-        && ruleKey.equals(that.ruleKey);
-    }
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.lines[i] == b.lines[j] && a.lineHashes[i] == b.lineHashes[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + (textRangeHash != null ? textRangeHash.hashCode() : 0);
-      return result;
-    }
-  }
+    // 6. match issues with same rule and same same line hash
+    LINE_HASH {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.ruleKeys[i], 0, c.lineHashes[i]);
+      }
 
-  private enum TextRangeHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.lineHashes[i] == b.lineHashes[j] && a.ruleKeys[i] == b.ruleKeys[j];
+      }
+    },
 
-    @Override
-    public SearchKey apply(Trackable t) {
-      return new TextRangeHashKey(t);
-    }
-  }
+    // 7. match issues with same server issue key
+    SERVER_ISSUE_KEY {
+      @Override
+      int hash(Columns c, int i) {
+        return hash3(c.serverIssueKeys[i], 0, 0);
+      }
 
-  private static class ServerIssueSearchKey implements SearchKey {
-    private final String serverIssueKey;
+      @Override
+      boolean equal(Columns a, int i, Columns b, int j) {
+        return a.serverIssueKeys[i] == b.serverIssueKeys[j];
+      }
 
-    ServerIssueSearchKey(Trackable trackable) {
-      serverIssueKey = trackable.getServerIssueKey();
-    }
+      /**
+       * Blank server issue keys never match
+       */
+      @Override
+      boolean accepts(Columns c, int i) {
+        return c.serverIssueKeys[i] != Columns.NO_ID;
+      }
+    };
 
-    // note: the design of the enclosing caller ensures that 'o' is of the correct class and not null
-    @Override
-    public boolean equals(Object o) {
-      ServerIssueSearchKey that = (ServerIssueSearchKey) o;
-      return !isBlank(serverIssueKey) && !isBlank(that.serverIssueKey) && serverIssueKey.equals(that.serverIssueKey);
-    }
+    abstract int hash(Columns c, int i);
 
-    private static boolean isBlank(String s) {
-      return s == null || s.isEmpty();
-    }
+    abstract boolean equal(Columns a, int i, Columns b, int j);
 
-    @Override
-    public int hashCode() {
-      return serverIssueKey != null ? serverIssueKey.hashCode() : 0;
+    boolean accepts(Columns c, int i) {
+      return true;
     }
-  }
-
-  private enum ServerIssueSearchKeyFactory implements SearchKeyFactory {
-    INSTANCE;
 
-    @Override
-    public SearchKey apply(Trackable trackable) {
-      return new ServerIssueSearchKey(trackable);
+    private static int hash3(int first, long second, long third) {
+      long h = first;
+      h = 31 * h + second;
+      h = 31 * h + third;
+      // spread the bits, as slots are selected by the lowest ones
+      h *= 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
     }
   }
 }
@@ -20,13 +20,20 @@
 package org.sonarsource.sonarlint.core.tracking;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 /**
  * Store the state of tracking of issues.
+ * <p>
+ * Raws and bases are addressed by their position in the supplied collections, and whether they are matched is kept
+ * in bitsets, so that unmatched trackables can be iterated without copying.
  *
  * @param <R> type of the "raw" trackables that are in the incoming collection
  * @param <B> type of the base trackables that are in the current collection
@@ -37,29 +44,34 @@ public class Tracking<R extends Trackable, B extends Trackable> {
    * Matched issues -> a raw issue is associated to a base issue
    */
   private final IdentityHashMap<R, B> rawToBase = new IdentityHashMap<>();
-  private final IdentityHashMap<B, R> baseToRaw = new IdentityHashMap<>();
 
-  private final Collection<R> raws;
-  private final Collection<B> bases;
+  private final List<R> raws;
+  private final List<B> bases;
+  private final BitSet matchedRaws;
+  private final BitSet matchedBases;
+  private int matchedCount;
 
   public Tracking(TrackableSupplier<R> rawTrackableSupplier, TrackableSupplier<B> baseTrackableSupplier) {
-    this.raws = rawTrackableSupplier.get();
-    this.bases = baseTrackableSupplier.get();
+    this.raws = toRandomAccessList(rawTrackableSupplier.get());
+    this.bases = toRandomAccessList(baseTrackableSupplier.get());
+    this.matchedRaws = new BitSet(raws.size());
+    this.matchedBases = new BitSet(bases.size());
+  }
+
+  private static <T> List<T> toRandomAccessList(Collection<T> collection) {
+    if (collection instanceof List && collection instanceof RandomAccess) {
+      return (List<T>) collection;
+    }
+    return new ArrayList<>(collection);
   }
 
   /**
    * Returns an Iterable to be traversed when matching issues. That means
-   * that the traversal does not fail if method {@link #match(Trackable, Trackable)}
+   * that the traversal does not fail if method {@link #match(int, int)}
    * is called.
    */
   public Iterable<R> getUnmatchedRaws() {
-    List<R> result = new ArrayList<>();
-    for (R r : raws) {
-      if (!rawToBase.containsKey(r)) {
-        result.add(r);
-      }
-    }
-    return result;
+    return () -> new UnmatchedIterator<>(raws, matchedRaws);
   }
 
   public Map<R, B> getMatchedRaws() {
@@ -70,22 +82,66 @@ public class Tracking<R extends Trackable, B extends Trackable> {
    * The base issues that are not matched by a raw issue and that need to be closed.
    */
   public Iterable<B> getUnmatchedBases() {
-    List<B> result = new ArrayList<>();
-    for (B b : bases) {
-      if (!baseToRaw.containsKey(b)) {
-        result.add(b);
-      }
-    }
-    return result;
+    return () -> new UnmatchedIterator<>(bases, matchedBases);
   }
 
-  void match(R raw, B base) {
-    rawToBase.put(raw, base);
-    baseToRaw.put(base, raw);
+  List<R> getRaws() {
+    return raws;
+  }
+
+  List<B> getBases() {
+    return bases;
+  }
+
+  boolean isRawMatched(int rawIndex) {
+    return matchedRaws.get(rawIndex);
+  }
+
+  boolean isBaseMatched(int baseIndex) {
+    return matchedBases.get(baseIndex);
+  }
+
+  void match(int rawIndex, int baseIndex) {
+    matchedRaws.set(rawIndex);
+    matchedBases.set(baseIndex);
+    matchedCount++;
+    rawToBase.put(raws.get(rawIndex), bases.get(baseIndex));
   }
 
   boolean isComplete() {
-    return rawToBase.size() == raws.size();
+    return matchedCount == raws.size();
+  }
+
+  boolean hasUnmatchedBases() {
+    return matchedCount < bases.size();
   }
 
+  /**
+   * Iterates over the positions that are not set in the bitset. Trackables matched during the traversal are skipped
+   * if they were not reached yet.
+   */
+  private static class UnmatchedIterator<T> implements Iterator<T> {
+    private final List<T> trackables;
+    private final BitSet matched;
+    private int cursor;
+
+    UnmatchedIterator(List<T> trackables, BitSet matched) {
+      this.trackables = trackables;
+      this.matched = matched;
+    }
+
+    @Override
+    public boolean hasNext() {
+      cursor = matched.nextClearBit(cursor);
+      return cursor < trackables.size();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return trackables.get(cursor++);
+    }
+  }
 }
@@ -19,27 +19,31 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
+import java.util.Collection;
+import org.sonarsource.sonarlint.core.client.api.connected.objectstore.ObjectStore;
+
 /**
- * A trackable that used to match a server issue but it no longer does.
+ * An ObjectStore that keeps track of its keys, so that entries whose keys are no longer valid can be removed.
+ *
+ * @param <K> type of the key to store by and used when reading back
+ * @param <V> type of the value to store
  */
-public class DisconnectedTrackable extends LeakedTrackable {
+interface ValidatingObjectStore<K, V> extends ObjectStore<K, V> {
 
-  public DisconnectedTrackable(Trackable trackable) {
-    super(trackable);
-  }
+  boolean contains(K key);
 
-  @Override
-  public String getServerIssueKey() {
-    return null;
-  }
+  /**
+   * @return a snapshot of the keys of all entries
+   */
+  Collection<K> keys();
 
-  @Override
-  public boolean isResolved() {
-    return false;
-  }
+  /**
+   * Deletes all entries whose keys are no longer valid.
+   */
+  void deleteInvalid();
 
-  @Override
-  public String getAssignee() {
-    return "";
-  }
+  /**
+   * Forget all entries. Files of the store are expected to be deleted by the caller.
+   */
+  void clear();
 }
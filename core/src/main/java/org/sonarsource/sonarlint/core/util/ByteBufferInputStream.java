@@ -0,0 +1,64 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer, typically a slice of a memory mapped file.
+ */
+public class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer buffer;
+
+  public ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+  }
+
+  @Override
+  public int read(byte[] bytes, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    int count = Math.min(len, buffer.remaining());
+    buffer.get(bytes, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) {
+    int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+}
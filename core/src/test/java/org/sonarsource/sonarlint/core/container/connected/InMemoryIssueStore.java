@@ -19,7 +19,10 @@
  */
 package org.sonarsource.sonarlint.core.container.connected;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -35,6 +38,19 @@ public class InMemoryIssueStore implements IssueStore {
     issuesMap = issues.stream().collect(Collectors.groupingBy(IssueUtils::createFileKey));
   }
 
+  @Override
+  public int replaceAll(Iterator<ServerIssue> issues) {
+    List<ServerIssue> list = new ArrayList<>();
+    issues.forEachRemaining(list::add);
+    save(list);
+    return issuesMap.size();
+  }
+
+  @Override
+  public Map<String, List<ServerIssue>> loadAll() {
+    return new HashMap<>(issuesMap);
+  }
+
   @Override
   public List<ServerIssue> load(String fileKey) {
     List<ServerIssue> list = issuesMap.get(fileKey);
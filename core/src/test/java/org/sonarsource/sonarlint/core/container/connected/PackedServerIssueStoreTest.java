@@ -0,0 +1,406 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.scanner.protocol.Constants.Severity;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PackedServerIssueStoreTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path base;
+  private PackedServerIssueStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    base = temporaryFolder.newFolder().toPath().resolve("issues");
+    store = new PackedServerIssueStore(base);
+  }
+
+  @Test
+  public void should_read_issues_saved() {
+    ServerIssue issue1 = issue("module1", "path1", 1);
+    ServerIssue issue2 = issue("module1", "path2", 2);
+    ServerIssue issue3 = issue("module1", "path2", 3);
+
+    assertThat(store.load("module1:path1")).isEmpty();
+    store.save(Arrays.asList(issue1, issue2, issue3));
+
+    assertThat(store.load("module1:path1")).containsExactly(issue1);
+    assertThat(store.load("module1:path2")).containsExactly(issue2, issue3);
+    assertThat(store.load("module1:path0")).isEmpty();
+    assertThat(store.load("module1:path3")).isEmpty();
+  }
+
+  @Test
+  public void should_read_issues_of_several_files_at_once() {
+    ServerIssue issue1 = issue("module1", "path1", 1);
+    ServerIssue issue2 = issue("module1", "path2", 2);
+    ServerIssue issue3 = issue("module1", "path2", 3);
+
+    assertThat(store.load(Arrays.asList("module1:path1", "module1:path2"))).isEmpty();
+    assertThat(store.loadAll()).isEmpty();
+    store.save(Arrays.asList(issue1, issue2, issue3));
+
+    Map<String, List<ServerIssue>> issuesByKey = store.load(Arrays.asList("module1:path2", "module1:path0", "module1:path1"));
+    assertThat(issuesByKey).containsOnlyKeys("module1:path1", "module1:path2");
+    assertThat(issuesByKey.get("module1:path1")).containsExactly(issue1);
+    assertThat(issuesByKey.get("module1:path2")).containsExactly(issue2, issue3);
+
+    assertThat(store.loadAll()).isEqualTo(issuesByKey);
+  }
+
+  @Test
+  public void should_replace_issues_of_files_saved_again() {
+    store.save(Arrays.asList(issue("module", "file1", 1), issue("module", "file2", 2)));
+    ServerIssue replacement = issue("module", "file1", 11);
+    store.save(Collections.singletonList(replacement));
+
+    assertThat(store.load("module:file1")).containsExactly(replacement);
+    assertThat(store.load("module:file2")).containsExactly(issue("module", "file2", 2));
+  }
+
+  @Test
+  public void should_not_write_unchanged_issues() throws IOException {
+    List<ServerIssue> issues = Arrays.asList(issue("module", "file1", 1), issue("module", "file2", 2));
+    store.save(issues);
+    long size = Files.size(dataFiles().get(0));
+
+    store.save(issues);
+
+    assertThat(Files.size(dataFiles().get(0))).isEqualTo(size);
+    assertThat(store.load("module:file1")).containsExactly(issues.get(0));
+  }
+
+  @Test
+  public void should_replace_all_issues_writing_only_changes() throws IOException {
+    store.save(Arrays.asList(issue("module", "file1", 1), issue("module", "file2", 2), issue("module", "file3", 3)));
+    long size = Files.size(dataFiles().get(0));
+
+    ServerIssue changed = issue("module", "file2", 22);
+    ServerIssue added = issue("module", "file4", 4);
+    int count = store.replaceAll(Arrays.asList(issue("module", "file1", 1), changed, added).iterator());
+
+    assertThat(count).isEqualTo(3);
+    assertThat(store.load("module:file1")).containsExactly(issue("module", "file1", 1));
+    assertThat(store.load("module:file2")).containsExactly(changed);
+    assertThat(store.load("module:file3")).isEmpty();
+    assertThat(store.load("module:file4")).containsExactly(added);
+    // only the blocks of file2 and file4 were appended
+    assertThat(Files.size(dataFiles().get(0))).isGreaterThan(size).isLessThan(2 * size);
+
+    assertThat(store.replaceAll(Arrays.asList(issue("module", "file1", 1), changed, added).iterator())).isZero();
+  }
+
+  @Test
+  public void should_keep_replaced_index_files_until_next_index() throws IOException {
+    store.replaceAll(Collections.singletonList(issue("module", "file1", 1)).iterator());
+    store.replaceAll(Collections.singletonList(issue("module", "file2", 2)).iterator());
+    store.save(Collections.singletonList(issue("module", "file3", 3)));
+    store.replaceAll(Collections.singletonList(issue("module", "file4", 4)).iterator());
+
+    try (Stream<Path> files = Files.list(base)) {
+      // readers of the previous head may still read its files
+      assertThat(files.map(path -> path.getFileName().toString()))
+        .containsOnly(PackedServerIssueStore.HEAD_FILE, "index-2.idx", "index-2.delta", "index-3.idx", "issues-1.data");
+    }
+    assertThat(store.loadAll()).containsOnlyKeys("module:file4");
+  }
+
+  @Test
+  public void should_append_small_saves_to_delta() throws IOException {
+    store.save(Arrays.asList(issue("module", "file1", 1), issue("module", "file2", 2)));
+    byte[] index = Files.readAllBytes(base.resolve("index-1.idx"));
+
+    ServerIssue replacement = issue("module", "file1", 11);
+    ServerIssue added = issue("other", "file3", 3);
+    store.save(Arrays.asList(replacement, added));
+    store.delete("module:file2");
+
+    assertThat(Files.readAllBytes(base.resolve("index-1.idx"))).isEqualTo(index);
+    assertThat(Files.exists(base.resolve("index-1.delta"))).isTrue();
+    PackedServerIssueStore reopened = new PackedServerIssueStore(base);
+    assertThat(reopened.load("module:file1")).containsExactly(replacement);
+    assertThat(reopened.load("module:file2")).isEmpty();
+    assertThat(reopened.load("other:file3")).containsExactly(added);
+    assertThat(reopened.loadAll()).containsOnlyKeys("module:file1", "other:file3");
+  }
+
+  @Test
+  public void should_write_new_index_when_delta_is_large() throws IOException {
+    // each save adds its file key and path to the delta
+    String dir = String.join("/", Collections.nCopies(50, "dir"));
+    List<ServerIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      ServerIssue issue = issue("module", dir + "/file" + i + ".java", i);
+      issues.add(issue);
+      store.save(Collections.singletonList(issue));
+    }
+
+    try (Stream<Path> files = Files.list(base)) {
+      assertThat(files.map(path -> path.getFileName().toString())).contains("index-2.idx");
+    }
+    Map<String, List<ServerIssue>> issuesByKey = new PackedServerIssueStore(base).loadAll();
+    assertThat(issuesByKey).hasSize(300);
+    assertThat(issuesByKey.get("module:" + dir + "/file299.java")).containsExactly(issues.get(299));
+    assertThat(store.load("module:" + dir + "/file0.java")).containsExactly(issues.get(0));
+  }
+
+  @Test
+  public void should_make_issues_visible_when_published() {
+    ServerIssue issue1 = issue("module", "file1", 1);
+    store.save(Collections.singletonList(issue1));
+
+    List<Runnable> published = new ArrayList<>();
+    ServerIssue issue2 = issue("module", "file2", 2);
+    store.save(Collections.singletonList(issue2).iterator(), published::add);
+    assertThat(store.loadAll()).containsOnlyKeys("module:file1");
+    assertThat(published).hasSize(1);
+    published.get(0).run();
+    assertThat(store.load("module:file2")).containsExactly(issue2);
+
+    published.clear();
+    assertThat(store.replaceAll(Collections.singletonList(issue2).iterator(), published::add)).isEqualTo(1);
+    assertThat(store.loadAll()).containsOnlyKeys("module:file1", "module:file2");
+    published.get(0).run();
+    assertThat(store.loadAll()).containsOnlyKeys("module:file2");
+  }
+
+  @Test
+  public void should_drop_issues_not_published() {
+    store.save(Collections.singletonList(issue("module", "file1", 1)));
+    store.save(Collections.singletonList(issue("module", "file2", 2)).iterator(), action -> {
+      // not published, e.g. failed to get the lock
+    });
+    ServerIssue issue3 = issue("module", "file3", 3);
+    store.save(Collections.singletonList(issue3));
+
+    assertThat(store.loadAll()).containsOnlyKeys("module:file1", "module:file3");
+    assertThat(store.load("module:file3")).containsExactly(issue3);
+  }
+
+  @Test
+  public void should_find_any_key_among_many() {
+    List<ServerIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      issues.add(issue("module", "dir/file" + i + "é.java", i));
+    }
+    store.save(issues);
+
+    for (int i = 0; i < 1000; i++) {
+      assertThat(new PackedServerIssueStore(base).load("module:dir/file" + i + "é.java")).containsExactly(issues.get(i));
+    }
+  }
+
+  @Test
+  public void should_delete_entries() {
+    store.save(Arrays.asList(issue("module", "file1", 1), issue("module", "file2", 2)));
+
+    store.delete("module:file1");
+    store.delete("module:nonexistent");
+
+    assertThat(store.load("module:file1")).isEmpty();
+    assertThat(store.load("module:file2")).hasSize(1);
+  }
+
+  @Test
+  public void should_compact_data_when_mostly_replaced() throws IOException {
+    // checksums are neither in the dictionary nor much compressed
+    Random random = new Random(0);
+    ServerIssue.Builder builder = ServerIssue.newBuilder().setModuleKey("module").setPath("file");
+    for (int i = 0; i < 300; i++) {
+      StringBuilder checksum = new StringBuilder();
+      for (int j = 0; j < 2000; j++) {
+        checksum.append(Long.toHexString(random.nextLong()));
+      }
+      store.save(Collections.singletonList(builder.setLine(i).setMsg("message " + i).setChecksum(checksum.toString()).build()));
+    }
+
+    assertThat(store.load("module:file")).containsExactly(builder.build());
+    // the data file replaced by the last compaction is kept until the next one
+    List<Path> dataFiles = dataFiles();
+    assertThat(dataFiles.size()).isLessThanOrEqualTo(2);
+    assertThat(dataFiles).extracting(path -> path.getFileName().toString()).doesNotContain("issues-1.data");
+    for (Path dataFile : dataFiles) {
+      assertThat(Files.size(dataFile)).isLessThan(2L * 1024 * 1024);
+    }
+  }
+
+  @Test
+  public void should_spill_and_merge_issues_in_order() throws IOException {
+    store = new PackedServerIssueStore(base, 100);
+    store.save(Collections.singletonList(issue("module", "file0", 0)));
+    List<ServerIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      issues.add(issue("module", "file" + (i % 7), i));
+    }
+    store.save(issues.iterator());
+
+    for (int file = 0; file < 7; file++) {
+      int f = file;
+      assertThat(store.load("module:file" + file))
+        .containsExactlyElementsOf(issues.stream().filter(issue -> issue.getPath().equals("file" + f)).collect(Collectors.toList()));
+    }
+    try (Stream<Path> files = Files.list(base)) {
+      assertThat(files.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".tmp"))).isEmpty();
+    }
+  }
+
+  @Test
+  public void should_keep_fields_of_issues() {
+    ServerIssue full = ServerIssue.newBuilder()
+      .setKey("key")
+      .setModuleKey("module")
+      .setPath("file")
+      .setRuleRepository("squid")
+      .setRuleKey("S123")
+      .setLine(12)
+      .setMsg("")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(false)
+      .setResolution("FALSE-POSITIVE")
+      .setStatus("RESOLVED")
+      .setChecksum("checksum")
+      .setAssigneeLogin("login")
+      .setCreationDate(1234567890L)
+      .setType("BUG")
+      .build();
+    ServerIssue minimal = ServerIssue.newBuilder().setModuleKey("module").setPath("file").build();
+    store.save(Arrays.asList(full, minimal));
+
+    assertThat(store.load("module:file")).containsExactly(full, minimal);
+    assertThat(store.load("module:file").get(1).hasLine()).isFalse();
+  }
+
+  @Test
+  public void should_store_repeated_strings_once() throws IOException {
+    List<ServerIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      issues.add(ServerIssue.newBuilder()
+        .setKey("AVn8Rm7bAbCdEfGhIjK" + i)
+        .setModuleKey("org.sonarsource.sonarlint.core:sonarlint-core")
+        .setPath("src/main/java/org/sonarsource/sonarlint/core/File" + (i / 10) + ".java")
+        .setRuleRepository("squid")
+        .setRuleKey("S" + (i % 50))
+        .setMsg("Refactor this method to reduce its Cognitive Complexity from " + (i % 20) + " to the 15 allowed.")
+        .setSeverity(Severity.CRITICAL)
+        .setStatus("OPEN")
+        .setAssigneeLogin("user" + (i % 5))
+        .setCreationDate(1500000000000L + i)
+        .setType("CODE_SMELL")
+        .build());
+    }
+    store.save(issues);
+
+    long serializedSize = issues.stream().mapToLong(ServerIssue::getSerializedSize).sum();
+    long storedSize;
+    try (Stream<Path> files = Files.list(base)) {
+      storedSize = files.mapToLong(path -> path.toFile().length()).sum();
+    }
+    assertThat(storedSize).isLessThan(serializedSize / 3);
+    assertThat(store.load("src/main/java/org/sonarsource/sonarlint/core/File0.java")).isEmpty();
+    assertThat(store.load("org.sonarsource.sonarlint.core:sonarlint-core:src/main/java/org/sonarsource/sonarlint/core/File42.java"))
+      .containsExactlyElementsOf(issues.subList(420, 430));
+  }
+
+  @Test
+  public void should_not_store_messages_in_dictionary() throws IOException {
+    List<ServerIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      issues.add(issue("module", "file", i).toBuilder().setMsg("Rename this local variable to match the regular expression " + i).build());
+    }
+    store.save(issues);
+
+    assertThat(store.load("module:file")).containsExactlyElementsOf(issues);
+    try (Stream<Path> files = Files.list(base)) {
+      // the index only has the file key, the module key and the path
+      assertThat(files.filter(path -> path.getFileName().toString().endsWith(".idx")).mapToLong(path -> path.toFile().length()).sum()).isLessThan(1000);
+    }
+  }
+
+  @Test
+  public void should_ignore_index_of_previous_version() throws IOException {
+    Files.createDirectories(base);
+    Files.write(base.resolve(PackedServerIssueStore.HEAD_FILE), ByteBuffer.allocate(8).putLong(1).array());
+    // magic, version 1, generation 1, no entries
+    Files.write(base.resolve("index-1.idx"), ByteBuffer.allocate(20).putInt(0x534c4958).putInt(1).putLong(1).putInt(0).array());
+    Files.write(base.resolve("issues-1.data"), new byte[] {1, 2, 3});
+
+    assertThat(store.load("module:file1")).isEmpty();
+    assertThat(store.loadAll()).isEmpty();
+
+    ServerIssue issue = issue("module", "file1", 1);
+    store.save(Collections.singletonList(issue));
+    assertThat(store.load("module:file1")).containsExactly(issue);
+    assertThat(dataFiles()).extracting(path -> path.getFileName().toString()).containsOnly("issues-2.data");
+  }
+
+  @Test
+  public void should_read_and_migrate_previous_layout() throws IOException {
+    ServerIssueStore legacy = new ServerIssueStore(base);
+    ServerIssue issue1 = issue("module", "file1", 1);
+    ServerIssue issue2 = issue("module", "file2", 2);
+    legacy.save(Arrays.asList(issue1, issue2));
+
+    assertThat(store.load("module:file1")).containsExactly(issue1);
+    assertThat(store.load(Arrays.asList("module:file1", "module:file2"))).containsOnlyKeys("module:file1", "module:file2");
+    assertThat(store.loadAll()).containsOnlyKeys("module:file1", "module:file2");
+
+    ServerIssue issue3 = issue("module", "file3", 3);
+    store.save(Collections.singletonList(issue3));
+
+    assertThat(store.load("module:file1")).containsExactly(issue1);
+    assertThat(store.load("module:file2")).containsExactly(issue2);
+    assertThat(store.load("module:file3")).containsExactly(issue3);
+    try (Stream<Path> files = Files.walk(base)) {
+      assertThat(files.filter(Files::isRegularFile).map(base::relativize).map(Path::toString).collect(Collectors.toList()))
+        .containsOnly(PackedServerIssueStore.HEAD_FILE, "index-1.idx", "index-1.delta", "issues-1.data");
+    }
+  }
+
+  private List<Path> dataFiles() throws IOException {
+    try (Stream<Path> files = Files.list(base)) {
+      return files.filter(path -> path.getFileName().toString().endsWith(".data")).collect(Collectors.toList());
+    }
+  }
+
+  private static ServerIssue issue(String moduleKey, String path, int line) {
+    return ServerIssue.newBuilder().setModuleKey(moduleKey).setPath(path).setLine(line).setKey("key" + line).build();
+  }
+}
@@ -25,6 +25,8 @@ import static org.sonarsource.sonarlint.core.container.storage.ProtobufUtilTest.
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -52,6 +54,21 @@ public class IssueDownloaderImplTest {
     assertThat(issueDownloader.apply(key)).containsOnly(issue);
   }
 
+  @Test
+  public void test_download_streaming() throws IOException {
+    ScannerInput.ServerIssue issue1 = ScannerInput.ServerIssue.newBuilder().setKey("key1").build();
+    ScannerInput.ServerIssue issue2 = ScannerInput.ServerIssue.newBuilder().setKey("key2").build();
+
+    SonarLintWsClient wsClient = WsClientTestUtils.createMock();
+    String key = "dummyKey";
+    WsClientTestUtils.addResponse(wsClient, "/batch/issues?key=" + key, new ByteArrayInputStream(toByteArray(issue1, issue2)));
+
+    IssueDownloader issueDownloader = new IssueDownloaderImpl(wsClient);
+    List<ScannerInput.ServerIssue> issues = new ArrayList<>();
+    issueDownloader.download(key, iterator -> iterator.forEachRemaining(issues::add));
+    assertThat(issues).containsExactly(issue1, issue2);
+  }
+
   @Test
   public void test_code403() throws IOException {
     SonarLintWsClient wsClient = WsClientTestUtils.createMock();
@@ -28,6 +28,7 @@ import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleSearchIndex;
 import org.sonarsource.sonarlint.core.util.ProgressWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -67,6 +68,10 @@ public class ModuleListDownloaderTest {
     ModuleList moduleList = ProtobufUtil.readFile(tempDir.toPath().resolve(StorageManager.MODULE_LIST_PB), ModuleList.parser());
     assertThat(moduleList.getModulesByKeyMap()).hasSize(282);
     assertThat(moduleList.getModulesByKeyMap().values()).extracting("qu").contains("TRK", "BRC");
+
+    ModuleSearchIndex index = ProtobufUtil.readFile(tempDir.toPath().resolve(StorageManager.MODULE_SEARCH_INDEX_PB), ModuleSearchIndex.parser());
+    assertThat(index.getModuleList()).hasSize(282);
+    assertThat(index.getTokenList()).isNotEmpty();
   }
 
   @Test
@@ -0,0 +1,88 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected.update;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.container.storage.StorageManager;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ActiveRules;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RelevantIssueDownloaderTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private final ScannerInput.ServerIssue javaIssue = issue("squid", "S1", "OPEN", "");
+  private final ScannerInput.ServerIssue jsIssue = issue("javascript", "S2", "RESOLVED", "FALSE-POSITIVE");
+  private final ScannerInput.ServerIssue inactiveRuleIssue = issue("squid", "S3", "OPEN", "");
+  private final ScannerInput.ServerIssue fixedIssue = issue("squid", "S1", "RESOLVED", "FIXED");
+  private final ScannerInput.ServerIssue closedIssue = issue("squid", "S1", "CLOSED", "REMOVED");
+  private final IssueDownloader downloader = key -> Arrays.asList(javaIssue, jsIssue, inactiveRuleIssue, fixedIssue, closedIssue);
+
+  @Test
+  public void should_keep_issues_of_active_rules_that_can_be_matched() throws IOException {
+    StorageManager storageManager = mock(StorageManager.class);
+    Path javaRules = temp.newFile().toPath();
+    Path jsRules = temp.newFile().toPath();
+    ProtobufUtil.writeToFile(activeRules("squid:S1"), javaRules);
+    ProtobufUtil.writeToFile(activeRules("javascript:S2"), jsRules);
+    when(storageManager.getActiveRulesPath("java-qp")).thenReturn(javaRules);
+    when(storageManager.getActiveRulesPath("js-qp")).thenReturn(jsRules);
+    when(storageManager.getActiveRulesPath("xoo-qp")).thenReturn(temp.getRoot().toPath().resolve("missing.pb"));
+    ModuleConfiguration moduleConfiguration = ModuleConfiguration.newBuilder()
+      .putQprofilePerLanguage("java", "java-qp")
+      .putQprofilePerLanguage("js", "js-qp")
+      .putQprofilePerLanguage("xoo", "xoo-qp")
+      .build();
+
+    RelevantIssueDownloader relevantIssueDownloader = RelevantIssueDownloader.forModule(downloader, storageManager, moduleConfiguration);
+
+    assertThat(relevantIssueDownloader.apply("module")).containsExactly(javaIssue, jsIssue);
+    List<ScannerInput.ServerIssue> issues = new ArrayList<>();
+    relevantIssueDownloader.download("module", iterator -> iterator.forEachRemaining(issues::add));
+    assertThat(issues).containsExactly(javaIssue, jsIssue);
+  }
+
+  private static ActiveRules activeRules(String ruleKey) {
+    return ActiveRules.newBuilder().putActiveRulesByKey(ruleKey, ActiveRules.ActiveRule.getDefaultInstance()).build();
+  }
+
+  private static ScannerInput.ServerIssue issue(String repository, String ruleKey, String status, String resolution) {
+    return ScannerInput.ServerIssue.newBuilder()
+      .setKey(repository + ruleKey + status)
+      .setRuleRepository(repository)
+      .setRuleKey(ruleKey)
+      .setStatus(status)
+      .setResolution(resolution)
+      .build();
+  }
+}
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,11 +34,13 @@ import org.sonar.api.server.rule.RulesDefinition.Context;
 import org.sonarsource.sonarlint.core.WsClientTestUtils;
 import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
 import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.container.storage.RuleDescriptionStore;
 import org.sonarsource.sonarlint.core.container.storage.StorageManager;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ActiveRules;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.Rules;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonarsource.sonarlint.core.container.connected.update.RulesDownloader.RULES_SEARCH_URL;
 
@@ -72,6 +75,16 @@ public class RulesDownloaderTest {
     assertThat(rules.getRulesByKeyMap()).hasSize(939);
     ActiveRules jsActiveRules = ProtobufUtil.readFile(tempDir.toPath().resolve(StorageManager.ACTIVE_RULES_FOLDER).resolve("js-sonar-way-62960.pb"), ActiveRules.parser());
     assertThat(jsActiveRules.getActiveRulesByKeyMap()).hasSize(85);
+
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.getRuleDescriptionsIndexPath()).thenReturn(tempDir.toPath().resolve(StorageManager.RULE_DESCRIPTIONS_INDEX_PB));
+    when(storageManager.getRuleDescriptionsPath()).thenReturn(tempDir.toPath().resolve(StorageManager.RULE_DESCRIPTIONS_DATA));
+    RuleDescriptionStore ruleDescriptionStore = new RuleDescriptionStore(storageManager);
+    for (Map.Entry<String, Rules.Rule> entry : rules.getRulesByKeyMap().entrySet()) {
+      assertThat(entry.getValue().getHtmlDesc()).isEmpty();
+      assertThat(entry.getValue().getHtmlNote()).isEmpty();
+      assertThat(ruleDescriptionStore.get(entry.getKey()).getHtmlDesc()).isNotEmpty();
+    }
   }
 
   @Test
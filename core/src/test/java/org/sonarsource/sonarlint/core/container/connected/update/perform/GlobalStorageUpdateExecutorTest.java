@@ -30,6 +30,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -98,6 +100,24 @@ public class GlobalStorageUpdateExecutorTest {
     assertThat(serverInfos.getVersion()).isEqualTo("5.6-SNAPSHOT");
   }
 
+  @Test
+  public void replaceStorageOnlyWhenPublished() throws IOException {
+    Files.createFile(destDir.toPath().resolve("test"));
+    List<Runnable> published = new ArrayList<>();
+
+    globalUpdate.update(new ProgressWrapper(null), action -> {
+      // current storage still readable
+      assertThat(Files.exists(destDir.toPath().resolve("test"))).isTrue();
+      assertThat(Files.exists(destDir.toPath().resolve(StorageManager.STORAGE_STATUS_PB))).isFalse();
+      published.add(action);
+      action.run();
+    });
+
+    assertThat(published).hasSize(1);
+    assertThat(Files.exists(destDir.toPath().resolve("test"))).isFalse();
+    assertThat(Files.exists(destDir.toPath().resolve(StorageManager.STORAGE_STATUS_PB))).isTrue();
+  }
+
   @Test
   public void dontCopyOnError() throws IOException {
     Files.createDirectories(destDir.toPath());
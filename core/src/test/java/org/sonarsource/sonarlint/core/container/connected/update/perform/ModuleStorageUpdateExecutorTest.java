@@ -22,9 +22,11 @@ package org.sonarsource.sonarlint.core.container.connected.update.perform;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 import org.junit.Before;
@@ -38,6 +40,7 @@ import org.junit.runners.Parameterized.Parameters;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonarsource.sonarlint.core.WsClientTestUtils;
+import org.sonarsource.sonarlint.core.client.api.connected.ConnectedGlobalConfiguration;
 import org.sonarsource.sonarlint.core.container.connected.InMemoryIssueStore;
 import org.sonarsource.sonarlint.core.container.connected.IssueStore;
 import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
@@ -144,7 +147,8 @@ public class ModuleStorageUpdateExecutorTest {
     when(storageManager.readQProfilesFromStorage()).thenReturn(builder.build());
     when(storageManager.getModuleStorageRoot(MODULE_KEY_WITH_BRANCH)).thenReturn(destDir.toPath());
 
-    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader);
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().build());
 
     exception.expect(IllegalStateException.class);
     exception.expectMessage("Failed to load module quality profiles");
@@ -164,7 +168,8 @@ public class ModuleStorageUpdateExecutorTest {
     when(storageManager.readQProfilesFromStorage()).thenReturn(builder.build());
     when(storageManager.getModuleStorageRoot(MODULE_KEY_WITH_BRANCH)).thenReturn(destDir.toPath());
 
-    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader);
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().build());
 
     moduleUpdate.update(MODULE_KEY_WITH_BRANCH, new ProgressWrapper(null));
 
@@ -179,6 +184,31 @@ public class ModuleStorageUpdateExecutorTest {
       entry(MODULE_KEY_WITH_BRANCH + "child1", "child 1"));
   }
 
+  @Test
+  public void module_update_replaces_storage_only_when_published() throws Exception {
+    File destDir = temp.newFolder();
+    QProfiles.Builder builder = QProfiles.newBuilder();
+    builder.putQprofilesByKey("cs-sonar-way-58886", QProfiles.QProfile.newBuilder().build());
+    builder.putQprofilesByKey("java-empty-74333", QProfiles.QProfile.newBuilder().build());
+    builder.putQprofilesByKey("js-sonar-way-60746", QProfiles.QProfile.newBuilder().build());
+
+    when(storageManager.readQProfilesFromStorage()).thenReturn(builder.build());
+    when(storageManager.getModuleStorageRoot(MODULE_KEY_WITH_BRANCH)).thenReturn(destDir.toPath());
+
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().build());
+
+    List<Runnable> published = new ArrayList<>();
+    moduleUpdate.update(MODULE_KEY_WITH_BRANCH, new ProgressWrapper(null), action -> {
+      assertThat(destDir.toPath().resolve(StorageManager.MODULE_CONFIGURATION_PB)).doesNotExist();
+      published.add(action);
+      action.run();
+    });
+
+    assertThat(published).hasSize(1);
+    assertThat(destDir.toPath().resolve(StorageManager.MODULE_CONFIGURATION_PB)).exists();
+  }
+
   @Test
   public void test_error_if_qp_doesnt_exist() throws IOException {
     File destDir = temp.newFolder();
@@ -192,7 +222,8 @@ public class ModuleStorageUpdateExecutorTest {
     when(storageManager.readQProfilesFromStorage()).thenReturn(builder.build());
     when(storageManager.getModuleStorageRoot(MODULE_KEY_WITH_BRANCH)).thenReturn(destDir.toPath());
 
-    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader);
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, (key) -> Collections.emptyList(), issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().build());
 
     exception.expect(IllegalStateException.class);
     exception.expectMessage("is associated to quality profile 'js-sonar-way-60746' that is not in storage");
@@ -227,7 +258,8 @@ public class ModuleStorageUpdateExecutorTest {
 
     IssueDownloader issueDownloader = moduleKey -> Arrays.asList(fileIssue1, fileIssue2, anotherFileIssue);
 
-    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, issueDownloader, issueStoreFactory, tempFolder, moduleConfigurationDownloader);
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, issueDownloader, issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().build());
     moduleUpdate.update(MODULE_KEY_WITH_BRANCH, new ProgressWrapper(null));
 
     assertThat(issueStore.load(createFileKey(fileIssue1))).containsOnly(fileIssue1, fileIssue2);
@@ -235,6 +267,28 @@ public class ModuleStorageUpdateExecutorTest {
     assertThat(issueStore.load(createFileKey(notDownloadedIssue))).isEmpty();
   }
 
+  @Test
+  public void test_only_relevant_server_issues_are_stored() throws IOException {
+    WsClientTestUtils.addResponse(wsClient, getQualityProfileUrl(), newEmptyStream());
+    when(storageManager.readQProfilesFromStorage()).thenReturn(QProfiles.getDefaultInstance());
+    when(storageManager.getModuleStorageRoot(MODULE_KEY_WITH_BRANCH)).thenReturn(temp.newFolder().toPath());
+
+    ScannerInput.ServerIssue fileIssue = ScannerInput.ServerIssue.newBuilder()
+      .setModuleKey("someModuleKey")
+      .setPath("some/path")
+      .setRuleRepository("squid")
+      .setRuleKey("x")
+      .build();
+    IssueDownloader issueDownloader = moduleKey -> Collections.singletonList(fileIssue);
+
+    moduleUpdate = new ModuleStorageUpdateExecutor(storageManager, wsClient, issueDownloader, issueStoreFactory, tempFolder, moduleConfigurationDownloader,
+      ConnectedGlobalConfiguration.builder().setRelevantServerIssuesOnly(true).build());
+    moduleUpdate.update(MODULE_KEY_WITH_BRANCH, new ProgressWrapper(null));
+
+    // no rule is active since the module has no quality profile
+    assertThat(issueStore.load(createFileKey(fileIssue))).isEmpty();
+  }
+
   private String getQualityProfileUrl() {
     String url = "/api/qualityprofiles/search.protobuf?projectKey=" + MODULE_KEY_WITH_BRANCH_URLENCODED;
     if (organizationKey != null) {
@@ -0,0 +1,263 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.connected.update.perform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarsource.sonarlint.core.WsClientTestUtils;
+import org.sonarsource.sonarlint.core.client.api.connected.ServerConfiguration;
+import org.sonarsource.sonarlint.core.container.connected.IssueStore;
+import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
+import org.sonarsource.sonarlint.core.container.connected.SonarLintWsClient;
+import org.sonarsource.sonarlint.core.container.connected.update.IssueDownloaderImpl;
+import org.sonarsource.sonarlint.core.container.storage.StorageManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerIssueUpdaterTest {
+  private static final String MODULE_KEY = "module";
+  private static final int FILES = 10_000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  @Test
+  public void should_store_issues_downloaded() throws IOException {
+    Path target = temporaryFolder.newFolder().toPath().resolve("issues");
+    update(target, 1000);
+
+    IssueStore issueStore = new IssueStoreFactory().apply(target);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File0.java")).hasSize(1);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File999.java")).extracting(ServerIssue::getKey).containsExactly("issue999");
+  }
+
+  @Test
+  public void should_only_write_issues_of_changed_files_on_next_sync() throws IOException, InterruptedException {
+    Path target = temporaryFolder.newFolder().toPath().resolve("issues");
+    ServerIssue unchanged = issue("File1.java", 1);
+    ServerIssue changed = issue("File2.java", 2);
+    ServerIssue removed = issue("File3.java", 3);
+    ServerIssue changedAgain = issue("File2.java", 22);
+    ServerIssue added = issue("File4.java", 4);
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody(toBuffer(unchanged, changed, removed)));
+      server.enqueue(new MockResponse().setBody(toBuffer(unchanged, changedAgain, added)));
+      server.start();
+      SonarLintWsClient wsClient = new SonarLintWsClient(ServerConfiguration.builder()
+        .url(server.url("").toString())
+        .userAgent("UT")
+        .build());
+      StorageManager storageManager = mock(StorageManager.class);
+      when(storageManager.getServerIssuesPath(MODULE_KEY)).thenReturn(target);
+      TempFolder tempFolder = mock(TempFolder.class);
+      when(tempFolder.newDir()).thenAnswer(i -> temporaryFolder.newFolder());
+      ServerIssueUpdater updater = new ServerIssueUpdater(storageManager, new IssueDownloaderImpl(wsClient), new IssueStoreFactory(), tempFolder);
+
+      updater.update(MODULE_KEY);
+      logTester.setLevel(LoggerLevel.DEBUG);
+      updater.update(MODULE_KEY);
+
+      assertThat(logTester.logs(LoggerLevel.DEBUG)).containsOnly("Issues of 3 files changed in module '" + MODULE_KEY + "'");
+      assertThat(server.takeRequest().getPath()).isEqualTo("/batch/issues?key=" + MODULE_KEY);
+      assertThat(server.takeRequest().getPath()).isEqualTo("/batch/issues?key=" + MODULE_KEY);
+    }
+
+    IssueStore issueStore = new IssueStoreFactory().apply(target);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File1.java")).containsExactly(unchanged);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File2.java")).containsExactly(changedAgain);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File3.java")).isEmpty();
+    assertThat(issueStore.load(MODULE_KEY + ":src/File4.java")).containsExactly(added);
+  }
+
+  @Test
+  public void should_replace_issues_when_published() throws IOException {
+    Path target = temporaryFolder.newFolder().toPath().resolve("issues");
+    update(target, 10);
+    SonarLintWsClient wsClient = WsClientTestUtils.createMock();
+    WsClientTestUtils.addResponse(wsClient, "/batch/issues?key=" + MODULE_KEY, new SyntheticIssuesInputStream(1));
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.getServerIssuesPath(MODULE_KEY)).thenReturn(target);
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newDir()).thenAnswer(i -> temporaryFolder.newFolder());
+    List<Runnable> published = new ArrayList<>();
+
+    new ServerIssueUpdater(storageManager, new IssueDownloaderImpl(wsClient), new IssueStoreFactory(), tempFolder).update(MODULE_KEY, action -> {
+      assertThat(new IssueStoreFactory().apply(target).load(MODULE_KEY + ":src/File9.java")).hasSize(1);
+      published.add(action);
+      action.run();
+    });
+
+    assertThat(published).hasSize(1);
+    // written on the side by the store, not downloaded to a temporary file first
+    verify(tempFolder, never()).newDir();
+    IssueStore issueStore = new IssueStoreFactory().apply(target);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File0.java")).hasSize(1);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File9.java")).isEmpty();
+  }
+
+  /**
+   * The issues are parsed while downloaded and stored without keeping all of them in memory, so that the sync of a
+   * response much bigger than the heap succeeds. Run in another JVM to control the heap size.
+   */
+  @Test
+  public void should_store_many_issues_with_small_heap() throws IOException, InterruptedException {
+    Path target = temporaryFolder.newFolder().toPath().resolve("issues");
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    Process process = new ProcessBuilder(java, "-Xmx32m", "-cp", System.getProperty("java.class.path"), LargeUpdate.class.getName(),
+      target.toString(), "2000000")
+        .redirectErrorStream(true)
+        .start();
+    String output = readFully(process.getInputStream());
+    assertThat(process.waitFor()).as(output).isEqualTo(0);
+
+    IssueStore issueStore = new IssueStoreFactory().apply(target);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File0.java")).hasSize(2_000_000 / FILES);
+    assertThat(issueStore.load(MODULE_KEY + ":src/File" + (FILES - 1) + ".java")).hasSize(2_000_000 / FILES);
+  }
+
+  private static ServerIssue issue(String fileName, int line) {
+    return ServerIssue.newBuilder().setKey("issue" + line).setModuleKey(MODULE_KEY).setPath("src/" + fileName).setLine(line).build();
+  }
+
+  private static Buffer toBuffer(ServerIssue... issues) throws IOException {
+    Buffer buffer = new Buffer();
+    for (ServerIssue issue : issues) {
+      issue.writeDelimitedTo(buffer.outputStream());
+    }
+    return buffer;
+  }
+
+  private static void update(Path target, int count) {
+    SonarLintWsClient wsClient = WsClientTestUtils.createMock();
+    WsClientTestUtils.addResponse(wsClient, "/batch/issues?key=" + MODULE_KEY, new SyntheticIssuesInputStream(count));
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.getServerIssuesPath(MODULE_KEY)).thenReturn(target);
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newDir()).thenReturn(target.resolveSibling("work").toFile());
+
+    new ServerIssueUpdater(storageManager, new IssueDownloaderImpl(wsClient), new IssueStoreFactory(), tempFolder).update(MODULE_KEY);
+  }
+
+  private static String readFully(InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = input.read(buffer)) >= 0) {
+      output.write(buffer, 0, read);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  public static class LargeUpdate {
+    public static void main(String[] args) {
+      update(Paths.get(args[0]), Integer.parseInt(args[1]));
+    }
+  }
+
+  /**
+   * Response of the issues web service, generated while read, with the issues of the files interleaved.
+   */
+  private static class SyntheticIssuesInputStream extends InputStream {
+    private final int count;
+    private int next;
+    private byte[] current = new byte[0];
+    private int position;
+
+    SyntheticIssuesInputStream(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public int read() {
+      if (!fill()) {
+        return -1;
+      }
+      return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int read = Math.min(len, current.length - position);
+      System.arraycopy(current, position, b, off, read);
+      position += read;
+      return read;
+    }
+
+    private boolean fill() {
+      if (position < current.length) {
+        return true;
+      }
+      if (next == count) {
+        return false;
+      }
+      ServerIssue issue = ServerIssue.newBuilder()
+        .setKey("issue" + next)
+        .setModuleKey(MODULE_KEY)
+        .setPath("src/File" + (next % FILES) + ".java")
+        .setRuleRepository("squid")
+        .setRuleKey("S" + (next % 100))
+        // distinct messages, like real ones
+        .setMsg("Remove this unused variable 'var" + next + "'")
+        .setLine(next % 1000)
+        .setChecksum("0123456789abcdef0123456789abcdef")
+        .build();
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      try {
+        issue.writeDelimitedTo(output);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      current = output.toByteArray();
+      position = 0;
+      next++;
+      return true;
+    }
+  }
+}
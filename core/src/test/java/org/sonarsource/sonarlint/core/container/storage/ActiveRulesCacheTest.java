@@ -0,0 +1,76 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.rule.ActiveRules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ActiveRulesCacheTest {
+  private ActiveRulesCache cache;
+  private Supplier<ActiveRules> loader;
+
+  @Before
+  public void setUp() {
+    cache = new ActiveRulesCache();
+    loader = mock(Supplier.class);
+    when(loader.get()).thenAnswer(invocation -> mock(ActiveRules.class));
+  }
+
+  @Test
+  public void should_load_once_per_module() {
+    ActiveRules module1 = cache.get("module1", loader);
+    ActiveRules defaultProfiles = cache.get(null, loader);
+
+    assertThat(cache.get("module1", loader)).isSameAs(module1);
+    assertThat(cache.get(null, loader)).isSameAs(defaultProfiles);
+    assertThat(defaultProfiles).isNotSameAs(module1);
+    verify(loader, times(2)).get();
+  }
+
+  @Test
+  public void should_reload_invalidated_module() {
+    ActiveRules module1 = cache.get("module1", loader);
+    ActiveRules module2 = cache.get("module2", loader);
+
+    cache.invalidateModule("module1");
+
+    assertThat(cache.get("module1", loader)).isNotSameAs(module1);
+    assertThat(cache.get("module2", loader)).isSameAs(module2);
+    verify(loader, times(3)).get();
+  }
+
+  @Test
+  public void should_reload_all_after_invalidate_all() {
+    ActiveRules module1 = cache.get("module1", loader);
+
+    cache.invalidateAll();
+
+    assertThat(cache.get("module1", loader)).isNotSameAs(module1);
+    verify(loader, times(2)).get();
+  }
+}
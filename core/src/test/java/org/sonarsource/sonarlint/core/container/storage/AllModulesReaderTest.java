@@ -21,14 +21,24 @@ package org.sonarsource.sonarlint.core.container.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Path;
+
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.client.api.connected.RemoteModule;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList.Module;
 
 public class AllModulesReaderTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private StorageManager storageManager;
 
   @Before
@@ -47,4 +57,45 @@ public class AllModulesReaderTest {
     AllModulesReader modulesReader = new AllModulesReader(storageManager);
     assertThat(modulesReader.get()).containsOnlyKeys("module1");
   }
+
+  @Test
+  public void should_read_modules_once_until_invalidated() {
+    ModuleList.Builder list = ModuleList.newBuilder();
+    list.getMutableModulesByKey().put("module1", Module.newBuilder().setKey("module1").build());
+    when(storageManager.readModuleListFromStorage()).thenReturn(list.build());
+
+    AllModulesReader modulesReader = new AllModulesReader(storageManager);
+    assertThat(modulesReader.get()).isSameAs(modulesReader.get());
+    verify(storageManager, times(1)).readModuleListFromStorage();
+
+    modulesReader.invalidate();
+    assertThat(modulesReader.get()).containsOnlyKeys("module1");
+    verify(storageManager, times(2)).readModuleListFromStorage();
+  }
+
+  @Test
+  public void should_search_modules_with_stored_index() throws Exception {
+    ModuleList.Builder list = ModuleList.newBuilder();
+    list.getMutableModulesByKey().put("module1", Module.newBuilder().setKey("module1").setName("My Module").build());
+    Path indexPath = temp.newFile().toPath();
+    ProtobufUtil.writeToFile(ModuleIndex.build(list.build()), indexPath);
+    when(storageManager.getModuleSearchIndexPath()).thenReturn(indexPath);
+    when(storageManager.readModuleSearchIndexFromStorage()).thenReturn(ModuleIndex.build(list.build()));
+
+    AllModulesReader modulesReader = new AllModulesReader(storageManager);
+    assertThat(modulesReader.search("my")).extracting(RemoteModule::getKey).containsOnly("module1");
+    verify(storageManager, times(0)).readModuleListFromStorage();
+  }
+
+  @Test
+  public void should_build_index_when_not_stored() {
+    ModuleList.Builder list = ModuleList.newBuilder();
+    list.getMutableModulesByKey().put("module1", Module.newBuilder().setKey("module1").setName("My Module").build());
+    when(storageManager.getModuleSearchIndexPath()).thenReturn(temp.getRoot().toPath().resolve("missing.pb"));
+    when(storageManager.readModuleListFromStorage()).thenReturn(list.build());
+
+    AllModulesReader modulesReader = new AllModulesReader(storageManager);
+    assertThat(modulesReader.search("module")).extracting(RemoteModule::getKey).containsOnly("module1");
+    assertThat(modulesReader.search("other")).isEmpty();
+  }
 }
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
@@ -40,7 +41,10 @@ import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleConfiguration.Builder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class IssueStoreReaderTest {
@@ -48,13 +52,14 @@ public class IssueStoreReaderTest {
   private IssueStoreReader issueStoreReader;
   private IssueStore issueStore;
   private StorageManager storage;
+  private IssueStoreFactory issueStoreFactory;
 
   @Rule
   public ExpectedException exception = ExpectedException.none();
 
   @Before
   public void setUp() {
-    IssueStoreFactory issueStoreFactory = mock(IssueStoreFactory.class);
+    issueStoreFactory = mock(IssueStoreFactory.class);
     issueStore = new InMemoryIssueStore();
     storage = mock(StorageManager.class);
     Path storagePath = mock(Path.class);
@@ -107,6 +112,46 @@ public class IssueStoreReaderTest {
       .containsOnly(createApiIssue("module1", "path2"));
   }
 
+  @Test
+  public void testBulkMultiModule() {
+    Builder moduleConfigBuilder = ModuleConfiguration.newBuilder();
+    moduleConfigBuilder.getMutableModulePathByKey().put(MODULE_KEY, "");
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:module1", "module1/src");
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:module2", "module2");
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfigBuilder.build());
+
+    issueStore.save(Arrays.asList(
+      createServerIssue("root:module1", "path1"),
+      createServerIssue("root:module1", "path2"),
+      createServerIssue("root:module2", "path1"),
+      createServerIssue("root:module2", "path1"),
+      createServerIssue(MODULE_KEY, "path1")));
+
+    // cached before the bulk read
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "module1/src/path2")).hasSize(1);
+
+    Map<String, List<ServerIssue>> issuesByPath = issueStoreReader.getServerIssues(MODULE_KEY,
+      Arrays.asList("module2/path1", "module1/src/path2", "module1/src/path3", "module1/src/path1"));
+    assertThat(issuesByPath.keySet()).containsExactly("module2/path1", "module1/src/path2", "module1/src/path3", "module1/src/path1");
+    assertThat(issuesByPath.get("module2/path1"))
+      .usingElementComparator(simpleComparator)
+      .containsExactly(createApiIssue(MODULE_KEY, "module2/path1"), createApiIssue(MODULE_KEY, "module2/path1"));
+    assertThat(issuesByPath.get("module1/src/path2")).hasSize(1);
+    assertThat(issuesByPath.get("module1/src/path3")).isEmpty();
+    assertThat(issuesByPath.get("module1/src/path1")).hasSize(1);
+    assertThat(issueStoreReader.getServerIssuesCacheStats().hitCount()).isEqualTo(1);
+
+    // the files read in bulk are cached too
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "module2/path1")).hasSize(2);
+    assertThat(issueStoreReader.getServerIssuesCacheStats().hitCount()).isEqualTo(2);
+
+    Map<String, List<ServerIssue>> moduleIssues = issueStoreReader.getServerIssues(MODULE_KEY);
+    assertThat(moduleIssues.keySet()).containsOnly("path1", "module1/src/path1", "module1/src/path2", "module2/path1");
+    assertThat(moduleIssues.get("module2/path1"))
+      .usingElementComparator(simpleComparator)
+      .containsExactly(createApiIssue(MODULE_KEY, "module2/path1"), createApiIssue(MODULE_KEY, "module2/path1"));
+  }
+
   @Test
   public void testMultiModule2() {
     // setup module hierarchy
@@ -188,6 +233,80 @@ public class IssueStoreReaderTest {
       .containsOnly(createApiIssue("module1", "path2"));
   }
 
+  @Test
+  public void testModuleConfigurationIsCachedUntilInvalidated() {
+    Builder moduleConfigBuilder = ModuleConfiguration.newBuilder();
+    moduleConfigBuilder.getMutableModulePathByKey().put(MODULE_KEY, "");
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:module1", "module1");
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfigBuilder.build());
+
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module1/path1")).isEqualTo("root:module1:path1");
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module2/path1")).isEqualTo("root:module2/path1");
+    verify(storage, times(1)).readModuleConfigFromStorage(MODULE_KEY);
+
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:module2", "module2");
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfigBuilder.build());
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module2/path1")).isEqualTo("root:module2/path1");
+
+    issueStoreReader.invalidateModule(MODULE_KEY);
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module2/path1")).isEqualTo("root:module2:path1");
+    verify(storage, times(2)).readModuleConfigFromStorage(MODULE_KEY);
+  }
+
+  @Test
+  public void testLongestModulePathWins() {
+    Builder moduleConfigBuilder = ModuleConfiguration.newBuilder();
+    moduleConfigBuilder.getMutableModulePathByKey().put(MODULE_KEY, "");
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:a", "module/sub");
+    moduleConfigBuilder.getMutableModulePathByKey().put("root:b", "module");
+    ModuleConfiguration moduleConfig = moduleConfigBuilder.build();
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfig);
+
+    // longest prefix wins, whatever the order of the modules
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module/sub/path")).isEqualTo("root:a:path");
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "module/path")).isEqualTo("root:b:path");
+    assertThat(issueStoreReader.getFileKey(MODULE_KEY, "other/path")).isEqualTo("root:other/path");
+  }
+
+  @Test
+  public void testServerIssuesAreCachedUntilInvalidated() {
+    Builder moduleConfigBuilder = ModuleConfiguration.newBuilder();
+    moduleConfigBuilder.getMutableModulePathByKey().put(MODULE_KEY, "");
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfigBuilder.build());
+    issueStore.save(Collections.singletonList(createServerIssue(MODULE_KEY, "path1")));
+
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "path1")).hasSize(1);
+    issueStoreReader.getServerIssues(MODULE_KEY, "path1").clear();
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "path1")).hasSize(1);
+    verify(issueStoreFactory, times(1)).apply(any(Path.class));
+    assertThat(issueStoreReader.getServerIssuesCacheStats().hitCount()).isEqualTo(2);
+    assertThat(issueStoreReader.getServerIssuesCacheStats().missCount()).isEqualTo(1);
+
+    issueStore.save(Arrays.asList(createServerIssue(MODULE_KEY, "path1"), createServerIssue(MODULE_KEY, "path1")));
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "path1")).hasSize(1);
+    issueStoreReader.invalidateFiles(MODULE_KEY, Collections.singletonList("path1"));
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "path1")).hasSize(2);
+
+    issueStore.save(Collections.emptyList());
+    issueStoreReader.invalidateModule(MODULE_KEY);
+    assertThat(issueStoreReader.getServerIssues(MODULE_KEY, "path1")).isEmpty();
+  }
+
+  @Test
+  public void testServerIssuesCacheIsBounded() {
+    issueStoreReader = new IssueStoreReader(issueStoreFactory, storage, 10);
+    Builder moduleConfigBuilder = ModuleConfiguration.newBuilder();
+    moduleConfigBuilder.getMutableModulePathByKey().put(MODULE_KEY, "");
+    when(storage.readModuleConfigFromStorage(MODULE_KEY)).thenReturn(moduleConfigBuilder.build());
+    issueStore.save(Collections.emptyList());
+
+    for (int i = 0; i < 100; i++) {
+      issueStoreReader.getServerIssues(MODULE_KEY, "path" + i);
+    }
+
+    assertThat(issueStoreReader.getServerIssuesCacheStats().evictionCount()).isGreaterThanOrEqualTo(90);
+  }
+
   private Comparator<ServerIssue> simpleComparator = new Comparator<ServerIssue>() {
     @Override
     public int compare(ServerIssue o1, ServerIssue o2) {
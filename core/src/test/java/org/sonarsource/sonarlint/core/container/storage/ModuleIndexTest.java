@@ -0,0 +1,90 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonarsource.sonarlint.core.client.api.connected.RemoteModule;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleList.Module;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ModuleSearchIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ModuleIndexTest {
+  private ModuleIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    ModuleList.Builder list = ModuleList.newBuilder();
+    add(list, "org.sonarsource.sonarlint.core:sonarlint-core", "SonarLint Core", "TRK");
+    add(list, "org.sonarsource.sonarlint.core:sonarlint-client-api", "SonarLint Core - Client API", "BRC");
+    add(list, "org.sonarsource.java:java", "SonarJava", "TRK");
+    add(list, "com.example:MyProject", "Example Project", "TRK");
+
+    ModuleSearchIndex stored = ModuleSearchIndex.parseFrom(ModuleIndex.build(list.build()).toByteArray());
+    index = new ModuleIndex(stored);
+  }
+
+  @Test
+  public void should_search_words_of_key_and_name() {
+    assertThat(index.search("example")).extracting(RemoteModule::getKey).containsExactly("com.example:MyProject");
+    assertThat(index.search("myproject")).extracting(RemoteModule::getKey).containsExactly("com.example:MyProject");
+    assertThat(index.search("sonarjava")).extracting(RemoteModule::getKey).containsExactly("org.sonarsource.java:java");
+  }
+
+  @Test
+  public void should_search_by_prefix_and_sort_by_key() {
+    assertThat(index.search("SONAR")).extracting(RemoteModule::getKey).containsExactly(
+      "org.sonarsource.java:java",
+      "org.sonarsource.sonarlint.core:sonarlint-client-api",
+      "org.sonarsource.sonarlint.core:sonarlint-core");
+  }
+
+  @Test
+  public void should_match_all_words() {
+    assertThat(index.search("sonarlint cli")).extracting(RemoteModule::getKey).containsExactly("org.sonarsource.sonarlint.core:sonarlint-client-api");
+    assertThat(index.search("java core")).isEmpty();
+  }
+
+  @Test
+  public void should_return_modules() {
+    RemoteModule module = index.search("example").get(0);
+    assertThat(module.getName()).isEqualTo("Example Project");
+    assertThat(module.isRoot()).isTrue();
+    assertThat(index.search("client").get(0).isRoot()).isFalse();
+  }
+
+  @Test
+  public void should_not_match_without_words() {
+    assertThat(index.search("")).isEmpty();
+    assertThat(index.search(" :.- ")).isEmpty();
+    assertThat(index.search("unknown")).isEmpty();
+  }
+
+  @Test
+  public void should_tokenize() {
+    assertThat(ModuleIndex.tokenize("org.Example:my-project_2")).containsExactly("org", "example", "my", "project", "2");
+  }
+
+  private static void add(ModuleList.Builder list, String key, String name, String qualifier) {
+    list.putModulesByKey(key, Module.newBuilder().setKey(key).setName(name).setQu(qualifier).build());
+  }
+}
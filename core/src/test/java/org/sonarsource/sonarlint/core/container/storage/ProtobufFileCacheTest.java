@@ -0,0 +1,90 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.client.api.exceptions.StorageException;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.GlobalProperties;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.ServerInfos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProtobufFileCacheTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException exception = ExpectedException.none();
+
+  private ProtobufFileCache cache;
+  private Path file;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new ProtobufFileCache();
+    file = temp.newFolder().toPath().resolve("properties.pb");
+  }
+
+  @Test
+  public void should_read_file_once() {
+    GlobalProperties properties = GlobalProperties.newBuilder().putProperties("key", "value").build();
+    ProtobufUtil.writeToFile(properties, file);
+
+    GlobalProperties read = cache.read(file, GlobalProperties.parser());
+    assertThat(read).isEqualTo(properties);
+    assertThat(cache.read(file, GlobalProperties.parser())).isSameAs(read);
+  }
+
+  @Test
+  public void should_read_file_again_when_modified() throws Exception {
+    ProtobufUtil.writeToFile(GlobalProperties.newBuilder().putProperties("key", "value1").build(), file);
+    FileTime lastModifiedTime = Files.getLastModifiedTime(file);
+    cache.read(file, GlobalProperties.parser());
+
+    // same size, only the time differs
+    ProtobufUtil.writeToFile(GlobalProperties.newBuilder().putProperties("key", "value2").build(), file);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModifiedTime.toMillis() + 1000));
+
+    assertThat(cache.read(file, GlobalProperties.parser()).getPropertiesMap()).containsEntry("key", "value2");
+  }
+
+  @Test
+  public void should_read_file_again_with_other_parser() {
+    // an empty file is valid for any message
+    ProtobufUtil.writeToFile(GlobalProperties.getDefaultInstance(), file);
+    cache.read(file, GlobalProperties.parser());
+
+    assertThat(cache.read(file, ServerInfos.parser())).isInstanceOf(ServerInfos.class);
+  }
+
+  @Test
+  public void should_fail_on_missing_file() {
+    exception.expect(StorageException.class);
+    exception.expectMessage("Failed to read file");
+
+    cache.read(file, GlobalProperties.parser());
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescription;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RuleDescriptionStoreTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path storageDir;
+  private RuleDescriptionStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    storageDir = temp.newFolder().toPath();
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.getRuleDescriptionsIndexPath()).thenReturn(storageDir.resolve(StorageManager.RULE_DESCRIPTIONS_INDEX_PB));
+    when(storageManager.getRuleDescriptionsPath()).thenReturn(storageDir.resolve(StorageManager.RULE_DESCRIPTIONS_DATA));
+    store = new RuleDescriptionStore(storageManager);
+  }
+
+  @Test
+  public void should_read_descriptions_written() {
+    Map<String, RuleDescription> descriptionsByKey = new LinkedHashMap<>();
+    descriptionsByKey.put("repo:key1", RuleDescription.newBuilder().setHtmlDesc("<p>desc1</p>").setHtmlNote("note1").build());
+    descriptionsByKey.put("repo:key2", RuleDescription.newBuilder().setHtmlDesc("<p>desc2 é</p>").build());
+    descriptionsByKey.put("repo:key3", RuleDescription.getDefaultInstance());
+    RuleDescriptionStore.write(storageDir, descriptionsByKey);
+
+    assertThat(store.get("repo:key2")).isEqualTo(RuleDescription.newBuilder().setHtmlDesc("<p>desc2 é</p>").build());
+    assertThat(store.get("repo:key1")).isEqualTo(RuleDescription.newBuilder().setHtmlDesc("<p>desc1</p>").setHtmlNote("note1").build());
+    assertThat(store.get("repo:key3")).isEqualTo(RuleDescription.getDefaultInstance());
+    assertThat(store.get("repo:unknown")).isNull();
+  }
+
+  @Test
+  public void should_return_null_without_descriptions() {
+    assertThat(store.get("repo:key1")).isNull();
+  }
+}
@@ -95,6 +95,11 @@ public class StorageManagerTest {
       .resolve("server")
       .resolve("global")
       .resolve("module_list.pb"));
+    assertThat(manager.getModuleSearchIndexPath()).isEqualTo(sonarUserHome
+      .resolve("storage")
+      .resolve("server")
+      .resolve("global")
+      .resolve("module_search_index.pb"));
   }
 
   @Test
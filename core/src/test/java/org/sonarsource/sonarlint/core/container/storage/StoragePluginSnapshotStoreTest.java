@@ -0,0 +1,73 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.container.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StoragePluginSnapshotStoreTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path snapshotPath;
+  private StoragePluginSnapshotStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    snapshotPath = temp.newFolder().toPath().resolve(StorageManager.PLUGIN_SNAPSHOT_PB);
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.getPluginSnapshotPath()).thenReturn(snapshotPath);
+    store = new StoragePluginSnapshotStore(storageManager);
+  }
+
+  @Test
+  public void write_and_read() {
+    assertThat(store.read()).isNull();
+
+    PluginSnapshot snapshot = PluginSnapshot.newBuilder().setSonarlintCoreVersion("1.0").build();
+    store.write(snapshot);
+
+    assertThat(store.read()).isEqualTo(snapshot);
+    assertThat(snapshotPath.getParent().toFile().list()).containsOnly(StorageManager.PLUGIN_SNAPSHOT_PB);
+  }
+
+  @Test
+  public void ignore_invalid_snapshot() throws Exception {
+    Files.write(snapshotPath, "invalid".getBytes(StandardCharsets.UTF_8));
+    assertThat(store.read()).isNull();
+  }
+
+  @Test
+  public void dont_write_without_storage() throws Exception {
+    Files.delete(snapshotPath.getParent());
+    store.write(PluginSnapshot.newBuilder().setSonarlintCoreVersion("1.0").build());
+    assertThat(snapshotPath.getParent()).doesNotExist();
+  }
+}
@@ -21,42 +21,62 @@ package org.sonarsource.sonarlint.core.container.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonarsource.sonarlint.core.client.api.common.RuleDetails;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.RuleDescription;
 import org.sonarsource.sonarlint.core.proto.Sonarlint.Rules;
 
 public class StorageRuleDetailsReaderTest {
-  private StorageManager storageManager;
+  private RuleDescriptionStore ruleDescriptionStore;
 
   @Rule
   public ExpectedException exception = ExpectedException.none();
 
   @Before
   public void setUp() {
-    storageManager = mock(StorageManager.class);
+    ruleDescriptionStore = mock(RuleDescriptionStore.class);
   }
 
   @Test
   public void should_find_key() {
     Rules.Builder rules = Rules.newBuilder();
     rules.getMutableRulesByKey().put("repo:key1", Rules.Rule.newBuilder().setKey("repo:key1").build());
-    when(storageManager.readRulesFromStorage()).thenReturn(rules.build());
 
-    StorageRuleDetailsReader ruleReader = new StorageRuleDetailsReader(storageManager);
+    StorageRuleDetailsReader ruleReader = new StorageRuleDetailsReader(rules.build(), ruleDescriptionStore);
     assertThat(ruleReader.apply("repo:key1")).isNotNull();
   }
 
+  @Test
+  public void should_read_description_of_each_rule() {
+    Rules.Builder rules = Rules.newBuilder();
+    rules.getMutableRulesByKey().put("repo:key1", Rules.Rule.newBuilder().setKey("key1").setName("name1").setHtmlDesc("stale").build());
+    rules.getMutableRulesByKey().put("repo:key2", Rules.Rule.newBuilder().setKey("key2").setName("name2").setHtmlDesc("desc2").build());
+    when(ruleDescriptionStore.get("repo:key1")).thenReturn(RuleDescription.newBuilder().setHtmlDesc("desc1").setHtmlNote("note1").build());
+
+    StorageRuleDetailsReader ruleReader = new StorageRuleDetailsReader(rules.build(), ruleDescriptionStore);
+    RuleDetails ruleDetails = ruleReader.apply("repo:key1");
+    assertThat(ruleDetails.getName()).isEqualTo("name1");
+    assertThat(ruleDetails.getHtmlDescription()).isEqualTo("desc1");
+    assertThat(ruleDetails.getExtendedDescription()).isEqualTo("note1");
+    // no description file, the description of the rule is used
+    assertThat(ruleReader.apply("repo:key2").getHtmlDescription()).isEqualTo("desc2");
+
+    verify(ruleDescriptionStore).get("repo:key1");
+    verify(ruleDescriptionStore).get("repo:key2");
+  }
+
   @Test
   public void should_throw_error_if_key_not_found() {
     Rules.Builder rules = Rules.newBuilder();
     rules.getMutableRulesByKey().put("repo:key1", Rules.Rule.newBuilder().setKey("repo:key1").build());
-    when(storageManager.readRulesFromStorage()).thenReturn(rules.build());
 
-    StorageRuleDetailsReader ruleReader = new StorageRuleDetailsReader(storageManager);
+    StorageRuleDetailsReader ruleReader = new StorageRuleDetailsReader(rules.build(), ruleDescriptionStore);
     
     exception.expect(IllegalArgumentException.class);
     exception.expectMessage("Unable to find rule");
@@ -19,21 +19,32 @@
  */
 package org.sonarsource.sonarlint.core.container.storage.partialupdate;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarsource.sonarlint.core.client.api.common.ProgressMonitor;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerConfiguration;
+import org.sonarsource.sonarlint.core.client.api.exceptions.CanceledException;
 import org.sonarsource.sonarlint.core.client.api.exceptions.DownloadException;
 import org.sonarsource.sonarlint.core.container.connected.IssueStore;
 import org.sonarsource.sonarlint.core.container.connected.IssueStoreFactory;
@@ -47,8 +58,11 @@ import org.sonarsource.sonarlint.core.util.ProgressWrapper;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -79,6 +93,8 @@ public class PartialUpdaterTest {
     MockitoAnnotations.initMocks(this);
     updater = new PartialUpdater(issueStoreFactory, downloader, storageManager, issueStoreReader, moduleListDownloader);
     when(issueStoreFactory.apply(Mockito.any(Path.class))).thenReturn(issueStore);
+    doCallRealMethod().when(issueStore).save(any(Iterator.class), any());
+    doCallRealMethod().when(issueStore).replaceAll(any(Iterator.class), any());
     when(storageManager.readServerInfosFromStorage()).thenReturn(ServerInfos.newBuilder().setVersion(SERVER_VERSION).build());
   }
 
@@ -96,6 +112,22 @@ public class PartialUpdaterTest {
     verify(issueStore).save(issues);
   }
 
+  @Test
+  public void save_file_issues_when_published() {
+    List<ServerIssue> issues = Collections.singletonList(ServerIssue.newBuilder().setKey("issue1").build());
+    when(storageManager.getServerIssuesPath("module")).thenReturn(temp.getRoot().toPath());
+    when(issueStoreReader.getFileKey("module", "file")).thenReturn("module:file");
+    when(downloader.apply("module:file")).thenReturn(issues);
+    List<Runnable> published = new ArrayList<>();
+
+    updater.updateFileIssues("module", "file", published::add);
+    verify(issueStore, never()).save(any(List.class));
+
+    assertThat(published).hasSize(1);
+    published.get(0).run();
+    verify(issueStore).save(issues);
+  }
+
   @Test
   public void error_downloading_issues() {
     when(storageManager.getServerIssuesPath("module")).thenReturn(temp.getRoot().toPath());
@@ -106,6 +138,49 @@ public class PartialUpdaterTest {
     updater.updateFileIssues("module", "file");
   }
 
+  @Test
+  public void update_issues_of_several_files() {
+    List<ServerIssue> issues1 = Collections.singletonList(ServerIssue.newBuilder().setKey("issue1").build());
+    List<ServerIssue> issues3 = Collections.singletonList(ServerIssue.newBuilder().setKey("issue3").build());
+
+    when(storageManager.getServerIssuesPath("module")).thenReturn(temp.getRoot().toPath());
+    for (String file : Arrays.asList("file1", "file2", "file3")) {
+      when(issueStoreReader.getFileKey("module", file)).thenReturn("module:" + file);
+    }
+    when(downloader.apply("module:file1")).thenReturn(issues1);
+    when(downloader.apply("module:file2")).thenThrow(new IllegalStateException("server error"));
+    when(downloader.apply("module:file3")).thenReturn(issues3);
+    ProgressMonitor monitor = mock(ProgressMonitor.class);
+
+    List<Runnable> published = new ArrayList<>();
+
+    Set<String> updated = updater.updateFileIssues("module", Arrays.asList("file1", "file2", "file3"), new ProgressWrapper(monitor), published::add);
+
+    assertThat(updated).containsOnly("file1", "file3");
+    verify(monitor).setFraction(1.0f);
+    verify(issueStore, never()).save(any(List.class));
+
+    assertThat(published).hasSize(1);
+    published.get(0).run();
+    ArgumentCaptor<List<ServerIssue>> captor = ArgumentCaptor.forClass(List.class);
+    verify(issueStore).save(captor.capture());
+    assertThat(captor.getValue()).containsOnly(issues1.get(0), issues3.get(0));
+  }
+
+  @Test
+  public void cancel_update_of_several_files() {
+    when(storageManager.getServerIssuesPath("module")).thenReturn(temp.getRoot().toPath());
+    ProgressMonitor monitor = mock(ProgressMonitor.class);
+    when(monitor.isCanceled()).thenReturn(true);
+
+    exception.expect(CanceledException.class);
+    try {
+      updater.updateFileIssues("module", Arrays.asList("file1", "file2"), new ProgressWrapper(monitor));
+    } finally {
+      verify(issueStore, never()).save(any(Iterator.class), any());
+    }
+  }
+
   @Test
   public void update_file_issues_by_module() throws IOException {
     ServerIssue issue = ServerIssue.newBuilder().setKey("issue1").build();
@@ -114,19 +189,32 @@ public class PartialUpdaterTest {
     String moduleKey = "dummy";
     when(storageManager.getServerIssuesPath(moduleKey)).thenReturn(temp.newFolder().toPath());
     when(downloader.apply(moduleKey)).thenReturn(issues);
+    doCallRealMethod().when(downloader).download(eq(moduleKey), any());
 
-    updater.updateFileIssues(moduleKey, new DefaultTempFolder(temp.newFolder()));
+    List<ServerIssue> replaced = new ArrayList<>();
+    doAnswer(invocation -> {
+      Iterator<ServerIssue> it = invocation.getArgument(0);
+      it.forEachRemaining(replaced::add);
+      return null;
+    }).when(issueStore).replaceAll(any());
 
-    verify(issueStore).save(issues);
+    updater.updateFileIssues(moduleKey, new DefaultTempFolder(temp.newFolder()), Runnable::run);
+
+    assertThat(replaced).containsExactly(issue);
   }
 
   @Test
-  public void error_downloading_modules() {
-    when(storageManager.getGlobalStorageRoot()).thenReturn(temp.getRoot().toPath());
-    doThrow(IOException.class).when(moduleListDownloader).fetchModulesListTo(eq(temp.getRoot().toPath()), eq(SERVER_VERSION), any(ProgressWrapper.class));
+  public void error_downloading_modules() throws IOException {
+    File tempDir = temp.newFolder();
+    doThrow(IOException.class).when(moduleListDownloader).fetchModulesListTo(any(Path.class), eq(SERVER_VERSION), any(ProgressWrapper.class));
     exception.expect(DownloadException.class);
 
-    updater.updateModuleList(new ProgressWrapper(null));
+    try {
+      updater.updateModuleList(new ProgressWrapper(null), new DefaultTempFolder(tempDir), Runnable::run);
+    } finally {
+      // temporary directory deleted
+      assertThat(tempDir.list()).isEmpty();
+    }
   }
 
   @Test
@@ -137,9 +225,39 @@ public class PartialUpdaterTest {
   }
 
   @Test
-  public void update_module_list() {
-    when(storageManager.getGlobalStorageRoot()).thenReturn(temp.getRoot().toPath());
-    updater.updateModuleList(new ProgressWrapper(null));
-    verify(moduleListDownloader).fetchModulesListTo(eq(temp.getRoot().toPath()), eq(SERVER_VERSION), any(ProgressWrapper.class));
+  public void replace_module_list_when_published() throws IOException {
+    Path globalStorage = temp.newFolder().toPath();
+    Path storedModuleList = globalStorage.resolve(StorageManager.MODULE_LIST_PB);
+    Path storedIndex = globalStorage.resolve(StorageManager.MODULE_SEARCH_INDEX_PB);
+    Files.write(storedModuleList, "old".getBytes(StandardCharsets.UTF_8));
+    when(storageManager.getModuleListPath()).thenReturn(storedModuleList);
+    when(storageManager.getModuleSearchIndexPath()).thenReturn(storedIndex);
+    doAnswer(invocation -> {
+      Path dest = invocation.getArgument(0);
+      Files.write(dest.resolve(StorageManager.MODULE_LIST_PB), "new".getBytes(StandardCharsets.UTF_8));
+      return Files.write(dest.resolve(StorageManager.MODULE_SEARCH_INDEX_PB), "index".getBytes(StandardCharsets.UTF_8));
+    }).when(moduleListDownloader).fetchModulesListTo(any(Path.class), eq(SERVER_VERSION), any(ProgressWrapper.class));
+    List<Runnable> published = new ArrayList<>();
+    File tempDir = temp.newFolder();
+
+    updater.updateModuleList(new ProgressWrapper(null), new DefaultTempFolder(tempDir), action -> {
+      assertThat(new String(readAllBytes(storedModuleList), StandardCharsets.UTF_8)).isEqualTo("old");
+      assertThat(storedIndex).doesNotExist();
+      published.add(action);
+      action.run();
+    });
+
+    assertThat(published).hasSize(1);
+    assertThat(tempDir.list()).isEmpty();
+    assertThat(new String(Files.readAllBytes(storedModuleList), StandardCharsets.UTF_8)).isEqualTo("new");
+    assertThat(new String(Files.readAllBytes(storedIndex), StandardCharsets.UTF_8)).isEqualTo("index");
+  }
+
+  private static byte[] readAllBytes(Path path) {
+    try {
+      return Files.readAllBytes(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 }
@@ -0,0 +1,165 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.mediumtest;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.ConnectedSonarLintEngineImpl;
+import org.sonarsource.sonarlint.core.TestUtils;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.ClientInputFile;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.client.api.connected.ConnectedAnalysisConfiguration;
+import org.sonarsource.sonarlint.core.client.api.connected.ConnectedGlobalConfiguration;
+import org.sonarsource.sonarlint.core.client.api.connected.LoadedAnalyzer;
+import org.sonarsource.sonarlint.core.container.storage.ProtobufUtil;
+import org.sonarsource.sonarlint.core.container.storage.StorageManager;
+import org.sonarsource.sonarlint.core.plugin.cache.PluginCache;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginReferences;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginReferences.PluginReference;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.StorageStatus;
+import org.sonarsource.sonarlint.core.util.PluginLocator;
+import org.sonarsource.sonarlint.core.util.VersionUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class ConnectedWarmStartMediumTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path slHome;
+  private Path globalStorage;
+  private List<String> logs = Collections.synchronizedList(new ArrayList<>());
+  private ConnectedSonarLintEngineImpl sonarlint;
+
+  @Before
+  public void prepare() throws Exception {
+    slHome = temp.newFolder().toPath();
+    Path storage = Paths.get(ConnectedWarmStartMediumTest.class.getResource("/sample-storage").toURI());
+    Path tmpStorage = slHome.resolve("storage");
+    FileUtils.copyDirectory(storage.toFile(), tmpStorage.toFile());
+    globalStorage = tmpStorage.resolve("local").resolve("global");
+
+    PluginCache cache = PluginCache.create(slHome.resolve("plugins"));
+    cache.get(PluginLocator.SONAR_JAVASCRIPT_PLUGIN_JAR, PluginLocator.SONAR_JAVASCRIPT_PLUGIN_JAR_HASH,
+      (filename, toFile) -> FileUtils.copyURLToFile(PluginLocator.getJavaScriptPluginUrl(), toFile.toFile()));
+    PluginReferences references = PluginReferences.newBuilder()
+      .addReference(PluginReference.newBuilder()
+        .setFilename(PluginLocator.SONAR_JAVASCRIPT_PLUGIN_JAR)
+        .setHash(PluginLocator.SONAR_JAVASCRIPT_PLUGIN_JAR_HASH)
+        .setKey("javascript"))
+      .build();
+    ProtobufUtil.writeToFile(references, globalStorage.resolve(StorageManager.PLUGIN_REFERENCES_PB));
+
+    StorageStatus storageStatus = StorageStatus.newBuilder()
+      .setStorageVersion(StorageManager.STORAGE_VERSION)
+      .setClientUserAgent("agent")
+      .setSonarlintCoreVersion(VersionUtils.getLibraryVersion())
+      .setUpdateTimestamp(new Date().getTime())
+      .build();
+    ProtobufUtil.writeToFile(storageStatus, globalStorage.resolve(StorageManager.STORAGE_STATUS_PB));
+  }
+
+  @After
+  public void stop() {
+    if (sonarlint != null) {
+      sonarlint.stop(true);
+      sonarlint = null;
+    }
+  }
+
+  @Test
+  public void save_plugins_on_first_start_and_reuse_them() throws Exception {
+    start();
+    assertThat(globalStorage.resolve(StorageManager.PLUGIN_SNAPSHOT_PB)).exists();
+    assertThat(logs).doesNotContain("Load plugins from snapshot");
+    sonarlint.stop(false);
+
+    logs.clear();
+    start();
+    assertThat(logs).contains("Load plugins from snapshot");
+    assertThat(sonarlint.getLoadedAnalyzers()).extracting(LoadedAnalyzer::key).containsOnly("javascript");
+    assertThat(analyze()).extracting("ruleKey", "startLine").containsOnly(tuple("javascript:UnusedVariable", 2));
+  }
+
+  @Test
+  public void resolve_plugins_again_when_snapshot_is_from_another_version() throws Exception {
+    start();
+    sonarlint.stop(false);
+    Path snapshotPath = globalStorage.resolve(StorageManager.PLUGIN_SNAPSHOT_PB);
+    PluginSnapshot snapshot = ProtobufUtil.readFile(snapshotPath, PluginSnapshot.parser());
+    ProtobufUtil.writeToFile(snapshot.toBuilder().setSonarlintCoreVersion("1.0").build(), snapshotPath);
+
+    logs.clear();
+    start();
+    assertThat(logs).doesNotContain("Load plugins from snapshot");
+    assertThat(ProtobufUtil.readFile(snapshotPath, PluginSnapshot.parser())).isEqualTo(snapshot);
+    assertThat(analyze()).extracting("ruleKey", "startLine").containsOnly(tuple("javascript:UnusedVariable", 2));
+  }
+
+  @Test
+  public void no_snapshot_when_disabled() {
+    sonarlint = new ConnectedSonarLintEngineImpl(config(false));
+    assertThat(globalStorage.resolve(StorageManager.PLUGIN_SNAPSHOT_PB)).doesNotExist();
+  }
+
+  private void start() {
+    sonarlint = new ConnectedSonarLintEngineImpl(config(true));
+  }
+
+  private ConnectedGlobalConfiguration config(boolean warmStart) {
+    return ConnectedGlobalConfiguration.builder()
+      .setServerId("local")
+      .setSonarLintUserHome(slHome)
+      .setStorageRoot(slHome.resolve("storage"))
+      .setLogOutput((msg, level) -> logs.add(msg))
+      .setWarmStart(warmStart)
+      .build();
+  }
+
+  private List<Issue> analyze() throws IOException {
+    File baseDir = temp.newFolder();
+    File file = new File(baseDir, "foo.js");
+    FileUtils.write(file, "function foo() {\n"
+      + "  var x;\n"
+      + "}");
+    ClientInputFile inputFile = TestUtils.createInputFile(file.toPath(), false);
+
+    List<Issue> issues = new ArrayList<>();
+    sonarlint.analyze(new ConnectedAnalysisConfiguration(null, baseDir.toPath(), temp.newFolder().toPath(), Collections.singletonList(inputFile),
+      ImmutableMap.of()), issues::add);
+    return issues;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.plugin;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import org.assertj.core.data.MapEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.plugin.PluginInfo.RequiredPlugin;
+import org.sonarsource.sonarlint.core.proto.Sonarlint.PluginSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class PluginSnapshotsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private PluginLoader loader = new PluginLoader(new PluginJarExploder() {
+    @Override
+    public ExplodedPlugin explode(PluginInfo info) {
+      return new ExplodedPlugin(info.getKey(), info.getNonNullJarFile(), Collections.singletonList(new File(info.getNonNullJarFile() + "_lib.jar")));
+    }
+  }, mock(PluginClassloaderFactory.class));
+
+  private File baseJar;
+  private File extensionJar;
+  private Map<String, PluginInfo> infosByKey;
+
+  @Before
+  public void setUp() throws Exception {
+    baseJar = temp.newFile("base.jar");
+    temp.newFile("base.jar_lib.jar");
+    extensionJar = temp.newFile("extension.jar");
+    temp.newFile("extension.jar_lib.jar");
+
+    PluginInfo base = new PluginInfo("base")
+      .setJarFile(baseJar)
+      .setName("Base")
+      .setVersion(Version.create("1.2-SNAPSHOT"))
+      .setMinimalSqVersion(Version.create("5.6"))
+      .setMainClass("org.base.BasePlugin")
+      .setUseChildFirstClassLoader(true)
+      .setImplementationBuild("abc")
+      .setSonarLintSupported(true);
+    PluginInfo extension = new PluginInfo("extension")
+      .setJarFile(extensionJar)
+      .setVersion(Version.create("2.0"))
+      .setMainClass("org.extension.ExtensionPlugin")
+      .setBasePlugin("base")
+      .addRequiredPlugin(RequiredPlugin.parse("base:1.0"));
+    infosByKey = ImmutableMap.of("base", base, "extension", extension);
+  }
+
+  @Test
+  public void restore_plugin_infos() throws Exception {
+    PluginSnapshot snapshot = roundTrip(PluginSnapshots.create(infosByKey, loader.defineClassloaders(infosByKey)));
+
+    Map<String, PluginInfo> restored = PluginSnapshots.pluginInfos(snapshot);
+
+    assertThat(restored).containsOnlyKeys("base", "extension");
+    PluginInfo base = restored.get("base");
+    assertThat(base.getJarFile()).isEqualTo(baseJar);
+    assertThat(base.getName()).isEqualTo("Base");
+    assertThat(base.getVersion().getName()).isEqualTo("1.2-SNAPSHOT");
+    assertThat(base.getMinimalSqVersion().getName()).isEqualTo("5.6");
+    assertThat(base.getMainClass()).isEqualTo("org.base.BasePlugin");
+    assertThat(base.isUseChildFirstClassLoader()).isTrue();
+    assertThat(base.getImplementationBuild()).isEqualTo("abc");
+    assertThat(base.isSonarLintSupported()).isTrue();
+    assertThat(base.getBasePlugin()).isNull();
+    assertThat(base.getRequiredPlugins()).isEmpty();
+
+    PluginInfo extension = restored.get("extension");
+    assertThat(extension.getName()).isEqualTo("extension");
+    assertThat(extension.getMinimalSqVersion()).isNull();
+    assertThat(extension.getImplementationBuild()).isNull();
+    assertThat(extension.isSonarLintSupported()).isNull();
+    assertThat(extension.getBasePlugin()).isEqualTo("base");
+    assertThat(extension.getRequiredPlugins()).extracting(RequiredPlugin::toString).containsOnly("base:1.0");
+  }
+
+  @Test
+  public void restore_classloaders() throws Exception {
+    PluginSnapshot snapshot = roundTrip(PluginSnapshots.create(infosByKey, loader.defineClassloaders(infosByKey)));
+
+    Collection<PluginClassLoaderDef> defs = PluginSnapshots.classloaders(snapshot, PluginSnapshots.pluginInfos(snapshot));
+
+    assertThat(defs).hasSize(1);
+    PluginClassLoaderDef def = defs.iterator().next();
+    assertThat(def.getBasePluginKey()).isEqualTo("base");
+    assertThat(def.isSelfFirstStrategy()).isTrue();
+    assertThat(def.getFiles()).containsOnly(baseJar, new File(baseJar + "_lib.jar"), extensionJar, new File(extensionJar + "_lib.jar"));
+    assertThat(def.getMainClassesByPluginKey()).containsOnly(
+      MapEntry.entry("base", "org.base.BasePlugin"),
+      MapEntry.entry("extension", "org.extension.ExtensionPlugin"));
+  }
+
+  @Test
+  public void usable_only_if_all_files_exist() {
+    PluginSnapshot snapshot = PluginSnapshots.create(infosByKey, loader.defineClassloaders(infosByKey));
+    assertThat(PluginSnapshots.isUsable(snapshot)).isTrue();
+
+    assertThat(new File(extensionJar + "_lib.jar").delete()).isTrue();
+    assertThat(PluginSnapshots.isUsable(snapshot)).isFalse();
+  }
+
+  @Test
+  public void not_usable_by_other_versions() {
+    PluginSnapshot snapshot = PluginSnapshots.create(infosByKey, loader.defineClassloaders(infosByKey)).toBuilder()
+      .setSonarlintCoreVersion("1.0")
+      .build();
+    assertThat(PluginSnapshots.isUsable(snapshot)).isFalse();
+  }
+
+  private static PluginSnapshot roundTrip(PluginSnapshot snapshot) throws Exception {
+    return PluginSnapshot.parseFrom(snapshot.toByteArray());
+  }
+}
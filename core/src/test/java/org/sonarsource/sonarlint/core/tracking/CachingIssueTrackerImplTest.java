@@ -19,8 +19,19 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -40,4 +51,108 @@ public class CachingIssueTrackerImplTest {
     tracker.shutdown();
     verify(cache).shutdown();
   }
+
+  @Test
+  public void should_track_different_files_concurrently() throws Exception {
+    int threads = 8;
+    CountDownLatch allInside = new CountDownLatch(threads);
+    BlockingCache blockingCache = new BlockingCache(allInside);
+    CachingIssueTrackerImpl concurrentTracker = new CachingIssueTrackerImpl(blockingCache);
+
+    // every call waits for all others to be inside the tracker: this can only complete if files are not serialized
+    List<Future<Collection<Trackable>>> results = runConcurrently(threads, i -> concurrentTracker.matchAndTrackAsNew(file(i), Collections.emptyList()));
+
+    for (Future<Collection<Trackable>> result : results) {
+      assertThat(result.get(10, TimeUnit.SECONDS)).isEmpty();
+    }
+    assertThat(blockingCache.maxConcurrency.get()).isEqualTo(threads);
+  }
+
+  @Test
+  public void should_serialize_tracking_of_same_file() throws Exception {
+    int threads = 8;
+    BlockingCache blockingCache = new BlockingCache(new CountDownLatch(0));
+    CachingIssueTrackerImpl concurrentTracker = new CachingIssueTrackerImpl(blockingCache);
+
+    List<Future<Collection<Trackable>>> results = runConcurrently(threads, i -> concurrentTracker.matchAndTrackAsNew("same file", Collections.emptyList()));
+
+    for (Future<Collection<Trackable>> result : results) {
+      result.get(10, TimeUnit.SECONDS);
+    }
+    assertThat(blockingCache.maxConcurrency.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void stress_test_independent_files() throws Exception {
+    int threads = 8;
+    int rounds = 200;
+    InMemoryIssueTrackerCache memoryCache = new InMemoryIssueTrackerCache();
+    CachingIssueTrackerImpl concurrentTracker = new CachingIssueTrackerImpl(memoryCache);
+    List<Trackable> trackables = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      trackables.add(new IssueTrackerTest.MockTrackableBuilder().ruleKey("rule" + i).line(i).build());
+    }
+
+    List<Future<Collection<Trackable>>> results = runConcurrently(threads, i -> {
+      Collection<Trackable> tracked = Collections.emptyList();
+      for (int round = 0; round < rounds; round++) {
+        tracked = concurrentTracker.matchAndTrackAsNew(file(i), trackables.subList(0, round % 10));
+      }
+      return tracked;
+    });
+
+    for (int i = 0; i < threads; i++) {
+      assertThat(results.get(i).get(30, TimeUnit.SECONDS)).hasSize((rounds - 1) % 10);
+      assertThat(memoryCache.getLiveOrFail(file(i))).hasSize((rounds - 1) % 10);
+    }
+  }
+
+  private static String file(int i) {
+    return "file" + i;
+  }
+
+  private interface Task {
+    Collection<Trackable> run(int i) throws Exception;
+  }
+
+  private static List<Future<Collection<Trackable>>> runConcurrently(int threads, Task task) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Collection<Trackable>>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int index = i;
+        results.add(executor.submit(() -> task.run(index)));
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Records how many threads are inside the cache at the same time, and waits for the latch before answering.
+   */
+  private static class BlockingCache extends InMemoryIssueTrackerCache {
+    private final CountDownLatch latch;
+    private final AtomicInteger concurrency = new AtomicInteger();
+    private final AtomicInteger maxConcurrency = new AtomicInteger();
+
+    BlockingCache(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public boolean isFirstAnalysis(String file) {
+      maxConcurrency.accumulateAndGet(concurrency.incrementAndGet(), Math::max);
+      try {
+        latch.countDown();
+        latch.await(10, TimeUnit.SECONDS);
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      concurrency.decrementAndGet();
+      return super.isFirstAnalysis(file);
+    }
+  }
 }
@@ -0,0 +1,214 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import org.junit.Test;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompactTrackablesTest {
+
+  @Test
+  public void should_combine_base_and_next_values() {
+    Trackable base = createMock("base", 0);
+    Trackable next = createMock("next", 1);
+
+    CompactTrackables trackables = new CompactTrackables(1);
+    trackables.addCombined(base, next, true);
+    Trackable combined = trackables.get(0);
+
+    assertThat(combined.getAssignee()).isEqualTo("baseAssignee");
+    assertThat(combined.getServerIssueKey()).isEqualTo("baseServerIssueKey");
+    assertThat(combined.getSeverity()).isEqualTo("baseSeverity");
+    assertThat(combined.getType()).isEqualTo("baseType");
+    assertThat(combined.getCreationDate()).isEqualTo(0);
+    assertThat(combined.isResolved()).isEqualTo(false);
+
+    assertThat(combined.getIssue()).isSameAs(next.getIssue());
+    assertThat(combined.getLine()).isEqualTo(1);
+    assertThat(combined.getMessage()).isEqualTo("nextMessage");
+    assertThat(combined.getLineHash()).isEqualTo(1);
+    assertThat(combined.getRuleKey()).isEqualTo("nextRuleKey");
+    assertThat(combined.getRuleName()).isEqualTo("nextRuleName");
+    assertThat(combined.getTextRange().getStartLine()).isEqualTo(1);
+    assertThat(combined.getTextRangeHash()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_keep_next_severity_and_type_if_not_inherited() {
+    Trackable base = createMock("base", 0);
+    Trackable next = createMock("next", 1);
+    Trackable baseWithoutType = createMock("base", 0);
+    when(baseWithoutType.getType()).thenReturn(null);
+
+    CompactTrackables trackables = new CompactTrackables(2);
+    trackables.addCombined(base, next, false);
+    trackables.addCombined(baseWithoutType, next, true);
+
+    assertThat(trackables.get(0).getSeverity()).isEqualTo("nextSeverity");
+    assertThat(trackables.get(0).getType()).isEqualTo("nextType");
+    assertThat(trackables.get(0).getServerIssueKey()).isEqualTo("baseServerIssueKey");
+    assertThat(trackables.get(1).getSeverity()).isEqualTo("baseSeverity");
+    assertThat(trackables.get(1).getType()).isEqualTo("nextType");
+  }
+
+  @Test
+  public void should_set_creation_date_of_leaked_and_disconnected_issues() {
+    Trackable trackable = createMock("next", 1);
+
+    CompactTrackables trackables = new CompactTrackables(2);
+    trackables.addLeaked(trackable, 42L);
+    trackables.addDisconnected(trackable, 42L);
+
+    Trackable leaked = trackables.get(0);
+    assertThat(leaked.getCreationDate()).isEqualTo(42L);
+    assertThat(leaked.getServerIssueKey()).isEqualTo("nextServerIssueKey");
+    assertThat(leaked.isResolved()).isTrue();
+    assertThat(leaked.getAssignee()).isEqualTo("nextAssignee");
+    assertThat(leaked.getMessage()).isEqualTo("nextMessage");
+
+    Trackable disconnected = trackables.get(1);
+    assertThat(disconnected.getCreationDate()).isEqualTo(42L);
+    assertThat(disconnected.getServerIssueKey()).isNull();
+    assertThat(disconnected.isResolved()).isFalse();
+    assertThat(disconnected.getAssignee()).isEmpty();
+    assertThat(disconnected.getMessage()).isEqualTo("nextMessage");
+  }
+
+  @Test
+  public void should_keep_null_values() {
+    // mocks return 0 for Integer by default
+    Trackable empty = mock(Trackable.class);
+    when(empty.getLine()).thenReturn(null);
+    when(empty.getLineHash()).thenReturn(null);
+    when(empty.getTextRangeHash()).thenReturn(null);
+
+    CompactTrackables trackables = new CompactTrackables(1);
+    trackables.addLeaked(empty, 1L);
+
+    Trackable trackable = trackables.get(0);
+    assertThat(trackable.getLine()).isNull();
+    assertThat(trackable.getLineHash()).isNull();
+    assertThat(trackable.getTextRange()).isNull();
+    assertThat(trackable.getTextRangeHash()).isNull();
+    assertThat(trackable.getRuleKey()).isNull();
+    assertThat(trackable.getServerIssueKey()).isNull();
+  }
+
+  @Test
+  public void should_keep_partial_text_range() {
+    Trackable mock = createMock("next", 1);
+    when(mock.getTextRange()).thenReturn(new TextRange(3, null, 4, 0));
+
+    CompactTrackables trackables = new CompactTrackables(1);
+    trackables.addLeaked(mock, 1L);
+
+    TextRange textRange = trackables.get(0).getTextRange();
+    assertThat(textRange.getStartLine()).isEqualTo(3);
+    assertThat(textRange.getStartLineOffset()).isNull();
+    assertThat(textRange.getEndLine()).isEqualTo(4);
+    assertThat(textRange.getEndLineOffset()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_keep_foreign_trackables_and_copy_rows() {
+    Trackable foreign = mock(Trackable.class);
+    CompactTrackables previous = new CompactTrackables(1);
+    previous.addLeaked(createMock("next", 1), 1L);
+
+    CompactTrackables trackables = new CompactTrackables(2);
+    trackables.addUnchanged(foreign);
+    trackables.addUnchanged(previous.get(0));
+
+    assertThat(trackables).hasSize(2);
+    assertThat(trackables.get(0)).isSameAs(foreign);
+    assertThat(trackables.get(1)).isNotEqualTo(previous.get(0));
+    assertSameValues(trackables.get(1), previous.get(0));
+  }
+
+  @Test
+  public void should_intern_strings() {
+    CompactTrackables trackables = new CompactTrackables(2);
+    trackables.addLeaked(createMock("next", 1), 1L);
+    trackables.addLeaked(createMock("next", 1), 1L);
+
+    assertThat(trackables.get(0).getMessage()).isSameAs(trackables.get(1).getMessage());
+    assertThat(trackables.get(0)).isEqualTo(trackables.get(0)).isNotEqualTo(trackables.get(1));
+    assertThat(trackables.get(0).hashCode()).isEqualTo(trackables.get(0).hashCode());
+  }
+
+  @Test
+  public void should_return_same_instances_on_each_access() {
+    TextRange textRange = new TextRange(3, 1, 4, 0);
+    Trackable mock = createMock("next", 1);
+    when(mock.getTextRange()).thenReturn(textRange);
+
+    CompactTrackables trackables = new CompactTrackables(1);
+    trackables.addLeaked(mock, 1L);
+
+    assertThat(trackables.get(0)).isSameAs(trackables.get(0));
+    assertThat(trackables.iterator().next()).isSameAs(trackables.get(0));
+    assertThat(trackables.get(0).getTextRange()).isSameAs(textRange).isSameAs(trackables.get(0).getTextRange());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void should_fail_to_get_rows_not_added() {
+    new CompactTrackables(2).get(0);
+  }
+
+  private static void assertSameValues(Trackable actual, Trackable expected) {
+    assertThat(actual.getIssue()).isSameAs(expected.getIssue());
+    assertThat(actual.getRuleKey()).isEqualTo(expected.getRuleKey());
+    assertThat(actual.getRuleName()).isEqualTo(expected.getRuleName());
+    assertThat(actual.getSeverity()).isEqualTo(expected.getSeverity());
+    assertThat(actual.getType()).isEqualTo(expected.getType());
+    assertThat(actual.getMessage()).isEqualTo(expected.getMessage());
+    assertThat(actual.getLine()).isEqualTo(expected.getLine());
+    assertThat(actual.getLineHash()).isEqualTo(expected.getLineHash());
+    assertThat(actual.getTextRange().getStartLine()).isEqualTo(expected.getTextRange().getStartLine());
+    assertThat(actual.getTextRangeHash()).isEqualTo(expected.getTextRangeHash());
+    assertThat(actual.getCreationDate()).isEqualTo(expected.getCreationDate());
+    assertThat(actual.getServerIssueKey()).isEqualTo(expected.getServerIssueKey());
+    assertThat(actual.isResolved()).isEqualTo(expected.isResolved());
+    assertThat(actual.getAssignee()).isEqualTo(expected.getAssignee());
+  }
+
+  private static Trackable createMock(String name, int number) {
+    Trackable t = mock(Trackable.class);
+    when(t.getIssue()).thenReturn(mock(Issue.class));
+    when(t.getAssignee()).thenReturn(name + "Assignee");
+    when(t.getCreationDate()).thenReturn((long) number);
+    when(t.getLine()).thenReturn(number);
+    when(t.getLineHash()).thenReturn(number);
+    when(t.getMessage()).thenReturn(new String(name + "Message"));
+    when(t.getRuleKey()).thenReturn(name + "RuleKey");
+    when(t.getRuleName()).thenReturn(name + "RuleName");
+    when(t.getServerIssueKey()).thenReturn(name + "ServerIssueKey");
+    when(t.getSeverity()).thenReturn(name + "Severity");
+    when(t.getTextRangeHash()).thenReturn(number);
+    when(t.getType()).thenReturn(name + "Type");
+    when(t.getTextRange()).thenReturn(new TextRange(number));
+    when(t.isResolved()).thenReturn(number == 1);
+    return t;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DigestUtilsTest {
+
+  @Test
+  public void should_ignore_whitespaces() {
+    assertThat(DigestUtils.digest(" foo\tbar\r\n")).isEqualTo(DigestUtils.digest("foobar"));
+    assertThat(DigestUtils.digest("foobar")).isEqualTo("3858f62230ac3c915f300c664312c63f");
+  }
+
+  @Test
+  public void should_be_compatible_with_regex_based_digest() throws Exception {
+    String[] contents = {"", " ", "int x = 1;", "été €", "😀 emoji", "\ud83d \ude00", "unpaired \ud83d", "\ude00 unpaired",
+      "\ud83d😀", " non breaking", "\u000b\f", repeat("long line with é ", 500)};
+    for (String content : contents) {
+      assertThat(DigestUtils.digest(content)).as(content).isEqualTo(reference(content));
+      assertThat(DigestUtils.digestHashCode(content)).as(content).isEqualTo(reference(content).hashCode());
+    }
+  }
+
+  @Test
+  public void should_be_compatible_with_regex_based_digest_on_random_content() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      char[] chars = new char[random.nextInt(100)];
+      for (int j = 0; j < chars.length; j++) {
+        chars[j] = random.nextBoolean() ? " \tab\n\r\u000b\fé".charAt(random.nextInt(9)) : (char) random.nextInt(Character.MAX_VALUE + 1);
+      }
+      String content = new String(chars);
+      assertThat(DigestUtils.digestHashCode(content)).isEqualTo(reference(content).hashCode());
+    }
+  }
+
+  @Test
+  public void should_hash_part_of_content() throws Exception {
+    String content = "first\nsecond line\nthird";
+    assertThat(DigestUtils.digestHashCode(content, 6, 17)).isEqualTo(reference("second line").hashCode());
+  }
+
+  @Test
+  public void should_be_thread_safe() {
+    String content = repeat("some content ", 100);
+    int expected = DigestUtils.digestHashCode(content);
+    assertThat(IntStream.range(0, 10_000).parallel().map(i -> DigestUtils.digestHashCode(content)).distinct().toArray()).containsOnly(expected);
+  }
+
+  private static String reference(String content) throws Exception {
+    return Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(content.replaceAll("[\\s]", "").getBytes(UTF_8)));
+  }
+
+  private static String repeat(String s, int times) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+}
@@ -122,16 +122,122 @@ public class IssueStoreTest {
     Files.createFile(validFile);
 
     issueStore.save(nonexistentFileKey, Collections.emptyList());
+    Path nonexistentFile = createFile(projectPath, nonexistentFileKey);
     assertThat(issueStore.contains(nonexistentFileKey)).isTrue();
+    Files.delete(nonexistentFile);
 
     issueStore.save(validFileKey, Collections.emptyList());
     assertThat(issueStore.contains(validFileKey)).isTrue();
 
     issueStore.clean();
+    // contains() would remove it as well, check that it is not stored anymore
+    createFile(projectPath, nonexistentFileKey);
     assertThat(issueStore.contains(nonexistentFileKey)).isFalse();
     assertThat(issueStore.contains(validFileKey)).isTrue();
   }
 
+  @Test
+  public void should_store_issues_in_segments() throws IOException {
+    Path base = temporaryFolder.newFolder().toPath();
+    Path storePath = base.resolve("store");
+    IssueStore issueStore = new IssueStore(storePath, base.resolve("project"), mock(Logger.class), IssueStore.Layout.SEGMENTS);
+
+    String key = "filePath";
+    createFile(base.resolve("project"), key);
+    Collection<Trackable> issues = Arrays.asList(newMockTrackable(), newMockTrackable());
+    issueStore.save(key, issues);
+    assertThat(issueStore.read(key)).hasSize(2);
+
+    IssueStore reopened = new IssueStore(storePath, base.resolve("project"), mock(Logger.class), IssueStore.Layout.SEGMENTS);
+    assertThat(reopened.contains(key)).isTrue();
+
+    reopened.clear();
+    assertThat(reopened.contains(key)).isFalse();
+    assertThat(reopened.read(key)).isNull();
+
+    // the cleared store starts new segments
+    reopened.save(key, Collections.singletonList(newMockTrackable()));
+    assertThat(reopened.read(key)).hasSize(1);
+    assertThat(new IssueStore(storePath, base.resolve("project"), mock(Logger.class), IssueStore.Layout.SEGMENTS).read(key)).hasSize(1);
+  }
+
+  @Test
+  public void should_not_remove_entries_without_valid_files_on_startup() throws IOException {
+    Path base = temporaryFolder.newFolder().toPath();
+    Path storePath = base.resolve("store");
+    Path projectPath = base.resolve("project");
+    new IssueStore(storePath, projectPath, mock(Logger.class)).save("created later", Collections.emptyList());
+
+    IssueStore reopened = new IssueStore(storePath, projectPath, mock(Logger.class));
+    createFile(projectPath, "created later");
+    assertThat(reopened.contains("created later")).isTrue();
+  }
+
+  @Test
+  public void contains_should_remove_entries_without_valid_files() throws IOException {
+    Path base = temporaryFolder.newFolder().toPath();
+    Path projectPath = base.resolve("project");
+    IssueStore issueStore = new IssueStore(base.resolve("store"), projectPath, mock(Logger.class));
+    Path validFile = createFile(projectPath, "valid");
+
+    issueStore.save("valid", Collections.singletonList(newMockTrackable()));
+    assertThat(issueStore.contains("valid")).isTrue();
+
+    Files.delete(validFile);
+    assertThat(issueStore.contains("valid")).isFalse();
+    createFile(projectPath, "valid");
+    assertThat(issueStore.read("valid")).isNull();
+  }
+
+  @Test
+  public void read_should_remove_entries_without_valid_files() throws IOException {
+    Path base = temporaryFolder.newFolder().toPath();
+    Path projectPath = base.resolve("project");
+    IssueStore issueStore = new IssueStore(base.resolve("store"), projectPath, mock(Logger.class));
+    Path validFile = createFile(projectPath, "valid");
+
+    issueStore.save("valid", Collections.singletonList(newMockTrackable()));
+    assertThat(issueStore.read("valid")).hasSize(1);
+
+    Files.delete(validFile);
+    assertThat(issueStore.read("valid")).isNull();
+    assertThat(issueStore.contains("valid")).isFalse();
+  }
+
+  @Test
+  public void clean_with_time_budget_should_resume_where_it_stopped() throws IOException {
+    Path base = temporaryFolder.newFolder().toPath();
+    Path projectPath = base.resolve("project");
+    IssueStore issueStore = new IssueStore(base.resolve("store"), projectPath, mock(Logger.class));
+    createFile(projectPath, "valid");
+    issueStore.save("valid", Collections.emptyList());
+    for (int i = 0; i < 10; i++) {
+      issueStore.save("nonexistent" + i, Collections.emptyList());
+    }
+
+    // with no time, a single entry is checked per call
+    int calls = 1;
+    while (!issueStore.clean(0)) {
+      calls++;
+    }
+
+    assertThat(calls).isEqualTo(11);
+    assertThat(issueStore.contains("valid")).isTrue();
+    for (int i = 0; i < 10; i++) {
+      assertThat(issueStore.contains("nonexistent" + i)).isFalse();
+    }
+  }
+
+  @Test
+  public void clean_in_background_should_remove_entries_without_valid_files() throws Exception {
+    Path base = temporaryFolder.newFolder().toPath();
+    IssueStore issueStore = new IssueStore(base.resolve("store"), base.resolve("project"), mock(Logger.class), IssueStore.Layout.SEGMENTS);
+    issueStore.save("nonexistent", Collections.emptyList());
+
+    assertThat(issueStore.cleanInBackground(1000).get()).isTrue();
+    assertThat(issueStore.contains("nonexistent")).isFalse();
+  }
+
   @Test(expected = IllegalStateException.class)
   public void should_fail_to_create_issue_store_if_cannot_write_to_filesystem() throws IOException {
     Path base = temporaryFolder.newFolder().toPath();
@@ -166,10 +272,18 @@ public class IssueStoreTest {
     return trackable;
   }
 
+  private static Path createFile(Path projectPath, String relativePath) throws IOException {
+    Path file = projectPath.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    return Files.createFile(file);
+  }
+
   private IssueStore newIssueStore() throws IOException {
     Path base = temporaryFolder.newFolder().toPath();
     Path storePath = base.resolve("store");
     Path projectPath = base.resolve("project");
+    // entries are removed when read if their file doesn't exist
+    createFile(projectPath, "filePath");
     return new IssueStore(storePath, projectPath, mock(Logger.class));
   }
 
@@ -0,0 +1,204 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class JournaledStoreIndexTest {
+  private static final String INDEX_FILENAME = "index.pb";
+  private static final int COMPACTION_THRESHOLD = 10;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path storeBasePath;
+  private Path indexFilePath;
+  private Path journalFilePath;
+
+  @Before
+  public void setUp() throws IOException {
+    storeBasePath = temporaryFolder.newFolder().toPath();
+    indexFilePath = storeBasePath.resolve(INDEX_FILENAME);
+    journalFilePath = storeBasePath.resolve(INDEX_FILENAME + ".journal");
+  }
+
+  @Test
+  public void should_restore_keys_from_journal() {
+    JournaledStoreIndex index = newIndex();
+    index.save("key1", storeBasePath.resolve("path1"));
+    index.save("key2", storeBasePath.resolve("path2"));
+    index.delete("key1");
+
+    assertThat(index.keys()).containsOnly("key2");
+    assertThat(indexFilePath).doesNotExist();
+    assertThat(journalFilePath).exists();
+
+    JournaledStoreIndex reloaded = newIndex();
+    assertThat(reloaded.keys()).containsOnly("key2");
+    assertThat(reloaded.journalSize()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_not_journal_changes_without_effect() {
+    JournaledStoreIndex index = newIndex();
+    index.save("key", storeBasePath.resolve("path"));
+    index.save("key", storeBasePath.resolve("path"));
+    index.delete("unknown");
+
+    assertThat(index.journalSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_compact_journal_into_index_file() {
+    JournaledStoreIndex index = newIndex();
+    index.save("kept", storeBasePath.resolve("kept"));
+    for (int i = 0; i < COMPACTION_THRESHOLD / 2 - 1; i++) {
+      index.save("key", storeBasePath.resolve("path"));
+      index.delete("key");
+    }
+    index.save("key", storeBasePath.resolve("path"));
+    assertThat(index.journalSize()).isEqualTo(COMPACTION_THRESHOLD);
+
+    index.delete("key");
+    assertThat(index.journalSize()).isEqualTo(0);
+    assertThat(journalFilePath).doesNotExist();
+    assertThat(indexFilePath).exists();
+
+    index.save("key", storeBasePath.resolve("path"));
+    assertThat(newIndex().keys()).containsOnly("kept", "key");
+  }
+
+  @Test
+  public void should_not_compact_while_journal_is_smaller_than_index() {
+    JournaledStoreIndex index = newIndex();
+    for (int i = 0; i < COMPACTION_THRESHOLD * 3; i++) {
+      index.save("key" + i, storeBasePath.resolve("path" + i));
+    }
+    assertThat(index.journalSize()).isEqualTo(COMPACTION_THRESHOLD * 3);
+    assertThat(newIndex().keys()).hasSize(COMPACTION_THRESHOLD * 3);
+  }
+
+  @Test
+  public void should_read_index_written_by_string_store_index() {
+    StringStoreIndex legacyIndex = new StringStoreIndex(storeBasePath, INDEX_FILENAME);
+    legacyIndex.save("key1", storeBasePath.resolve("path1"));
+    legacyIndex.save("key2", storeBasePath.resolve("path2"));
+
+    JournaledStoreIndex index = newIndex();
+    index.delete("key1");
+
+    assertThat(newIndex().keys()).containsOnly("key2");
+  }
+
+  @Test
+  public void should_ignore_partially_written_change() throws IOException {
+    JournaledStoreIndex index = newIndex();
+    index.save("key1", storeBasePath.resolve("path1"));
+    index.save("key2", storeBasePath.resolve("path2"));
+
+    // simulate a crash while appending a change
+    byte[] journal = Files.readAllBytes(journalFilePath);
+    Files.write(journalFilePath, new byte[] {journal[0], journal[1], journal[2]}, StandardOpenOption.APPEND);
+
+    JournaledStoreIndex recovered = newIndex();
+    assertThat(recovered.keys()).containsOnly("key1", "key2");
+    // the corrupted journal was compacted
+    assertThat(journalFilePath).doesNotExist();
+
+    recovered.save("key3", storeBasePath.resolve("path3"));
+    assertThat(newIndex().keys()).containsOnly("key1", "key2", "key3");
+  }
+
+  @Test
+  public void should_truncate_journal_if_append_fails() {
+    AtomicBoolean fail = new AtomicBoolean();
+    JournaledStoreIndex index = new JournaledStoreIndex(storeBasePath, INDEX_FILENAME, COMPACTION_THRESHOLD) {
+      @Override
+      void write(FileChannel channel, ByteBuffer record) throws IOException {
+        if (fail.get()) {
+          // write half of the change, then fail
+          ByteBuffer half = record.duplicate();
+          half.limit(record.position() + record.remaining() / 2);
+          channel.write(half);
+          throw new IOException("disk full");
+        }
+        super.write(channel, record);
+      }
+    };
+    index.save("key1", storeBasePath.resolve("path1"));
+    fail.set(true);
+    try {
+      index.save("key2", storeBasePath.resolve("path2"));
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasCauseInstanceOf(IOException.class);
+    }
+    fail.set(false);
+    index.save("key3", storeBasePath.resolve("path3"));
+
+    assertThat(index.keys()).containsOnly("key1", "key3");
+    assertThat(newIndex().keys()).containsOnly("key1", "key3");
+  }
+
+  @Test
+  public void should_clear_keys_and_files() {
+    JournaledStoreIndex index = newIndex();
+    for (int i = 0; i <= COMPACTION_THRESHOLD + 1; i++) {
+      index.save("key" + i, storeBasePath.resolve("path" + i));
+    }
+    index.clear();
+
+    assertThat(index.keys()).isEmpty();
+    assertThat(indexFilePath).doesNotExist();
+    assertThat(journalFilePath).doesNotExist();
+    assertThat(newIndex().keys()).isEmpty();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_throw_if_cannot_read_from_index_file() throws IOException {
+    Files.write(indexFilePath, "garbage index data".getBytes());
+
+    newIndex().keys();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_throw_if_cannot_write_journal() throws IOException {
+    Files.createDirectory(journalFilePath);
+
+    newIndex().save("key", storeBasePath.resolve("path"));
+  }
+
+  private JournaledStoreIndex newIndex() {
+    return new JournaledStoreIndex(storeBasePath, INDEX_FILENAME, COMPACTION_THRESHOLD);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class LineHashesTest {
+
+  @Test
+  public void should_hash_each_line() {
+    LineHashes hashes = LineHashes.of("first\n  second line\r\nthird\rfourth");
+
+    assertThat(hashes.lineCount()).isEqualTo(4);
+    assertThat(hashes.lineHash(1)).isEqualTo(DigestUtils.digest("first").hashCode());
+    assertThat(hashes.lineHash(2)).isEqualTo(DigestUtils.digest("second line").hashCode());
+    assertThat(hashes.lineHash(3)).isEqualTo(DigestUtils.digest("third").hashCode());
+    assertThat(hashes.lineHash(4)).isEqualTo(DigestUtils.digest("fourth").hashCode());
+  }
+
+  @Test
+  public void should_count_empty_lines() {
+    LineHashes hashes = LineHashes.of("\n\r\n\n");
+
+    assertThat(hashes.lineCount()).isEqualTo(4);
+    assertThat(hashes.lineHash(4)).isEqualTo(DigestUtils.digest("").hashCode());
+  }
+
+  @Test
+  public void should_return_null_out_of_file() {
+    LineHashes hashes = LineHashes.of("single line");
+
+    assertThat(hashes.lineHash(0)).isNull();
+    assertThat(hashes.lineHash(2)).isNull();
+  }
+
+  @Test
+  public void should_read_same_hashes_from_reader() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      content.append("line ").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    LineHashes fromReader = LineHashes.read(new StringReader(content.toString()));
+    LineHashes fromString = LineHashes.of(content);
+
+    assertThat(fromReader.lineCount()).isEqualTo(5001);
+    for (int line = 1; line <= 5001; line++) {
+      assertThat(fromReader.lineHash(line)).isEqualTo(fromString.lineHash(line));
+    }
+    assertThat(fromReader.lineHash(1235)).isEqualTo(DigestUtils.digest("line 1234").hashCode());
+  }
+
+  @Test
+  public void should_not_affect_other_hashes_if_reader_fails() {
+    Reader failing = new Reader() {
+      private boolean read;
+
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        if (read) {
+          throw new IOException("file deleted");
+        }
+        read = true;
+        "partial line".getChars(0, 12, cbuf, off);
+        return 12;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    String expected = DigestUtils.digest("foo");
+
+    try {
+      LineHashes.read(failing);
+      fail("Expected exception");
+    } catch (IOException e) {
+      assertThat(e).hasMessage("file deleted");
+    }
+
+    assertThat(DigestUtils.digest("foo")).isEqualTo(expected);
+    assertThat(DigestUtils.digestHashCode("foo", 0, 3)).isEqualTo(expected.hashCode());
+  }
+
+  @Test
+  public void should_match_issue_trackable_hash() {
+    LineHashes hashes = LineHashes.of("foo\n  bar();\n");
+    IssueTrackable trackable = new IssueTrackable(null, null, null, "  bar();");
+
+    assertThat(hashes.lineHash(2)).isEqualTo(trackable.getLineHash());
+  }
+}
@@ -22,19 +22,26 @@ package org.sonarsource.sonarlint.core.tracking;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static com.jayway.awaitility.Awaitility.await;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,11 +50,13 @@ public class PersistentIssueTrackerCacheTest {
   @Rule
   public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+  private static final int MAX_WEIGHT = 100;
+
   private PersistentIssueTrackerCache cache;
   private StubIssueStore stubIssueStore;
 
   class StubIssueStore extends IssueStore {
-    private final Map<String, Collection<Trackable>> cache = new HashMap<>();
+    private final Map<String, Collection<Trackable>> cache = new ConcurrentHashMap<>();
 
     StubIssueStore() throws IOException {
       super(temporaryFolder.newFolder().toPath(), temporaryFolder.newFolder().toPath(), mock(Logger.class));
@@ -81,27 +90,98 @@ public class PersistentIssueTrackerCacheTest {
   @Before
   public void setUp() throws IOException {
     stubIssueStore = new StubIssueStore();
-    cache = new PersistentIssueTrackerCache(stubIssueStore, mock(Logger.class));
+    cache = new PersistentIssueTrackerCache(stubIssueStore, mock(Logger.class), MAX_WEIGHT);
   }
 
   @Test
   public void should_persist_issues_when_inmemory_limit_reached() {
+    // an empty file weighs 1
     int i = 0;
-    for (; i < PersistentIssueTrackerCache.MAX_ENTRIES; i++) {
+    for (; i < MAX_WEIGHT; i++) {
       cache.put("file" + i, Collections.emptyList());
     }
     assertThat(stubIssueStore.size()).isEqualTo(0);
 
     cache.put("file" + i++, Collections.emptyList());
-    assertThat(stubIssueStore.size()).isEqualTo(1);
+    await().until(() -> stubIssueStore.size() == 1);
 
     cache.put("file" + i, Collections.emptyList());
-    assertThat(stubIssueStore.size()).isEqualTo(2);
+    await().until(() -> stubIssueStore.size() == 2);
+    assertThat(cache.getStats().evictionCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_bound_cache_by_number_of_trackables() {
+    List<Trackable> trackables = Arrays.asList(new Trackable[MAX_WEIGHT / 2]);
+    cache.put("file1", trackables);
+    cache.put("file2", Collections.emptyList());
+    assertThat(cache.getStats().evictionCount()).isEqualTo(0);
+
+    cache.put("file3", trackables);
+    assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+    await().until(() -> stubIssueStore.contains("file1"));
+
+    // the latest entry is kept whatever its weight
+    cache.put("file4", Arrays.asList(new Trackable[MAX_WEIGHT * 2]));
+    assertThat(cache.getLiveOrFail("file4")).hasSize(MAX_WEIGHT * 2);
+    assertThat(cache.getStats().evictionCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_persist_least_recently_updated_issues_first() throws IOException {
+    for (int i = 0; i < MAX_WEIGHT; i++) {
+      cache.put("file" + i, Collections.emptyList());
+    }
+    cache.getCurrentTrackables("file1");
+    cache.put("file0", Collections.emptyList());
+
+    cache.put("new file", Collections.emptyList());
+    await().until(() -> stubIssueStore.contains("file1"));
+    assertThat(stubIssueStore.read("file0")).isNull();
+    assertThat(stubIssueStore.size()).isEqualTo(1);
+
+    cache.shutdown();
+    assertThat(stubIssueStore.read("file1")).isNotNull();
+    assertThat(stubIssueStore.read("file0")).isNotNull();
+    assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+    assertThat(cache.getStats().writeCount()).isEqualTo(MAX_WEIGHT + 1);
+  }
+
+  @Test
+  public void should_serve_evicted_issues_before_they_are_written() throws Exception {
+    CountDownLatch writeAllowed = new CountDownLatch(1);
+    IssueStore store = mock(IssueStore.class);
+    doAnswer(invocation -> writeAllowed.await(10, TimeUnit.SECONDS)).when(store).save(anyString(), any());
+    PersistentIssueTrackerCache slowCache = new PersistentIssueTrackerCache(store, mock(Logger.class), 1);
+
+    List<Trackable> trackables = Collections.singletonList(mock(Trackable.class));
+    slowCache.put("file1", trackables);
+    slowCache.put("file2", Collections.emptyList());
+
+    assertThat(slowCache.isFirstAnalysis("file1")).isFalse();
+    assertThat(slowCache.getCurrentTrackables("file1")).containsExactlyElementsOf(trackables);
+    assertThat(slowCache.getStats().hitCount()).isEqualTo(1);
+
+    writeAllowed.countDown();
+    verify(store, timeout(10_000)).save("file1", trackables);
+    slowCache.shutdown();
+  }
+
+  @Test
+  public void should_count_hits_and_misses() {
+    cache.put("file", Collections.emptyList());
+    cache.getCurrentTrackables("file");
+    cache.getLiveOrFail("file");
+    cache.getCurrentTrackables("other file");
+
+    assertThat(cache.getStats().hitCount()).isEqualTo(2);
+    assertThat(cache.getStats().missCount()).isEqualTo(1);
+    assertThat(cache.getStats().toString()).startsWith("hits=2, misses=1, evictions=0, writes=0");
   }
 
   @Test
   public void should_persist_issues_on_shutdown() {
-    int count = PersistentIssueTrackerCache.MAX_ENTRIES / 2;
+    int count = MAX_WEIGHT / 2;
     for (int i = 0; i < count; i++) {
       cache.put("file" + i, Collections.emptyList());
     }
@@ -185,13 +265,33 @@ public class PersistentIssueTrackerCacheTest {
     verify(store).save(file, trackables);
   }
 
-  @Test(expected = IllegalStateException.class)
-  public void put_should_crash_on_io_failures_during_store_write() throws IOException {
+  @Test
+  public void put_should_log_io_failures_during_background_store_write() throws IOException {
     IssueStore store = mock(IssueStore.class);
-    doThrow(new IOException("failed to write to store")).when(store).save(anyString(), any());
-    PersistentIssueTrackerCache cache = new PersistentIssueTrackerCache(store, mock(Logger.class));
-    for (int i = 0; i < PersistentIssueTrackerCache.MAX_ENTRIES + 1; i++) {
+    IOException exception = new IOException("failed to write to store");
+    doThrow(exception).when(store).save(anyString(), any());
+    Logger logger = mock(Logger.class);
+    PersistentIssueTrackerCache cache = new PersistentIssueTrackerCache(store, logger, MAX_WEIGHT);
+    for (int i = 0; i < MAX_WEIGHT + 1; i++) {
       cache.put("dummy" + i, Collections.emptyList());
     }
+    verify(logger, timeout(10_000)).error("Error persisting issues for dummy0", exception);
+  }
+
+  @Test
+  public void should_retry_failed_background_store_write_on_flush() throws IOException {
+    IssueStore store = mock(IssueStore.class);
+    IOException exception = new IOException("failed to write to store");
+    doThrow(exception).doNothing().when(store).save(anyString(), any());
+    Logger logger = mock(Logger.class);
+    PersistentIssueTrackerCache cache = new PersistentIssueTrackerCache(store, logger, MAX_WEIGHT);
+    for (int i = 0; i < MAX_WEIGHT + 1; i++) {
+      cache.put("dummy" + i, Collections.emptyList());
+    }
+    verify(logger, timeout(10_000)).error("Error persisting issues for dummy0", exception);
+    assertThat(cache.isFirstAnalysis("dummy0")).isFalse();
+
+    cache.flushAll();
+    verify(store, times(2)).save("dummy0", Collections.emptyList());
   }
 }
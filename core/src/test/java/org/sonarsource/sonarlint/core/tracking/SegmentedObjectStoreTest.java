@@ -0,0 +1,284 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Reader;
+import org.sonarsource.sonarlint.core.client.api.connected.objectstore.Writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SegmentedObjectStoreTest {
+  private static final Reader<String> READER = inputStream -> {
+    try {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  };
+  private static final Writer<String> WRITER = (outputStream, value) -> {
+    try {
+      outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  };
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path basePath;
+
+  @Before
+  public void setUp() throws IOException {
+    basePath = temporaryFolder.newFolder().toPath();
+  }
+
+  @Test
+  public void should_read_latest_value() throws IOException {
+    SegmentedObjectStore<String> store = newStore(1024);
+    assertThat(store.read("a")).isEmpty();
+
+    store.write("a", "v1");
+    store.write("b", "");
+    store.write("a", "v2");
+
+    assertThat(store.read("a")).contains("v2");
+    assertThat(store.read("b")).contains("");
+    assertThat(store.contains("b")).isTrue();
+    assertThat(store.contains("c")).isFalse();
+  }
+
+  @Test
+  public void should_delete() throws IOException {
+    SegmentedObjectStore<String> store = newStore(1024);
+    store.write("a", "v1");
+    store.delete("a");
+    store.delete("nonexistent");
+
+    assertThat(store.contains("a")).isFalse();
+    assertThat(store.read("a")).isEmpty();
+    assertThat(newStore(1024).contains("a")).isFalse();
+  }
+
+  @Test
+  public void should_reload_from_segments() throws IOException {
+    SegmentedObjectStore<String> store = newStore(64);
+    for (int i = 0; i < 20; i++) {
+      store.write("key" + i, "value" + i);
+    }
+    store.write("key3", "updated");
+    store.delete("key5");
+    assertThat(store.segmentCount()).isGreaterThan(1);
+
+    SegmentedObjectStore<String> reloaded = newStore(64);
+    assertThat(reloaded.read("key3")).contains("updated");
+    assertThat(reloaded.read("key5")).isEmpty();
+    assertThat(reloaded.read("key19")).contains("value19");
+  }
+
+  @Test
+  public void should_discard_truncated_record_at_end_of_last_segment() throws IOException {
+    SegmentedObjectStore<String> store = newStore(1024);
+    store.write("a", "v1");
+    store.write("b", "v2");
+
+    Path segment = segments().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    SegmentedObjectStore<String> reloaded = newStore(1024);
+    assertThat(reloaded.read("a")).contains("v1");
+    assertThat(reloaded.contains("b")).isFalse();
+
+    reloaded.write("c", "v3");
+    assertThat(newStore(1024).read("c")).contains("v3");
+  }
+
+  @Test
+  public void should_compact_full_segments() throws IOException {
+    SegmentedObjectStore<String> store = newStore(64);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 5; i++) {
+        store.write("key" + i, "value" + round);
+      }
+    }
+    store.delete("key4");
+    int segmentCount = store.segmentCount();
+
+    store.compact();
+
+    assertThat(store.segmentCount()).isLessThan(segmentCount);
+    assertThat(segments()).hasSize(store.segmentCount());
+    for (int i = 0; i < 4; i++) {
+      assertThat(store.read("key" + i)).contains("value9");
+    }
+    assertThat(store.contains("key4")).isFalse();
+
+    SegmentedObjectStore<String> reloaded = newStore(64);
+    assertThat(reloaded.segmentCount()).isEqualTo(store.segmentCount());
+    assertThat(reloaded.read("key0")).contains("value9");
+    assertThat(reloaded.contains("key4")).isFalse();
+  }
+
+  @Test
+  public void should_compact_when_most_records_are_obsolete() throws IOException {
+    SegmentedObjectStore<String> store = new SegmentedObjectStore<>(basePath, READER, WRITER, key -> true, mock(Logger.class), 64, Runnable::run);
+    for (int i = 0; i < 100; i++) {
+      store.write("key", "value" + i);
+    }
+
+    assertThat(store.segmentCount()).isLessThanOrEqualTo(3);
+    assertThat(store.read("key")).contains("value99");
+  }
+
+  @Test
+  public void should_ignore_segments_replaced_by_compaction() throws IOException {
+    SegmentedObjectStore<String> store = newStore(32);
+    for (int i = 0; i < 10; i++) {
+      store.write("key", "value" + i);
+    }
+    List<Path> before = segments();
+    List<byte[]> contents = before.stream().map(SegmentedObjectStoreTest::readBytes).collect(Collectors.toList());
+    store.compact();
+
+    // simulate replaced segments that could not be deleted
+    for (int i = 0; i < before.size(); i++) {
+      if (!Files.exists(before.get(i))) {
+        Files.write(before.get(i), contents.get(i));
+      }
+    }
+
+    SegmentedObjectStore<String> reloaded = newStore(32);
+    assertThat(reloaded.read("key")).contains("value9");
+    assertThat(segments()).hasSize(reloaded.segmentCount());
+  }
+
+  @Test
+  public void should_write_compacted_segment_under_fresh_id() throws IOException {
+    SegmentedObjectStore<String> store = newStore(32);
+    for (int i = 0; i < 10; i++) {
+      store.write("key", "value" + i);
+    }
+    List<Path> before = segments();
+    Path active = before.get(before.size() - 1);
+
+    store.compact();
+
+    List<Path> after = segments();
+    assertThat(after).containsOnlyOnce(active);
+    assertThat(after).hasSize(2);
+    assertThat(after.get(1)).isNotIn(before);
+    assertThat(store.read("key")).contains("value9");
+  }
+
+  @Test
+  public void should_not_retry_failed_compaction_until_another_segment_is_full() throws IOException {
+    List<Runnable> compactions = new ArrayList<>();
+    Logger logger = mock(Logger.class);
+    SegmentedObjectStore<String> store = new SegmentedObjectStore<>(basePath, READER, WRITER, key -> true, logger, 64, compactions::add);
+    int i = 0;
+    while (compactions.isEmpty()) {
+      store.write("key", "value" + i++);
+    }
+    // the compacted segment can't be created
+    Files.createDirectory(basePath.resolve(String.format("segment-%08d.log.tmp", segments().size() + 1)));
+    compactions.remove(0).run();
+    verify(logger).error(eq("Failed to compact local issue store"), any(IOException.class));
+
+    int segmentCount = store.segmentCount();
+    while (store.segmentCount() == segmentCount) {
+      assertThat(compactions).isEmpty();
+      store.write("key", "value" + i++);
+    }
+    assertThat(compactions).hasSize(1);
+    assertThat(store.read("key")).contains("value" + (i - 1));
+  }
+
+  @Test
+  public void should_delete_invalid_keys() throws IOException {
+    SegmentedObjectStore<String> store = new SegmentedObjectStore<>(basePath, READER, WRITER, key -> key.startsWith("valid"), mock(Logger.class), 1024,
+      runnable -> {
+      });
+    store.write("valid", "v1");
+    store.write("invalid", "v2");
+
+    store.deleteInvalid();
+
+    assertThat(store.contains("valid")).isTrue();
+    assertThat(store.contains("invalid")).isFalse();
+  }
+
+  @Test
+  public void clear_should_forget_entries() throws IOException {
+    SegmentedObjectStore<String> store = newStore(1024);
+    store.write("a", "v1");
+
+    store.clear();
+    for (Path segment : segments()) {
+      Files.delete(segment);
+    }
+
+    assertThat(store.contains("a")).isFalse();
+    store.write("b", "v2");
+    assertThat(newStore(1024).read("b")).isEqualTo(Optional.of("v2"));
+  }
+
+  private SegmentedObjectStore<String> newStore(long maxSegmentSize) {
+    // compaction is only triggered explicitly, unless tested otherwise
+    return new SegmentedObjectStore<>(basePath, READER, WRITER, key -> true, mock(Logger.class), maxSegmentSize, runnable -> {
+    });
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> stream = Files.list(basePath)) {
+      return stream.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] readBytes(Path path) {
+    try {
+      return Files.readAllBytes(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
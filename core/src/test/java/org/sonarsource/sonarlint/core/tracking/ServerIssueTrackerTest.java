@@ -19,15 +19,24 @@
  */
 package org.sonarsource.sonarlint.core.tracking;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 import org.sonarsource.sonarlint.core.client.api.connected.ConnectedSonarLintEngine;
 import org.sonarsource.sonarlint.core.client.api.connected.ServerConfiguration;
+import org.sonarsource.sonarlint.core.client.api.connected.ServerIssue;
 import org.sonarsource.sonarlint.core.client.api.exceptions.DownloadException;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class ServerIssueTrackerTest {
@@ -36,11 +45,14 @@ public class ServerIssueTrackerTest {
     String moduleKey = "dummy module";
     String filePath = "dummy file";
     ConnectedSonarLintEngine engine = mock(ConnectedSonarLintEngine.class);
+    CachingIssueTracker issueTracker = mock(CachingIssueTracker.class);
+    Collection<String> fileKeys = Collections.singleton(filePath);
 
-    ServerIssueTracker tracker = new ServerIssueTracker(mock(Logger.class), mock(Console.class), mock(CachingIssueTracker.class));
-    tracker.update(engine, moduleKey, Collections.singleton(filePath));
-    verify(engine).getServerIssues(moduleKey, filePath);
+    ServerIssueTracker tracker = new ServerIssueTracker(mock(Logger.class), mock(Console.class), issueTracker);
+    tracker.update(engine, moduleKey, fileKeys);
+    verify(engine).getServerIssues(moduleKey, fileKeys);
     verifyNoMoreInteractions(engine);
+    verify(issueTracker).matchAndTrackAsBase(eq(filePath), argThat(Collection::isEmpty));
   }
 
   @Test
@@ -70,4 +82,45 @@ public class ServerIssueTrackerTest {
     verify(engine).getServerIssues(moduleKey, filePath);
     verifyNoMoreInteractions(engine);
   }
+
+  @Test
+  public void should_download_issues_of_all_files_at_once() {
+    String moduleKey = "dummy module";
+    ConnectedSonarLintEngine engine = mock(ConnectedSonarLintEngine.class);
+    ServerConfiguration serverConfiguration = mock(ServerConfiguration.class);
+    CachingIssueTracker issueTracker = mock(CachingIssueTracker.class);
+    List<String> fileKeys = Arrays.asList("file1", "file2");
+    ServerIssue serverIssue = mock(ServerIssue.class);
+    when(serverIssue.checksum()).thenReturn("checksum");
+    // issues of file2 failed to download
+    when(engine.downloadServerIssues(serverConfiguration, moduleKey, fileKeys, null))
+      .thenReturn(Collections.singletonMap("file1", Collections.singletonList(serverIssue)));
+    when(engine.getServerIssues(moduleKey, Collections.singletonList("file2"))).thenReturn(Collections.singletonMap("file2", Collections.emptyList()));
+
+    ServerIssueTracker tracker = new ServerIssueTracker(mock(Logger.class), mock(Console.class), issueTracker);
+    tracker.updateInBatch(serverConfiguration, engine, moduleKey, fileKeys, null);
+
+    verify(engine).downloadServerIssues(serverConfiguration, moduleKey, fileKeys, null);
+    verify(engine).getServerIssues(moduleKey, Collections.singletonList("file2"));
+    verifyNoMoreInteractions(engine);
+    verify(issueTracker).matchAndTrackAsBase(eq("file1"), argThat(trackables -> trackables.size() == 1));
+    verify(issueTracker).matchAndTrackAsBase(eq("file2"), argThat(Collection::isEmpty));
+  }
+
+  @Test
+  public void should_not_match_if_batch_download_fails() {
+    String moduleKey = "dummy module";
+    ConnectedSonarLintEngine engine = mock(ConnectedSonarLintEngine.class);
+    ServerConfiguration serverConfiguration = mock(ServerConfiguration.class);
+    CachingIssueTracker issueTracker = mock(CachingIssueTracker.class);
+    Logger logger = mock(Logger.class);
+    List<String> fileKeys = Collections.singletonList("file1");
+    when(engine.downloadServerIssues(serverConfiguration, moduleKey, fileKeys, null)).thenThrow(new IllegalStateException());
+
+    ServerIssueTracker tracker = new ServerIssueTracker(logger, mock(Console.class), issueTracker);
+    tracker.updateInBatch(serverConfiguration, engine, moduleKey, fileKeys, null);
+
+    verify(logger).error(anyString(), any(IllegalStateException.class));
+    verifyZeroInteractions(issueTracker);
+  }
 }
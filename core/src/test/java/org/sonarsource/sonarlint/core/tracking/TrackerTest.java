@@ -0,0 +1,235 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrackerTest {
+
+  private final Tracker<Trackable, Trackable> tracker = new Tracker<>();
+
+  @Test
+  public void should_match_first_base_in_order() {
+    Trackable raw = new FakeTrackable("rule", "m", 1, 2, 3, null);
+    Trackable base1 = new FakeTrackable("rule", "m", 1, 2, 3, null);
+    Trackable base2 = new FakeTrackable("rule", "m", 1, 2, 3, null);
+
+    Tracking<Trackable, Trackable> tracking = tracker.track(() -> Collections.singletonList(raw), () -> Arrays.asList(base1, base2));
+
+    assertThat(tracking.getMatchedRaws()).containsOnlyKeys(raw).containsValue(base1);
+    assertThat(tracking.getUnmatchedBases()).containsExactly(base2);
+  }
+
+  @Test
+  public void should_match_null_lines_and_hashes() {
+    Trackable raw = new FakeTrackable("rule", "m1", null, null, null, null);
+    Trackable base = new FakeTrackable("rule", "m2", null, null, null, null);
+
+    Tracking<Trackable, Trackable> tracking = tracker.track(() -> Collections.singletonList(raw), () -> Collections.singletonList(base));
+
+    assertThat(tracking.getMatchedRaws()).containsEntry(raw, base);
+  }
+
+  @Test
+  public void should_not_match_blank_server_issue_keys() {
+    Trackable raw = new FakeTrackable("rule1", "m", 1, 2, 3, "");
+    Trackable base = new FakeTrackable("rule2", "m", 1, 2, 3, "");
+
+    Tracking<Trackable, Trackable> tracking = tracker.track(() -> Collections.singletonList(raw), () -> Collections.singletonList(base));
+
+    assertThat(tracking.getMatchedRaws()).isEmpty();
+    assertThat(tracking.getUnmatchedRaws()).containsExactly(raw);
+  }
+
+  @Test
+  public void should_match_by_server_issue_key_regardless_of_rule() {
+    Trackable raw = new FakeTrackable("rule1", "m1", 1, 2, 3, "key");
+    Trackable base = new FakeTrackable("rule2", "m2", 4, 5, 6, "key");
+
+    Tracking<Trackable, Trackable> tracking = tracker.track(() -> Collections.singletonList(raw), () -> Collections.singletonList(base));
+
+    assertThat(tracking.getMatchedRaws()).containsEntry(raw, base);
+  }
+
+  @Test
+  public void should_track_like_reference_implementation() {
+    Random random = new Random(42);
+    for (int size : new int[] {0, 1, 10, 100, 1_000, 10_000}) {
+      List<Trackable> bases = randomTrackables(random, size);
+      List<Trackable> raws = randomTrackables(random, size + random.nextInt(10));
+
+      Tracking<Trackable, Trackable> tracking = tracker.track(() -> raws, () -> bases);
+
+      assertThat(tracking.getMatchedRaws()).isEqualTo(referenceTrack(raws, bases));
+    }
+  }
+
+  private static List<Trackable> randomTrackables(Random random, int count) {
+    List<Trackable> trackables = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      trackables.add(new FakeTrackable(
+        "rule" + random.nextInt(5),
+        "message" + random.nextInt(20),
+        random.nextInt(10) == 0 ? null : random.nextInt(200),
+        random.nextInt(10) == 0 ? null : random.nextInt(100),
+        random.nextInt(10) == 0 ? null : random.nextInt(100),
+        random.nextInt(3) == 0 ? null : ("key" + random.nextInt(count * 2 + 1))));
+    }
+    return trackables;
+  }
+
+  /**
+   * Straightforward implementation of the matching passes, with a map of lists rebuilt for each pass.
+   * A null key never matches.
+   */
+  private static Map<Trackable, Trackable> referenceTrack(List<Trackable> raws, List<Trackable> bases) {
+    Map<Trackable, Trackable> matched = new IdentityHashMap<>();
+    Map<Trackable, Boolean> matchedBases = new IdentityHashMap<>();
+    List<Function<Trackable, List<Object>>> passes = Arrays.asList(
+      t -> Arrays.asList(t.getRuleKey(), t.getLine(), t.getTextRangeHash()),
+      t -> Arrays.asList(t.getRuleKey(), t.getMessage(), t.getTextRangeHash()),
+      t -> Arrays.asList(t.getRuleKey(), t.getMessage(), t.getLine()),
+      t -> Arrays.asList(t.getRuleKey(), t.getTextRangeHash()),
+      t -> Arrays.asList(t.getRuleKey(), t.getLine(), t.getLineHash()),
+      t -> Arrays.asList(t.getRuleKey(), t.getLineHash()),
+      t -> t.getServerIssueKey() == null || t.getServerIssueKey().isEmpty() ? null : Collections.singletonList(t.getServerIssueKey()));
+
+    for (Function<Trackable, List<Object>> pass : passes) {
+      Map<List<Object>, List<Trackable>> baseSearch = new HashMap<>();
+      for (Trackable base : bases) {
+        List<Object> key = pass.apply(base);
+        if (!matchedBases.containsKey(base) && key != null) {
+          baseSearch.computeIfAbsent(key, k -> new ArrayList<>()).add(base);
+        }
+      }
+      for (Trackable raw : raws) {
+        List<Object> key = pass.apply(raw);
+        List<Trackable> candidates = key != null ? baseSearch.get(key) : null;
+        if (!matched.containsKey(raw) && candidates != null && !candidates.isEmpty()) {
+          Trackable base = candidates.remove(0);
+          matched.put(raw, base);
+          matchedBases.put(base, true);
+        }
+      }
+    }
+    return matched;
+  }
+
+  private static class FakeTrackable implements Trackable {
+    private final String ruleKey;
+    private final String message;
+    private final Integer line;
+    private final Integer lineHash;
+    private final Integer textRangeHash;
+    private final String serverIssueKey;
+
+    FakeTrackable(String ruleKey, String message, @Nullable Integer line, @Nullable Integer lineHash, @Nullable Integer textRangeHash, @Nullable String serverIssueKey) {
+      this.ruleKey = ruleKey;
+      this.message = message;
+      this.line = line;
+      this.lineHash = lineHash;
+      this.textRangeHash = textRangeHash;
+      this.serverIssueKey = serverIssueKey;
+    }
+
+    @Override
+    public Issue getIssue() {
+      return null;
+    }
+
+    @Override
+    public String getRuleKey() {
+      return ruleKey;
+    }
+
+    @Override
+    public String getRuleName() {
+      return null;
+    }
+
+    @Override
+    public String getSeverity() {
+      return null;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getType() {
+      return null;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public Integer getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public TextRange getTextRange() {
+      return null;
+    }
+
+    @Override
+    public Integer getTextRangeHash() {
+      return textRangeHash;
+    }
+
+    @Override
+    public Long getCreationDate() {
+      return null;
+    }
+
+    @Override
+    public String getServerIssueKey() {
+      return serverIssueKey;
+    }
+
+    @Override
+    public boolean isResolved() {
+      return false;
+    }
+
+    @Override
+    public String getAssignee() {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarLint Core - Implementation
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.sonarlint.core.tracking;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+
+public class TrackingTest {
+
+  private final Trackable raw1 = mock(Trackable.class);
+  private final Trackable raw2 = mock(Trackable.class);
+  private final Trackable raw3 = mock(Trackable.class);
+  private final Trackable base1 = mock(Trackable.class);
+  private final Trackable base2 = mock(Trackable.class);
+
+  private final Tracking<Trackable, Trackable> tracking = new Tracking<>(() -> Arrays.asList(raw1, raw2, raw3), () -> Arrays.asList(base1, base2));
+
+  @Test
+  public void should_start_with_everything_unmatched() {
+    assertThat(tracking.getUnmatchedRaws()).containsExactly(raw1, raw2, raw3);
+    assertThat(tracking.getUnmatchedBases()).containsExactly(base1, base2);
+    assertThat(tracking.getMatchedRaws()).isEmpty();
+    assertThat(tracking.isComplete()).isFalse();
+    assertThat(tracking.hasUnmatchedBases()).isTrue();
+  }
+
+  @Test
+  public void should_track_matches_by_position() {
+    tracking.match(1, 0);
+
+    assertThat(tracking.isRawMatched(1)).isTrue();
+    assertThat(tracking.isBaseMatched(0)).isTrue();
+    assertThat(tracking.getUnmatchedRaws()).containsExactly(raw1, raw3);
+    assertThat(tracking.getUnmatchedBases()).containsExactly(base2);
+    assertThat(tracking.getMatchedRaws()).containsOnly(entry(raw2, base1));
+
+    tracking.match(0, 1);
+    assertThat(tracking.hasUnmatchedBases()).isFalse();
+    assertThat(tracking.isComplete()).isFalse();
+    assertThat(tracking.getUnmatchedBases()).isEmpty();
+  }
+
+  @Test
+  public void should_allow_matching_while_iterating() {
+    Iterator<Trackable> it = tracking.getUnmatchedRaws().iterator();
+    assertThat(it.next()).isSameAs(raw1);
+    tracking.match(0, 0);
+    tracking.match(1, 1);
+    assertThat(it.next()).isSameAs(raw3);
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test
+  public void should_accept_non_list_collections() {
+    List<Trackable> raws = Arrays.asList(raw1, raw2);
+    Tracking<Trackable, Trackable> fromSets = new Tracking<>(() -> new HashSet<>(raws), () -> new HashSet<>(Arrays.asList(base1)));
+
+    assertThat(fromSets.getUnmatchedRaws()).containsOnly(raw1, raw2);
+    assertThat(fromSets.getUnmatchedBases()).containsOnly(base1);
+  }
+}